@@ -92,9 +92,9 @@ public class GlobalOptions {
 	StringTokenizer st = new StringTokenizer(debuggingString, ",");
     next_token:
 	while (st.hasMoreTokens()) {
-	    String token = st.nextToken().intern();
+	    String token = st.nextToken();
 	    for (int i=0; i<debuggingNames.length; i++) {
-		if (token == debuggingNames[i]) {
+		if (token.equals(debuggingNames[i])) {
 		    debuggingFlags |= 1 << i;
 		    continue next_token;
 		}
@@ -20,7 +20,7 @@
 package net.sf.jode.bytecode;
 
 import net.sf.jode.GlobalOptions;
-import java.io.DataInputStream;
+import java.nio.ByteBuffer;
 import java.io.IOException;
 import java.util.Stack;
 import java.util.Vector;
@@ -328,11 +328,11 @@ class BasicBlockReader implements Opcodes {
     }
 
     public void readCode(ConstantPool cp, 
-			 DataInputStream input) throws IOException {
-        maxStack = input.readUnsignedShort();
-	maxLocals = input.readUnsignedShort(); 
+			 ByteBuffer input) throws IOException {
+	maxStack = input.getShort() & 0xffff;
+	maxLocals = input.getShort() & 0xffff;
 
-        int codeLength = input.readInt();
+	int codeLength = input.getInt();
 	infos = new InstrInfo[codeLength];
 	{
 	    int addr = 0;
@@ -341,18 +341,18 @@ class BasicBlockReader implements Opcodes {
 		int length;
 
 		infos[addr] = new InstrInfo();
-		int opcode = input.readUnsignedByte();
+		int opcode = input.get() & 0xff;
 		if ((GlobalOptions.debuggingFlags
 		     & GlobalOptions.DEBUG_BYTECODE) != 0) 
 		    GlobalOptions.err.print(addr+": "+opcodeString[opcode]);
 
 		switch (opcode) {
 		case opc_wide: {
-		    int wideopcode = input.readUnsignedByte();
+		    int wideopcode = input.get() & 0xff;
 		    switch (wideopcode) {
 		    case opc_iload: case opc_fload: case opc_aload:
 		    case opc_istore: case opc_fstore: case opc_astore: {
-			int slot = input.readUnsignedShort();
+			int slot = input.getShort() & 0xffff;
 			if (slot >= maxLocals)
 			    throw new ClassFormatException
 				("Invalid local slot "+slot);
@@ -368,7 +368,7 @@ class BasicBlockReader implements Opcodes {
 		    }
 		    case opc_lload: case opc_dload:
 		    case opc_lstore: case opc_dstore: {
-			int slot = input.readUnsignedShort();
+			int slot = input.getShort() & 0xffff;
 			if (slot >= maxLocals-1)
 			    throw new ClassFormatException
 				("Invalid local slot "+slot);
@@ -383,7 +383,7 @@ class BasicBlockReader implements Opcodes {
 			break;
 		    }
 		    case opc_ret: {
-			int slot = input.readUnsignedShort();
+			int slot = input.getShort() & 0xffff;
 			if (slot >= maxLocals)
 			    throw new ClassFormatException
 				("Invalid local slot "+slot);
@@ -397,13 +397,13 @@ class BasicBlockReader implements Opcodes {
 			break;
 		    }
 		    case opc_iinc: {
-			int slot = input.readUnsignedShort();
+			int slot = input.getShort() & 0xffff;
 			if (slot >= maxLocals)
 			    throw new ClassFormatException
 				("Invalid local slot "+slot);
 			LocalVariableInfo lvi
 			    = LocalVariableInfo.getInfo(slot);
-			int incr = input.readShort();
+			int incr = input.getShort();
 			instr = new IncInstruction(wideopcode, lvi, incr);
 			length = 6;
 			if ((GlobalOptions.debuggingFlags
@@ -473,7 +473,7 @@ class BasicBlockReader implements Opcodes {
 		}
 		case opc_iload: case opc_fload: case opc_aload:
 		case opc_istore: case opc_fstore: case opc_astore: {
-		    int slot = input.readUnsignedByte();
+		    int slot = input.get() & 0xff;
 		    if (slot >= maxLocals)
 			throw new ClassFormatException
 			    ("Invalid local slot "+slot);
@@ -488,7 +488,7 @@ class BasicBlockReader implements Opcodes {
 		}
 		case opc_lstore: case opc_dstore:
 		case opc_lload: case opc_dload: {
-		    int slot = input.readUnsignedByte();
+		    int slot = input.get() & 0xff;
 		    if (slot >= maxLocals - 1)
 			throw new ClassFormatException
 			    ("Invalid local slot "+slot);
@@ -502,7 +502,7 @@ class BasicBlockReader implements Opcodes {
 		    break;
 		}
 		case opc_ret: {
-		    int slot = input.readUnsignedByte();
+		    int slot = input.get() & 0xff;
 		    if (slot >= maxLocals)
 			throw new ClassFormatException
 			    ("Invalid local slot "+slot);
@@ -532,16 +532,16 @@ class BasicBlockReader implements Opcodes {
 		    break;
 		case opc_bipush:
 		    instr = new ConstantInstruction
-			(opc_ldc, new Integer(input.readByte()));
+			(opc_ldc, new Integer(input.get()));
 		    length = 2;
 		    break;
 		case opc_sipush:
 		    instr = new ConstantInstruction
-			(opc_ldc, new Integer(input.readShort()));
+			(opc_ldc, new Integer(input.getShort()));
 		    length = 3;
 		    break;
 		case opc_ldc: {
-		    int index = input.readUnsignedByte();
+		    int index = input.get() & 0xff;
 		    int tag = cp.getTag(index);
 		    if (tag != ConstantPool.STRING && tag != ConstantPool.CLASS
 			 && tag != ConstantPool.INTEGER && tag != ConstantPool.FLOAT)
@@ -553,7 +553,7 @@ class BasicBlockReader implements Opcodes {
 		    break;
 		}
 		case opc_ldc_w: {
-		    int index = input.readUnsignedShort();
+		    int index = input.getShort() & 0xffff;
 		    int tag = cp.getTag(index);
 		    if (tag != ConstantPool.STRING && tag != ConstantPool.CLASS
 			 && tag != ConstantPool.INTEGER && tag != ConstantPool.FLOAT)
@@ -565,7 +565,7 @@ class BasicBlockReader implements Opcodes {
 		    break;
 		}
 		case opc_ldc2_w: {
-		    int index = input.readUnsignedShort();
+		    int index = input.getShort() & 0xffff;
 		    int tag = cp.getTag(index);
 		    if (tag != ConstantPool.LONG && tag != ConstantPool.DOUBLE)
 			throw new ClassFormatException
@@ -576,13 +576,13 @@ class BasicBlockReader implements Opcodes {
 		    break;
 		}
 		case opc_iinc: {
-		    int slot = input.readUnsignedByte();
+		    int slot = input.get() & 0xff;
 		    if (slot >= maxLocals)
 			throw new ClassFormatException
 			    ("Invalid local slot "+slot);
 		    LocalVariableInfo lvi
 			= LocalVariableInfo.getInfo(slot);
-		    int incr = input.readByte();
+		    int incr = input.get();
 		    instr = new IncInstruction(opcode, lvi, incr);
 		    length = 3;
 		    if ((GlobalOptions.debuggingFlags
@@ -603,7 +603,7 @@ class BasicBlockReader implements Opcodes {
 		case opc_ifnull: case opc_ifnonnull:
 		    instr = new Instruction(opcode);
 		    length = 3;
-		    infos[addr].succs = new int[] { addr+input.readShort() };
+		    infos[addr].succs = new int[] { addr+input.getShort() };
 		    if ((GlobalOptions.debuggingFlags
 			 & GlobalOptions.DEBUG_BYTECODE) != 0) 
 			GlobalOptions.err.print(" "+infos[addr].succs[0]);
@@ -613,7 +613,7 @@ class BasicBlockReader implements Opcodes {
 		case opc_jsr_w:
 		    instr = new Instruction(opcode - (opc_goto_w - opc_goto));
 		    length = 5;
-		    infos[addr].succs = new int[] { addr+input.readInt() };
+		    infos[addr].succs = new int[] { addr+input.getInt() };
 		    if ((GlobalOptions.debuggingFlags
 			 & GlobalOptions.DEBUG_BYTECODE) != 0) 
 			GlobalOptions.err.print(" "+infos[addr].succs[0]);
@@ -621,14 +621,14 @@ class BasicBlockReader implements Opcodes {
 
 		case opc_tableswitch: {
 		    length = 3 - (addr % 4);
-		    input.readFully(new byte[length]);
-		    int def  = input.readInt();
-		    int low  = input.readInt();
-		    int high = input.readInt();
+		    input.position(input.position() + length);
+		    int def  = input.getInt();
+		    int low  = input.getInt();
+		    int high = input.getInt();
 		    int[] dests = new int[high-low+1];
 		    int npairs = 0;
 		    for (int i=0; i < dests.length; i++) {
-			dests[i] = input.readInt();
+			dests[i] = input.getInt();
 			if (dests[i] != def)
 			    npairs++;
 		    }
@@ -649,17 +649,17 @@ class BasicBlockReader implements Opcodes {
 		}
 		case opc_lookupswitch: {
 		    length = 3 - (addr % 4);
-		    input.readFully(new byte[length]);
-		    int def = input.readInt();
-		    int npairs = input.readInt();
+		    input.position(input.position() + length);
+		    int def = input.getInt();
+		    int npairs = input.getInt();
 		    infos[addr].succs = new int[npairs + 1];
 		    int[] values = new int[npairs];
 		    for (int i=0; i < npairs; i++) {
-			values[i] = input.readInt();
+			values[i] = input.getInt();
 			if (i > 0 && values[i-1] >= values[i])
 			    throw new ClassFormatException
 				("lookupswitch not sorted");
-			infos[addr].succs[i] = addr + input.readInt();
+			infos[addr].succs[i] = addr + input.getInt();
 		    }
 		    infos[addr].succs[npairs] = addr + def;
 		    instr = new SwitchInstruction(opc_lookupswitch, values);
@@ -674,7 +674,7 @@ class BasicBlockReader implements Opcodes {
 		case opc_invokespecial:
 		case opc_invokestatic:
 		case opc_invokevirtual: {
-		    int index = input.readUnsignedShort();
+		    int index = input.getShort() & 0xffff;
 		    int tag = cp.getTag(index);
 		    if (opcode < opc_invokevirtual) {
 			if (tag != ConstantPool.FIELDREF)
@@ -699,7 +699,7 @@ class BasicBlockReader implements Opcodes {
 		    break;
 		}
 		case opc_invokeinterface: {
-		    int index = input.readUnsignedShort();
+		    int index = input.getShort() & 0xffff;
 		    int tag = cp.getTag(index);
 		    if (tag != ConstantPool.INTERFACEMETHODREF)
 			throw new ClassFormatException
@@ -708,12 +708,12 @@ class BasicBlockReader implements Opcodes {
 		    if (ref.getName().charAt(0) == '<')
 			throw new ClassFormatException
 			    ("Illegal call of special method "+ref);
-		    int nargs = input.readUnsignedByte();
+		    int nargs = input.get() & 0xff;
 		    if (TypeSignature.getParameterSize(ref.getType())
 			!= nargs - 1)
 			throw new ClassFormatException
 			    ("Interface nargs mismatch: "+ref+" vs. "+nargs);
-		    if (input.readUnsignedByte() != 0)
+		    if ((input.get() & 0xff) != 0)
 			throw new ClassFormatException
 			    ("Interface reserved param not zero");
 
@@ -728,7 +728,7 @@ class BasicBlockReader implements Opcodes {
 		case opc_new:
 		case opc_checkcast:
 		case opc_instanceof: {
-		    String type = cp.getClassType(input.readUnsignedShort());
+		    String type = cp.getClassType(input.getShort() & 0xffff);
 		    if (opcode == opc_new && type.charAt(0) == '[')
 			throw new ClassFormatException
 			    ("Can't create array with opc_new");
@@ -740,8 +740,8 @@ class BasicBlockReader implements Opcodes {
 		    break;
 		}
 		case opc_multianewarray: {
-		    String type = cp.getClassType(input.readUnsignedShort());
-		    int dims = input.readUnsignedByte();
+		    String type = cp.getClassType(input.getShort() & 0xffff);
+		    int dims = input.get() & 0xff;
 		    if (dims == 0)
 			throw new ClassFormatException
 			    ("multianewarray dimension is 0.");
@@ -764,9 +764,9 @@ class BasicBlockReader implements Opcodes {
 		}
 		case opc_anewarray: {
 		    String type 
-			= "["+cp.getClassType(input.readUnsignedShort());
+			= "["+cp.getClassType(input.getShort() & 0xffff);
 		    instr = new TypeDimensionInstruction
-			(opc_multianewarray, type.intern(), 1);
+			(opc_multianewarray, cp.intern(type), 1);
 		    length = 3;
 		    if ((GlobalOptions.debuggingFlags
 			 & GlobalOptions.DEBUG_BYTECODE) != 0) 
@@ -775,13 +775,13 @@ class BasicBlockReader implements Opcodes {
 		}
 		case opc_newarray: {
 		    char sig = newArrayTypes.charAt
-			(input.readUnsignedByte()-4);
+			((input.get() & 0xff)-4);
 		    String type = new String (new char[] { '[', sig });
 		    if ((GlobalOptions.debuggingFlags
 			 & GlobalOptions.DEBUG_BYTECODE) != 0) 
 			GlobalOptions.err.print(" "+type);
 		    instr = new TypeDimensionInstruction
-			(opc_multianewarray, type.intern(), 1);
+			(opc_multianewarray, cp.intern(type), 1);
 		    length = 2;
 		    break;
 		}
@@ -844,14 +844,14 @@ class BasicBlockReader implements Opcodes {
 		throw new ClassFormatException("last instruction too long");
 	}
 
-	int handlersLength = input.readUnsignedShort();
+	int handlersLength = input.getShort() & 0xffff;
 	handlers = new HandlerEntry[handlersLength];
 	for (int i=0; i< handlersLength; i ++) {
 	    handlers[i] = new HandlerEntry();
-	    handlers[i].start = input.readUnsignedShort();
-	    handlers[i].end = input.readUnsignedShort();
-	    handlers[i].catcher = input.readUnsignedShort();
-	    int index = input.readUnsignedShort();
+	    handlers[i].start = input.getShort() & 0xffff;
+	    handlers[i].end = input.getShort() & 0xffff;
+	    handlers[i].catcher = input.getShort() & 0xffff;
+	    int index = input.getShort() & 0xffff;
 	    handlers[i].type = (index == 0) ? null
 		: cp.getClassName(index);
 
@@ -946,10 +946,10 @@ class BasicBlockReader implements Opcodes {
     }
 
     public void readLVT(int length, ConstantPool cp, 
-			DataInputStream input) throws IOException {
+			ByteBuffer input) throws IOException {
 	if ((GlobalOptions.debuggingFlags & GlobalOptions.DEBUG_LVT) != 0) 
 	    GlobalOptions.err.println("LocalVariableTable of "+bb);
-	int count = input.readUnsignedShort();
+	int count = input.getShort() & 0xffff;
 	if (length != 2 + count * 10) {
 	    if ((GlobalOptions.debuggingFlags & GlobalOptions.DEBUG_LVT) != 0) 
 		GlobalOptions.err.println("Illegal LVT length, ignoring it");
@@ -958,11 +958,11 @@ class BasicBlockReader implements Opcodes {
 	Vector[] lvt = new Vector[maxLocals];
 	for (int i=0; i < count; i++) {
 	    LVTEntry lve = new LVTEntry();
-	    lve.start  = input.readUnsignedShort();
-	    lve.end    = lve.start + input.readUnsignedShort();
-	    int nameIndex = input.readUnsignedShort();
-	    int typeIndex = input.readUnsignedShort();
-	    int slot = input.readUnsignedShort();
+	    lve.start  = input.getShort() & 0xffff;
+	    lve.end    = lve.start + (input.getShort() & 0xffff);
+	    int nameIndex = input.getShort() & 0xffff;
+	    int typeIndex = input.getShort() & 0xffff;
+	    int slot = input.getShort() & 0xffff;
 	    if (nameIndex == 0 || cp.getTag(nameIndex) != ConstantPool.UTF8
 		|| typeIndex == 0 || cp.getTag(typeIndex) != ConstantPool.UTF8
 		|| slot >= maxLocals) {
@@ -1048,16 +1048,16 @@ class BasicBlockReader implements Opcodes {
     } 
 
     public void readLNT(int length, ConstantPool cp, 
-			DataInputStream input) throws IOException {
-	int count = input.readUnsignedShort();
+			ByteBuffer input) throws IOException {
+	int count = input.getShort() & 0xffff;
 	if (length != 2 + count * 4) {
 	    GlobalOptions.err.println
 		("Illegal LineNumberTable, ignoring it");
 	    return;
 	}
 	for (int i = 0; i < count; i++) {
-	    int start = input.readUnsignedShort();
-	    infos[start].instr.setLineNr(input.readUnsignedShort());
+	    int start = input.getShort() & 0xffff;
+	    infos[start].instr.setLineNr(input.getShort() & 0xffff);
 	}
 
 	int lastLine = -1;
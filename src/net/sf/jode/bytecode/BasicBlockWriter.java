@@ -53,12 +53,52 @@ class BasicBlockWriter implements Opcodes {
     BitSet isWide;
     BitSet isWideCond;
 
+    /**
+     * The frames of the method, null if no StackMapTable is written.
+     */
+    StackMapBuilder stackMap;
+    byte[] stackMapTable;
+    /**
+     * The exception table, four entries (start, end, catcher, handler
+     * number) per range.  If a StackMapTable is written, the ranges
+     * of the handlers don't cover the unreachable blocks and the
+     * return instructions, since their frames don't fit the frame
+     * of the catcher.
+     */
+    int[] exceptionTable;
+    int exceptionCount;
+
     public BasicBlockWriter(BasicBlocks bb, GrowableConstantPool gcp) {
 	this.bb = bb;
 	init(gcp);
 	prepare(gcp);
     }
 
+    /**
+     * Creates a writer for the code of a method of the given class.
+     * If the class is written with version 50 or later, the code
+     * gets a StackMapTable.
+     * @param clazz the class containing the method.
+     * @param oracle the oracle used to merge class types, null if
+     * the class version doesn't need stack map frames.
+     * @exception IllegalStateException if the code uses subroutines
+     * (jsr/ret), but the class version is 51 or later.
+     */
+    public BasicBlockWriter(BasicBlocks bb, GrowableConstantPool gcp,
+			    ClassInfo clazz, HierarchyOracle oracle) {
+	this.bb = bb;
+	init(gcp);
+	if (oracle != null && bb.getStartBlock() != null) {
+	    if (!bb.hasSubroutines())
+		stackMap = new StackMapBuilder(this, clazz.getName(), oracle);
+	    else if (clazz.getMajorVersion() >= 51)
+		throw new IllegalStateException
+		    ("jsr isn't allowed in class version "
+		     + clazz.getMajorVersion() + ": " + bb);
+	}
+	prepare(gcp);
+    }
+
     public void buildNewLVT() {
 	Block startBlock = bb.getStartBlock();
 	Block[] blocks = bb.getBlocks();
@@ -552,15 +592,21 @@ class BasicBlockWriter implements Opcodes {
 	 *  lnt_length:  4
 	 *  lnt_count:   2
 	 *  lnt_entries: n * 4
+	 * attributes:
+	 *  smt_name:    2
+	 *  smt_length:  4
+	 *  smt_frames:  stackMapTable.length
 	 */
 	int attrsize = 0;
 	if (lvt != null)
 	    attrsize += 8 + lvt.length * 10;
 	if (lntCount > 0)
 	    attrsize += 8 + lntCount * 4;
+	if (stackMapTable != null)
+	    attrsize += 6 + stackMapTable.length;
 	return 10
 	    + blockAddr[blockAddr.length - 1]
-	    + bb.getExceptionHandlers().length * 8
+	    + exceptionCount / 4 * 8
 	    + attrsize;
     }
 
@@ -570,6 +616,8 @@ class BasicBlockWriter implements Opcodes {
 	    count++;
 	if (lntCount > 0)
 	    count++;
+	if (stackMapTable != null)
+	    count++;
 	return count;
     }
 
@@ -590,6 +638,60 @@ class BasicBlockWriter implements Opcodes {
 	}
 	if (lntCount > 0)
 	    gcp.putUTF8("LineNumberTable");
+	if (stackMap != null) {
+	    stackMapTable = stackMap.getStackMapTable(gcp);
+	    if (stackMapTable != null)
+		gcp.putUTF8("StackMapTable");
+	}
+	buildExceptionTable();
+    }
+
+    private void addExceptionRange(int start, int end, int handlerNr) {
+	if (start >= end)
+	    return;
+	if (exceptionCount == exceptionTable.length) {
+	    int[] newTable = new int[exceptionTable.length * 2];
+	    System.arraycopy(exceptionTable, 0, newTable, 0, exceptionCount);
+	    exceptionTable = newTable;
+	}
+	Handler handler = bb.getExceptionHandlers()[handlerNr];
+	exceptionTable[exceptionCount++] = start;
+	exceptionTable[exceptionCount++] = end;
+	exceptionTable[exceptionCount++]
+	    = blockAddr[handler.catcher.getBlockNr()];
+	exceptionTable[exceptionCount++] = handlerNr;
+    }
+
+    private void buildExceptionTable() {
+	Handler[] handlers = bb.getExceptionHandlers();
+	exceptionTable = new int[handlers.length * 4 + 4];
+	exceptionCount = 0;
+	for (int i = 0; i < handlers.length; i++) {
+	    int last = handlers[i].end.getBlockNr();
+	    int start = -1;
+	    for (int j = handlers[i].start.getBlockNr(); j <= last; j++) {
+		if (stackMap != null && !stackMap.isReachable(j)) {
+		    if (start >= 0)
+			addExceptionRange(start, blockAddr[j], i);
+		    start = -1;
+		    continue;
+		}
+		if (start < 0)
+		    start = blockAddr[j];
+		if (stackMap != null && isRet.get(j + 1)) {
+		    addExceptionRange(start, blockAddr[j + 1] - 1, i);
+		    start = -1;
+		}
+	    }
+	    if (start >= 0) {
+		int end = blockAddr[last + 1];
+		/* Don't cover the return the writer appends. */
+		if (stackMap != null && retAtEnd
+		    && last == bb.getBlocks().length - 1)
+		    end--;
+		addExceptionRange(start, end, i);
+	    }
+	}
     }
 
     public void writeAttributes(GrowableConstantPool gcp,
@@ -619,6 +721,11 @@ class BasicBlockWriter implements Opcodes {
 		output.writeShort(lnt[2*i+1]);
             }
 	}
+	if (stackMapTable != null) {
+	    output.writeShort(gcp.putUTF8("StackMapTable"));
+	    output.writeInt(stackMapTable.length);
+	    output.write(stackMapTable);
+	}
     }
 
     public void write(GrowableConstantPool gcp, 
@@ -654,6 +761,32 @@ class BasicBlockWriter implements Opcodes {
 		throw new InternalError("Address calculation broken for "+i+": "+blockAddr[i]+"!="+addr+"!");
 	    Instruction[] instructions = blocks[i].getInstructions();
 	    int size = instructions.length;
+	    if (stackMap != null && !stackMap.isReachable(i)) {
+		/* The verifier can't type unreachable code, replace it
+		 * by nop ... athrow.  Only the return at the end is
+		 * kept, since it may be the target of a jump.
+		 */
+		for (int j = 0; j < size; j++) {
+		    if (instructions[j].hasLineNr()) {
+			lnt[lntPtr++] = (short) addr;
+			lnt[lntPtr++] = (short) instructions[j].getLineNr();
+		    }
+		}
+		int end = blockAddr[i+1];
+		/* The return at the end of the code is written below. */
+		if (isRet.get(i+1) || (i == blocks.length - 1 && retAtEnd))
+		    end--;
+		if (addr < end) {
+		    while (++addr < end)
+			output.writeByte(opc_nop);
+		    output.writeByte(opc_athrow);
+		}
+		if (isRet.get(i+1)) {
+		    output.writeByte(opc_return);
+		    addr++;
+		}
+		continue;
+	    }
 	    for (int j = 0; j < size; j++) {
 		Instruction instr = instructions[j];
 		if (instr.hasLineNr()) {
@@ -996,13 +1129,14 @@ class BasicBlockWriter implements Opcodes {
 	    throw new InternalError("Address calculation broken!");
 
 	Handler[] handlers = bb.getExceptionHandlers();
-	output.writeShort(handlers.length);
-	for (int i = 0; i< handlers.length; i++) {
-	    output.writeShort(blockAddr[handlers[i].start.getBlockNr()]);
-	    output.writeShort(blockAddr[handlers[i].end.getBlockNr()+1]);
-	    output.writeShort(blockAddr[handlers[i].catcher.getBlockNr()]);
-	    output.writeShort((handlers[i].type == null) ? 0
-			      : gcp.putClassName(handlers[i].type));
+	output.writeShort(exceptionCount / 4);
+	for (int i = 0; i < exceptionCount; i += 4) {
+	    Handler handler = handlers[exceptionTable[i + 3]];
+	    output.writeShort(exceptionTable[i]);
+	    output.writeShort(exceptionTable[i + 1]);
+	    output.writeShort(exceptionTable[i + 2]);
+	    output.writeShort((handler.type == null) ? 0
+			      : gcp.putClassName(handler.type));
 	}
     }
 }
@@ -21,7 +21,7 @@ package net.sf.jode.bytecode;
 
 import net.sf.jode.GlobalOptions;
 
-import java.io.DataInputStream;
+import java.nio.ByteBuffer;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -154,6 +154,16 @@ public class BasicBlocks extends BinaryInfo implements Opcodes {
 	return blocks;
     }
 
+    /**
+     * Stores the instructions of all blocks in compact form.  Call
+     * this if you keep the code, but won't look at it for a while.
+     * @see Block#compact
+     */
+    public void compact() {
+	for (int i = 0; i < blocks.length; i++)
+	    blocks[i].compact();
+    }
+
     /**
      * @return the exception handlers, or null if the method has no
      * exception handlers.
@@ -162,6 +172,23 @@ public class BasicBlocks extends BinaryInfo implements Opcodes {
 	return exceptionHandlers;
     }
 
+    /**
+     * Checks if the code uses subroutines (jsr/ret).  They aren't
+     * allowed in class version 51 and later.
+     * @return true if a block contains a jsr or ret instruction.
+     */
+    public boolean hasSubroutines() {
+	for (int i = 0; i < blocks.length; i++) {
+	    Instruction[] instrs = blocks[i].getInstructions();
+	    for (int j = 0; j < instrs.length; j++) {
+		int opcode = instrs[j].getOpcode();
+		if (opcode == opc_jsr || opcode == opc_ret)
+		    return true;
+	    }
+	}
+	return false;
+    }
+
     public LocalVariableInfo getParamInfo(int i) {
 	return paramInfos[i];
     }
@@ -299,14 +326,14 @@ public class BasicBlocks extends BinaryInfo implements Opcodes {
 
     private BasicBlockReader reader;
     void read(ConstantPool cp, 
-		     DataInputStream input, 
-		     int howMuch) throws IOException {
+		     ByteBuffer input,
+		     int howMuch, int attributes) throws IOException {
 	if ((GlobalOptions.debuggingFlags
 	     & GlobalOptions.DEBUG_BYTECODE) != 0)
 	    GlobalOptions.err.println("Reading "+methodInfo);
 	reader = new BasicBlockReader(this);
 	reader.readCode(cp, input);
-	readAttributes(cp, input, howMuch);
+	readAttributes(cp, input, howMuch, attributes);
   	reader.convert();
 	reader = null;
 	if ((GlobalOptions.debuggingFlags
@@ -315,7 +342,7 @@ public class BasicBlocks extends BinaryInfo implements Opcodes {
     }
 
     protected void readAttribute(String name, int length, ConstantPool cp,
-				 DataInputStream input, 
+				 ByteBuffer input,
 				 int howMuch) throws IOException {
 	if (howMuch >= ClassInfo.ALMOSTALL
 	    && name.equals("LocalVariableTable")) {
@@ -323,6 +350,10 @@ public class BasicBlocks extends BinaryInfo implements Opcodes {
 	} else if (howMuch >= ClassInfo.ALMOSTALL
 		   && name.equals("LineNumberTable")) {
 	    reader.readLNT(length, cp, input);
+	} else if (name.equals("StackMapTable")) {
+	    /* The frames are only valid for the original code layout.
+	     * BasicBlockWriter computes new ones if they are needed.
+	     */
 	} else
 	    super.readAttribute(name, length, cp, input, howMuch);
     }
@@ -356,8 +387,9 @@ public class BasicBlocks extends BinaryInfo implements Opcodes {
     }
 
     BasicBlockWriter bbw;
-    void prepareWriting(GrowableConstantPool gcp) {
-	bbw = new BasicBlockWriter(this, gcp);
+    void prepareWriting(GrowableConstantPool gcp, ClassInfo clazz,
+			HierarchyOracle oracle) {
+	bbw = new BasicBlockWriter(this, gcp, clazz, oracle);
 	prepareAttributes(gcp);
     }
 
@@ -374,9 +406,19 @@ public class BasicBlocks extends BinaryInfo implements Opcodes {
 
     void write(GrowableConstantPool gcp, 
 	       DataOutputStream output) throws IOException {
-	output.writeInt(bbw.getSize() + getAttributeSize());
-	bbw.write(gcp, output);
-	writeAttributes(gcp, output);
+	if (output instanceof ClassFileBuffer) {
+	    /* Write the code first and fill in its length afterwards. */
+	    ClassFileBuffer buffer = (ClassFileBuffer) output;
+	    int lengthPos = buffer.position();
+	    buffer.writeInt(0);
+	    bbw.write(gcp, buffer);
+	    writeAttributes(gcp, buffer);
+	    buffer.patchInt(lengthPos, buffer.position() - lengthPos - 4);
+	} else {
+	    output.writeInt(bbw.getSize() + getAttributeSize());
+	    bbw.write(gcp, output);
+	    writeAttributes(gcp, output);
+	}
 	bbw = null;
     }
 
@@ -20,10 +20,8 @@
 package net.sf.jode.bytecode;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.EOFException;
-import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import net.sf.jode.util.SimpleMap;
 
 ///#def COLLECTIONS java.util
@@ -134,22 +132,13 @@ public class BinaryInfo {
      */
     public static int ACC_SYNTHETIC  = 0x1000;
 
+    /**
+     * Maps the names of the non standard attributes to their
+     * contents.  The contents are byte arrays, or byte buffers that
+     * are views into the class file, if they weren't requested yet.
+     */
     private Map unknownAttributes = null;
 
-    void skipAttributes(DataInputStream input) throws IOException {
-        int count = input.readUnsignedShort();
-        for (int i=0; i< count; i++) {
-            input.readUnsignedShort();  // the name index
-            long length = input.readInt();
-	    while (length > 0) {
-		long skipped = input.skip(length);
-		if (skipped == 0)
-		    throw new EOFException("Can't skip. EOF?");
-		length -= skipped;
-	    }
-        }
-    }
-
     /**
      * Reads in an attributes of this class.  Overwrite this method if
      * you want to handle your own attributes.  If you don't know how
@@ -161,13 +150,23 @@ public class BinaryInfo {
      * from.  It will protect you to read more over the attribute boundary.
      * @param howMuch the constant that was given to the {@link
      * ClassInfo#load} function when loading this class.
+     * @see #readAttribute(String, int, ConstantPool, ByteBuffer, int)
      */
     protected void readAttribute(String name, int length,
 				 ConstantPool constantPool,
 				 DataInputStream input, 
 				 int howMuch) throws IOException {
-	byte[] data = new byte[length];
-	input.readFully(data);
+	Object data;
+	if (input instanceof AttributeInputStream) {
+	    /* Keep a view into the class file instead of a copy. */
+	    ByteBuffer buffer = ((AttributeInputStream) input).buffer;
+	    data = buffer.slice();
+	    buffer.position(buffer.limit());
+	} else {
+	    byte[] bytes = new byte[length];
+	    input.readFully(bytes);
+	    data = bytes;
+	}
 	if (howMuch >= ClassInfo.ALL) {
 	    if (unknownAttributes == null)
 		unknownAttributes = new SimpleMap();
@@ -175,72 +174,118 @@ public class BinaryInfo {
 	}
     }
 
-    static class ConstrainedInputStream extends FilterInputStream {
-	int length;
-
-	public ConstrainedInputStream(int attrLength, InputStream input) {
-	    super(input);
-	    length = attrLength;
-	}
+    /**
+     * Reads in an attributes of this class from a buffer.  This is
+     * called for every attribute when a class is read.  Overwrite
+     * this method if you want to handle your own attributes.  If you
+     * don't know how to handle an attribute call this method for the
+     * super class.  The default implementation calls the stream based
+     * {@link #readAttribute(String, int, ConstantPool,
+     * DataInputStream, int) readAttribute}.
+     * @param name the attribute name.
+     * @param length the length of the attribute.
+     * @param constantPool the constant pool of the class.
+     * @param input a view into the class file, that contains exactly
+     * the attribute.  It shares the contents with the class file, so
+     * you mustn't change them.
+     * @param howMuch the constant that was given to the {@link
+     * ClassInfo#load} function when loading this class.
+     */
+    protected void readAttribute(String name, int length,
+				 ConstantPool constantPool,
+				 ByteBuffer input,
+				 int howMuch) throws IOException {
+	readAttribute(name, length, constantPool,
+		      new AttributeInputStream(input), howMuch);
+    }
 
-	public int read() throws IOException {
-	    if (length > 0) {
-		int data = super.read();
-		length--;
-		return data;
-	    }
-	    throw new EOFException();
-	}
+    /**
+     * The stream that is given to the stream based readAttribute
+     * method.  It remembers the buffer, so that unknown attributes
+     * can be kept without copying them.
+     */
+    static class AttributeInputStream extends DataInputStream {
+	ByteBuffer buffer;
 
-	public int read(byte[] b, int off, int len) throws IOException {
-	    if (length < len) {
-		len = length;
-	    }
-	    if (len == 0)
-		return -1;
-	    int count = super.read(b, off, len);
-	    length -= count;
-	    return count;
+	public AttributeInputStream(ByteBuffer buffer) {
+	    super(new ZipIndex.ByteBufferInputStream(buffer));
+	    this.buffer = buffer;
 	}
+    }
 
-	public int read(byte[] b) throws IOException {
-	    return read(b, 0, b.length);
-	}
+    /**
+     * Returns a view of the next length bytes of the input and
+     * advances the input over them.
+     */
+    static ByteBuffer slice(ByteBuffer input, int length)
+	throws ClassFormatException {
+	if (length < 0 || length > input.remaining())
+	    throw new ClassFormatException("attribute too long");
+	ByteBuffer slice = input.slice();
+	slice.limit(length);
+	input.position(input.position() + length);
+	return slice;
+    }
 
-	public long skip(long count) throws IOException {
-	    if (length < count) {
-		count = length;
+    /**
+     * Skips the fields or methods of a class file without looking at
+     * them.  The input must be positioned at their count.
+     */
+    static void skipMembers(ByteBuffer input) throws ClassFormatException {
+	int count = input.getShort() & 0xffff;
+	for (int i = 0; i < count; i++) {
+	    /* modifiers, name, type */
+	    input.position(input.position() + 6);
+	    int attrCount = input.getShort() & 0xffff;
+	    for (int j = 0; j < attrCount; j++) {
+		input.getShort();
+		slice(input, input.getInt());
 	    }
-	    count = super.skip(count);
-	    length -= (int) count;
-	    return count;
 	}
+    }
 
-	public void skipRemaining() throws IOException {
-	    while (length > 0) {
-		int skipped = (int) skip(length);
-		if (skipped == 0)
-		    throw new EOFException();
-		length -= skipped;
-	    }
-	}
+    /**
+     * Gets the bit of the attribute mask given to {@link
+     * ClassInfo#load(int, int)}, that selects the attribute with the
+     * given name.  The small attributes, that are always read, have
+     * no bit.
+     */
+    static int getAttributeBit(String name) {
+	if (name.equals("Code"))
+	    return ClassInfo.ATTR_CODE;
+	if (name.equals("LineNumberTable"))
+	    return ClassInfo.ATTR_LNT;
+	if (name.equals("LocalVariableTable"))
+	    return ClassInfo.ATTR_LVT;
+	if (name.equals("Signature"))
+	    return ClassInfo.ATTR_SIGNATURES;
+	if (name.equals("Exceptions"))
+	    return ClassInfo.ATTR_EXCEPTIONS;
+	if (name.equals("InnerClasses"))
+	    return ClassInfo.ATTR_INNERCLASSES;
+	if (name.equals("ConstantValue")
+	    || name.equals("SourceFile")
+	    || name.equals("Synthetic")
+	    || name.equals("Deprecated")
+	    || name.equals("StackMapTable")
+	    || name.equals("EnclosingMethod"))
+	    return 0;
+	return ClassInfo.ATTR_UNKNOWN;
     }
 
     void readAttributes(ConstantPool constantPool,
-			DataInputStream input, 
-			int howMuch) throws IOException {
-	int count = input.readUnsignedShort();
+			ByteBuffer input,
+			int howMuch, int attributes) throws IOException {
+	int count = input.getShort() & 0xffff;
 	unknownAttributes = null;
 	for (int i=0; i< count; i++) {
 	    String attrName = 
-		constantPool.getUTF8(input.readUnsignedShort());
-	    final int attrLength = input.readInt();
-	    ConstrainedInputStream constrInput = 
-		    new ConstrainedInputStream(attrLength, input);
-	    readAttribute(attrName, attrLength, 
-			  constantPool, new DataInputStream(constrInput),
-			  howMuch);
-	    constrInput.skipRemaining();
+		constantPool.getUTF8(input.getShort() & 0xffff);
+	    int attrLength = input.getInt();
+	    ByteBuffer attrInput = slice(input, attrLength);
+	    if ((getAttributeBit(attrName) & ~attributes) == 0)
+		readAttribute(attrName, attrLength, constantPool,
+			      attrInput, howMuch);
 	}
     }
 
@@ -309,7 +354,7 @@ public class BinaryInfo {
 	    while (i.hasNext()) {
 		Map.Entry e = (Map.Entry) i.next();
 		String name = (String) e.getKey();
-		byte[] data = (byte[]) e.getValue();
+		byte[] data = toBytes(e.getValue());
 		output.writeShort(constantPool.putUTF8(name));
 		output.writeInt(data.length);
 		output.write(data);
@@ -334,7 +379,7 @@ public class BinaryInfo {
 	if (unknownAttributes != null) {
 	    Iterator i = unknownAttributes.values().iterator();
 	    while (i.hasNext())
-		size += 2 + 4 + ((byte[]) i.next()).length;
+		size += 2 + 4 + getLength(i.next());
 	}
 	return size;
     }
@@ -349,8 +394,14 @@ public class BinaryInfo {
      * @see #readAttribute
      */
     public byte[] findAttribute(String name) {
-	if (unknownAttributes != null)
-	    return (byte[]) unknownAttributes.get(name);
+	if (unknownAttributes != null) {
+	    Object data = unknownAttributes.get(name);
+	    if (data instanceof ByteBuffer) {
+		data = toBytes(data);
+		unknownAttributes.put(name, data);
+	    }
+	    return (byte[]) data;
+	}
 	return null;
     }
 
@@ -363,8 +414,15 @@ public class BinaryInfo {
      * @see #findAttribute
      */
     public Iterator getAttributes() {
-	if (unknownAttributes != null)
+	if (unknownAttributes != null) {
+	    Iterator i = unknownAttributes.entrySet().iterator();
+	    while (i.hasNext()) {
+		Map.Entry e = (Map.Entry) i.next();
+		if (e.getValue() instanceof ByteBuffer)
+		    e.setValue(toBytes(e.getValue()));
+	    }
 	    return unknownAttributes.entrySet().iterator();
+	}
 	return Collections.EMPTY_SET.iterator();
     }
 
@@ -392,10 +450,24 @@ public class BinaryInfo {
      */
     public byte[] removeAttribute(String name) {
 	if (unknownAttributes != null)
-	    return (byte[]) unknownAttributes.remove(name);
+	    return toBytes(unknownAttributes.remove(name));
 	return null;
     }
 
+    private static int getLength(Object data) {
+	return data instanceof ByteBuffer
+	    ? ((ByteBuffer) data).remaining() : ((byte[]) data).length;
+    }
+
+    private static byte[] toBytes(Object data) {
+	if (!(data instanceof ByteBuffer))
+	    return (byte[]) data;
+	ByteBuffer buffer = ((ByteBuffer) data).duplicate();
+	byte[] bytes = new byte[buffer.remaining()];
+	buffer.get(bytes);
+	return bytes;
+    }
+
     /**
      * Removes all non standard attributes.
      */
@@ -66,9 +66,26 @@ import java.io.PrintWriter;
  */
 public final class Block {
     /**
-     * The opcodes of the instructions in this block.
+     * The instructions in this block, null if the block is compact.
      */
     private Instruction[] instrs;
+    /**
+     * The instructions in compact form, null if the block isn't
+     * compact.  There are two entries for every instruction.  The
+     * first holds the line number and opcode, like
+     * Instruction.lineAndOpcode.  The second holds the index of the
+     * object parameter in compactArgs.  For <code>opc_iinc</code>
+     * the index is in the upper and the increment in the lower 16
+     * bits, for <code>opc_multianewarray</code> the dimension is in
+     * the lower 8 bits.
+     */
+    private int[] compactCode;
+    /**
+     * The object parameters of the compact instructions, i.e. the
+     * constants, local variable infos, references, types and switch
+     * values.
+     */
+    private Object[] compactArgs;
     
     /**
      * The blockNr of successor blocks
@@ -117,11 +134,143 @@ public final class Block {
     /**
      * Gets the list of instructions.  The returned list should not be
      * modified, except that the instructions (but not their opcodes)
-     * may be modified.
+     * may be modified.  If the block is compact, the instructions
+     * are created now and the block is no longer compact.
      */
     public Instruction[] getInstructions() {
+	if (instrs == null && compactCode != null)
+	    expand();
 	return instrs;
     }
+
+    /**
+     * Stores the instructions of this block in compact form, i.e. in
+     * an int array and a table of the object parameters, instead of
+     * an Instruction object for every opcode.  This saves much
+     * memory if the code of many methods is kept, but not looked at.
+     * The next call of {@link #getInstructions} creates new
+     * Instruction objects, so you mustn't keep the old ones.  <br>
+     *
+     * Blocks whose parameters don't fit into the compact form are
+     * left unchanged.
+     */
+    public void compact() {
+	if (instrs == null)
+	    return;
+	int size = instrs.length;
+	int[] code = new int[2 * size];
+	Object[] args = new Object[size];
+	int argCount = 0;
+	for (int i = 0; i < size; i++) {
+	    Instruction instr = instrs[i];
+	    int opcode = instr.getOpcode();
+	    int operand = argCount;
+	    switch (opcode) {
+	    case Opcodes.opc_ldc: case Opcodes.opc_ldc2_w:
+		args[argCount++] = instr.getConstant();
+		break;
+	    case Opcodes.opc_iinc: {
+		int incr = instr.getIncrement();
+		if (incr != (short) incr)
+		    return;
+		args[argCount++] = instr.getLocalInfo();
+		operand = (operand << 16) | (incr & 0xffff);
+		break;
+	    }
+	    case Opcodes.opc_multianewarray: {
+		int dims = instr.getDimensions();
+		if (dims < 0 || dims > 0xff)
+		    return;
+		args[argCount++] = instr.getClazzType();
+		operand = (operand << 8) | dims;
+		break;
+	    }
+	    case Opcodes.opc_new:
+	    case Opcodes.opc_checkcast:
+	    case Opcodes.opc_instanceof:
+		args[argCount++] = instr.getClazzType();
+		break;
+	    case Opcodes.opc_lookupswitch:
+		args[argCount++] = instr.getValues();
+		break;
+	    default:
+		if (instr.hasLocal())
+		    args[argCount++] = instr.getLocalInfo();
+		else if (opcode >= Opcodes.opc_getstatic
+			 && opcode <= Opcodes.opc_invokeinterface)
+		    args[argCount++] = instr.getReference();
+		else
+		    operand = 0;
+	    }
+	    code[2 * i] = (instr.getLineNr() << 8) | opcode;
+	    code[2 * i + 1] = operand;
+	}
+	if (argCount > 0xffff)
+	    return;
+	compactCode = code;
+	if (argCount > 0) {
+	    compactArgs = new Object[argCount];
+	    System.arraycopy(args, 0, compactArgs, 0, argCount);
+	}
+	instrs = null;
+    }
+
+    /**
+     * Creates the instruction objects for a compact block.
+     */
+    private void expand() {
+	int[] code = compactCode;
+	Object[] args = compactArgs;
+	Instruction[] result = new Instruction[code.length / 2];
+	for (int i = 0; i < result.length; i++) {
+	    int opcode = code[2 * i] & 0xff;
+	    int operand = code[2 * i + 1];
+	    Instruction instr;
+	    switch (opcode) {
+	    case Opcodes.opc_ldc: case Opcodes.opc_ldc2_w:
+		instr = new ConstantInstruction(opcode, args[operand]);
+		break;
+	    case Opcodes.opc_iinc:
+		instr = new IncInstruction
+		    (opcode, (LocalVariableInfo) args[operand >>> 16],
+		     (short) operand);
+		break;
+	    case Opcodes.opc_multianewarray:
+		instr = new TypeDimensionInstruction
+		    (opcode, (String) args[operand >>> 8], operand & 0xff);
+		break;
+	    case Opcodes.opc_new:
+	    case Opcodes.opc_checkcast:
+	    case Opcodes.opc_instanceof:
+		instr = new TypeInstruction(opcode, (String) args[operand]);
+		break;
+	    case Opcodes.opc_lookupswitch:
+		instr = new SwitchInstruction(opcode, (int[]) args[operand]);
+		break;
+	    case Opcodes.opc_ret:
+		instr = new SlotInstruction
+		    (opcode, (LocalVariableInfo) args[operand]);
+		break;
+	    default:
+		if (opcode >= Opcodes.opc_iload && opcode <= Opcodes.opc_aload
+		    || (opcode >= Opcodes.opc_istore
+			&& opcode <= Opcodes.opc_astore))
+		    instr = new SlotInstruction
+			(opcode, (LocalVariableInfo) args[operand]);
+		else if (opcode >= Opcodes.opc_getstatic
+			 && opcode <= Opcodes.opc_invokeinterface)
+		    instr = new ReferenceInstruction
+			(opcode, (Reference) args[operand]);
+		else
+		    instr = new Instruction(opcode);
+	    }
+	    instr.setLineNr(code[2 * i] >> 8);
+	    result[i] = instr;
+	}
+	instrs = result;
+	compactCode = null;
+	compactArgs = null;
+    }
     
     /**
      * Gets the successor array.  The last successor is the next basic
@@ -248,10 +397,13 @@ public final class Block {
     public void setCode(Instruction[] instrs, Block[] succs) {
 	this.instrs = instrs;
 	this.succs = succs;
+	compactCode = null;
+	compactArgs = null;
 	initCode();
     }
 
     public void dumpCode(PrintWriter output) {
+	Instruction[] instrs = getInstructions();
 	output.println("    "+this+":");
 	for (int i = 0; i < instrs.length; i++) {
 	    Instruction instr = instrs[i];
@@ -0,0 +1,129 @@
+/* ClassFileBuffer Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.bytecode;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The stream a class file is written to before it is given to its
+ * destination.  The bytes are collected in a growable buffer, so that
+ * the length of an attribute can be written after its contents (see
+ * {@link #patchInt}), instead of computing it in advance.  <br>
+ *
+ * Every thread has its own buffer, which is reused for all classes
+ * it writes.
+ *
+ * @author Jochen Hoenicke
+ */
+class ClassFileBuffer extends DataOutputStream {
+    /**
+     * The size of a new buffer, enough for most classes.
+     */
+    private static final int INITIAL_CAPACITY = 16384;
+    /**
+     * Buffers that grew larger than this aren't kept for the next
+     * class.
+     */
+    private static final int MAX_KEPT_CAPACITY = 1 << 20;
+
+    private static final ThreadLocal buffers = new ThreadLocal();
+
+    /**
+     * The sink of the data output stream.
+     */
+    private static class Sink extends OutputStream {
+	ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+	private void ensureCapacity(int length) {
+	    if (buffer.remaining() < length) {
+		int capacity = buffer.capacity() * 2;
+		while (capacity - buffer.position() < length)
+		    capacity *= 2;
+		ByteBuffer newBuffer = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		newBuffer.put(buffer);
+		buffer = newBuffer;
+	    }
+	}
+
+	public void write(int b) {
+	    ensureCapacity(1);
+	    buffer.put((byte) b);
+	}
+
+	public void write(byte[] data, int offset, int length) {
+	    ensureCapacity(length);
+	    buffer.put(data, offset, length);
+	}
+    }
+
+    private ClassFileBuffer() {
+	super(new Sink());
+    }
+
+    /**
+     * Gets the empty buffer of the current thread.
+     */
+    static ClassFileBuffer getBuffer() {
+	ClassFileBuffer output = (ClassFileBuffer) buffers.get();
+	if (output == null) {
+	    output = new ClassFileBuffer();
+	    buffers.set(output);
+	}
+	output.getByteBuffer().clear();
+	return output;
+    }
+
+    private ByteBuffer getByteBuffer() {
+	return ((Sink) out).buffer;
+    }
+
+    /**
+     * Gets the number of bytes written since the buffer was taken.
+     */
+    public int position() {
+	return getByteBuffer().position();
+    }
+
+    /**
+     * Overwrites four bytes that were already written.  This is used
+     * to fill in the length of an attribute after its contents.
+     * @param pos the position of the int.
+     * @param value the value.
+     */
+    public void patchInt(int pos, int value) {
+	getByteBuffer().putInt(pos, value);
+    }
+
+    /**
+     * Writes the contents of this buffer to the given stream, in a
+     * single write.  Afterwards the buffer may be reused.
+     * @param dest the stream the class is written to.
+     * @exception IOException if dest throws an exception.
+     */
+    public void writeTo(OutputStream dest) throws IOException {
+	ByteBuffer buffer = getByteBuffer();
+	dest.write(buffer.array(), 0, buffer.position());
+	if (buffer.capacity() > MAX_KEPT_CAPACITY)
+	    buffers.set(null);
+    }
+}
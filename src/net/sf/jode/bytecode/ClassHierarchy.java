@@ -0,0 +1,369 @@
+/* ClassHierarchy Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.bytecode;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * An index of the class hierarchy of a class path, that answers
+ * subclass and implements questions without walking the super
+ * classes.  Use {@link ClassPath#getHierarchy} to get the index of
+ * a class path. <br>
+ *
+ * The index is built incrementally: the entry of a class is created
+ * the first time it is asked for, which loads the hierarchy of the
+ * class and of all its super classes and interfaces.  Each entry
+ * contains
+ *
+ * <ul><li>the chain of super classes, starting with the root class,
+ * so that <code>chain[depth]</code> is the class itself.  A class
+ * extends another class if the other class is in its chain at the
+ * other's depth.</li>
+ * <li>a bit set of all interfaces the class implements, directly or
+ * through its super classes and super interfaces.  Every class that
+ * is used as interface gets its own bit.</li></ul>
+ *
+ * Unlike pre- and post-order numbering of the whole tree, this
+ * doesn't need to be renumbered when classes are loaded later.  If
+ * the super class or the interfaces of a class are changed, the
+ * whole index is invalidated and rebuilt on demand. <br>
+ *
+ * The entries are immutable and the methods may be called by several
+ * threads at once.  Classes are never loaded while the index is
+ * locked.
+ *
+ * @author Jochen Hoenicke
+ */
+public final class ClassHierarchy {
+    /**
+     * The entry of a class in the index.
+     */
+    static final class Node {
+	final ClassHierarchy hierarchy;
+	final int generation;
+	/**
+	 * The super classes, starting with the root; the last element
+	 * is the class itself.
+	 */
+	final ClassInfo[] chain;
+	/**
+	 * The bits of all interfaces the class implements.
+	 */
+	final BitSet interfaces;
+	/**
+	 * The bit of this class, if it is used as interface, -1
+	 * otherwise.  It is only assigned while the index is locked.
+	 */
+	int interfaceBit = -1;
+
+	Node(ClassHierarchy hierarchy, int generation,
+	     ClassInfo[] chain, BitSet interfaces) {
+	    this.hierarchy = hierarchy;
+	    this.generation = generation;
+	    this.chain = chain;
+	    this.interfaces = interfaces;
+	}
+    }
+
+    private ClassPath classpath;
+    /**
+     * The number of interface bits that were given out.
+     */
+    private int interfaceCount = 0;
+    /**
+     * Counts the changes of the hierarchy.  Entries created before
+     * the last change are ignored.
+     */
+    private volatile int generation = 0;
+
+    ClassHierarchy(ClassPath classpath) {
+	this.classpath = classpath;
+    }
+
+    /**
+     * Tells the index that the super class or the interfaces of a
+     * class changed.
+     */
+    synchronized void invalidate() {
+	generation++;
+	interfaceCount = 0;
+    }
+
+    private Node getValidNode(ClassInfo clazz) {
+	Node node = clazz.hierarchyNode;
+	if (node != null && node.hierarchy == this
+	    && node.generation == generation)
+	    return node;
+	return null;
+    }
+
+    /**
+     * Gets the entry of a class, creating it if necessary.
+     * @exception IOException if the hierarchy of the class couldn't be
+     * loaded.
+     */
+    Node getNode(ClassInfo clazz) throws IOException {
+	Node node = getValidNode(clazz);
+	if (node != null)
+	    return node;
+	return createNode(clazz, new ClassInfo[0]);
+    }
+
+    /**
+     * Creates the entry of a class and the missing entries of its
+     * super classes and interfaces.
+     * @param path the classes whose entries are being created, that
+     * extend or implement clazz.  It is used to detect cycles.
+     */
+    private Node createNode(ClassInfo clazz, ClassInfo[] path)
+	throws IOException
+    {
+	for (int i = 0; i < path.length; i++) {
+	    if (path[i] == clazz)
+		throw new ClassFormatException
+		    ("Cyclic class hierarchy at " + clazz);
+	}
+	ClassInfo[] subPath = new ClassInfo[path.length + 1];
+	System.arraycopy(path, 0, subPath, 0, path.length);
+	subPath[path.length] = clazz;
+
+	while (true) {
+	    int gen = generation;
+	    clazz.loadHierarchy();
+	    ClassInfo superclass = clazz.getSuperclass();
+	    ClassInfo[] ifaces = clazz.getInterfaces();
+
+	    Node superNode = null;
+	    if (superclass != null) {
+		superNode = getValidNode(superclass);
+		if (superNode == null)
+		    superNode = createNode(superclass, subPath);
+	    }
+	    Node[] ifaceNodes = new Node[ifaces.length];
+	    for (int i = 0; i < ifaces.length; i++) {
+		ifaceNodes[i] = getValidNode(ifaces[i]);
+		if (ifaceNodes[i] == null)
+		    ifaceNodes[i] = createNode(ifaces[i], subPath);
+	    }
+
+	    ClassInfo[] chain;
+	    if (superNode != null) {
+		ClassInfo[] superChain = superNode.chain;
+		chain = new ClassInfo[superChain.length + 1];
+		System.arraycopy(superChain, 0, chain, 0, superChain.length);
+	    } else
+		chain = new ClassInfo[1];
+	    chain[chain.length - 1] = clazz;
+
+	    synchronized (this) {
+		if (gen != generation)
+		    /* The hierarchy changed meanwhile; start again. */
+		    continue;
+		Node node = getValidNode(clazz);
+		if (node != null)
+		    return node;
+		BitSet bits = new BitSet();
+		if (superNode != null)
+		    bits.or(superNode.interfaces);
+		for (int i = 0; i < ifaceNodes.length; i++) {
+		    if (ifaceNodes[i].interfaceBit == -1)
+			ifaceNodes[i].interfaceBit = interfaceCount++;
+		    bits.set(ifaceNodes[i].interfaceBit);
+		    bits.or(ifaceNodes[i].interfaces);
+		}
+		node = new Node(this, gen, chain, bits);
+		clazz.hierarchyNode = node;
+		return node;
+	    }
+	}
+    }
+
+    /**
+     * Checks if a class is a super class of another class, or the
+     * same class.
+     * @param parent the possible super class.
+     * @param child the class that should extend parent.
+     * @return true if parent is child or a super class of child.
+     * @exception IOException if the hierarchy of child couldn't be
+     * loaded up to parent.
+     * @see ClassInfo#superClassOf
+     */
+    public boolean isSuperclassOf(ClassInfo parent, ClassInfo child)
+	throws IOException
+    {
+	if (parent == child)
+	    return true;
+	if (child == null)
+	    return false;
+	ClassInfo[] childChain;
+	try {
+	    childChain = getNode(child).chain;
+	} catch (ClassFormatException ex) {
+	    throw ex;
+	} catch (IOException ex) {
+	    /* Some class of the hierarchy is missing, but parent may
+	     * be found before it.
+	     */
+	    return walkSuperclasses(parent, child);
+	}
+	Node parentNode = getValidNode(parent);
+	if (parentNode == null)
+	    /* The hierarchy changed meanwhile, or parent isn't in the
+	     * chain at all.
+	     */
+	    return contains(childChain, parent);
+	int depth = parentNode.chain.length - 1;
+	return depth < childChain.length && childChain[depth] == parent;
+    }
+
+    private static boolean contains(ClassInfo[] chain, ClassInfo clazz) {
+	for (int i = 0; i < chain.length; i++) {
+	    if (chain[i] == clazz)
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * Checks if an interface is implemented by a class.  Like
+     * {@link ClassInfo#implementedBy}, this is also true if iface is
+     * not an interface but a super class of clazz.
+     * @param iface the interface.
+     * @param clazz the class that should implement the interface.
+     * @return true if clazz implements or extends iface, or is iface.
+     * @exception IOException if the hierarchy of clazz couldn't be
+     * loaded up to iface.
+     */
+    public boolean implementedBy(ClassInfo iface, ClassInfo clazz)
+	throws IOException
+    {
+	if (iface == clazz)
+	    return true;
+	if (clazz == null)
+	    return false;
+	Node node;
+	try {
+	    node = getNode(clazz);
+	} catch (ClassFormatException ex) {
+	    throw ex;
+	} catch (IOException ex) {
+	    /* Some class of the hierarchy is missing, but iface may
+	     * be found before it.
+	     */
+	    return walkInterfaces(iface, clazz);
+	}
+	Node ifaceNode = getValidNode(iface);
+	if (ifaceNode == null)
+	    /* The hierarchy changed meanwhile, or iface isn't in the
+	     * hierarchy of clazz at all.
+	     */
+	    return contains(node.chain, iface);
+	int depth = ifaceNode.chain.length - 1;
+	if (depth < node.chain.length && node.chain[depth] == iface)
+	    return true;
+	int bit = ifaceNode.interfaceBit;
+	return bit != -1 && node.interfaces.get(bit);
+    }
+
+    /**
+     * Walks the super classes of child until parent is found.  This
+     * is used if the index can't be built, since it only loads the
+     * classes below parent.
+     */
+    private boolean walkSuperclasses(ClassInfo parent, ClassInfo child)
+	throws IOException
+    {
+	while (child != parent && child != null) {
+	    child.loadHierarchy();
+	    child = child.getSuperclass();
+	}
+	return child == parent;
+    }
+
+    /**
+     * Walks the super classes and interfaces of clazz until iface is
+     * found.  This is used if the index can't be built, since it only
+     * loads the classes below iface.
+     */
+    private boolean walkInterfaces(ClassInfo iface, ClassInfo clazz)
+	throws IOException
+    {
+	while (clazz != iface && clazz != null) {
+	    clazz.loadHierarchy();
+	    ClassInfo[] ifaces = clazz.getInterfaces();
+	    for (int i = 0; i < ifaces.length; i++) {
+		if (implementedBy(iface, ifaces[i]))
+		    return true;
+	    }
+	    clazz = clazz.getSuperclass();
+	}
+	return clazz == iface;
+    }
+
+    /**
+     * Gets the most specific class that two classes extend.
+     * Interfaces are not considered.
+     * @param class1 the first class.
+     * @param class2 the second class.
+     * @return the most specific common super class, or null if the
+     * classes have different root classes.
+     * @exception IOException if the hierarchy of a class couldn't be
+     * loaded.
+     */
+    public ClassInfo getCommonSuperclass(ClassInfo class1, ClassInfo class2)
+	throws IOException
+    {
+	if (class1 == class2)
+	    return class1;
+	ClassInfo[] chain1 = getNode(class1).chain;
+	ClassInfo[] chain2 = getNode(class2).chain;
+	/* The chains are equal up to the common super class; search
+	 * the last equal element.
+	 */
+	int low = 0;
+	int high = Math.min(chain1.length, chain2.length);
+	if (chain1[0] != chain2[0])
+	    return null;
+	while (high - low > 1) {
+	    int mid = (low + high) >>> 1;
+	    if (chain1[mid] == chain2[mid])
+		low = mid;
+	    else
+		high = mid;
+	}
+	return chain1[low];
+    }
+
+    /**
+     * Gets the depth of a class in the hierarchy.  The root class,
+     * usually java.lang.Object, has depth zero.
+     * @param clazz the class.
+     * @return the number of super classes of clazz.
+     * @exception IOException if the hierarchy of clazz couldn't be
+     * loaded.
+     */
+    public int getDepth(ClassInfo clazz) throws IOException {
+	return getNode(clazz).chain.length - 1;
+    }
+
+    public String toString() {
+	return "ClassHierarchy[" + classpath + "]";
+    }
+}
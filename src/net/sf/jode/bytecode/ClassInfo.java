@@ -25,6 +25,8 @@ import java.io.DataOutputStream;
 import java.io.OutputStream;
 import java.io.IOException;
 import java.io.FileNotFoundException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Enumeration;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -233,8 +235,39 @@ import java.lang.reflect.Modifier;
 public final class ClassInfo extends BinaryInfo implements Comparable {
 
     private static ClassPath defaultClasspath;
-    
-    private int status = 0;
+
+    /**
+     * Outer class information for another class, that was found
+     * while this class was read.
+     */
+    private static class OuterInfo {
+	ClassInfo target;
+	String className;
+	ClassInfo outer;
+	int modifiers;
+	boolean methodScoped;
+
+	OuterInfo(ClassInfo target, String className, ClassInfo outer,
+		  int modifiers, boolean methodScoped) {
+	    this.target = target;
+	    this.className = className;
+	    this.outer = outer;
+	    this.modifiers = modifiers;
+	    this.methodScoped = methodScoped;
+	}
+    }
+
+    /**
+     * The amount of information that is loaded.  It is volatile and
+     * always written last, so that a thread that sees the new status
+     * without locking also sees the loaded information.
+     */
+    private volatile int status = 0;
+    /**
+     * True if the fields and methods were skipped when the class
+     * file was read, because only the hierarchy was requested.
+     */
+    private boolean declarationsSkipped = false;
 
     private boolean modified = false;
     private boolean isGuessed = false;
@@ -253,6 +286,54 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
     private MethodInfo[] methods;
     private String sourceFile;
     private boolean hasInnerClassesAttr;
+    /**
+     * The outer class information for other classes, that was found
+     * while this class was read.  The outer information of a class
+     * is guarded by its own lock, and a thread never holds the locks
+     * of two classes at once, so it is merged into the other classes
+     * after the lock of this class was released.  This list is
+     * guarded by the lock of this class.
+     */
+    private List pendingOuterInfo;
+    /**
+     * The number of entries in the constant pool of the class file
+     * this class was read from, 0 if it wasn't read.  It is used to
+     * size the constant pool when the class is written.
+     */
+    private int constantPoolSize;
+    /**
+     * The class file version this class is written with.  Versions
+     * 50 and later get stack map frames for every method.
+     */
+    private int majorVersion = 45;
+    private int minorVersion = 3;
+    /**
+     * The attributes that were read with the current status, see
+     * {@link #load(int, int)}.
+     */
+    private int loadedAttributes;
+    /**
+     * The attributes the next read should read.  This is only
+     * changed by load while it holds the lock.
+     */
+    private int wantedAttributes = ATTR_ALL;
+    /**
+     * The entry of this class in the hierarchy index of the class
+     * path, see {@link ClassHierarchy}.
+     */
+    volatile ClassHierarchy.Node hierarchyNode;
+    /**
+     * The hash indices of the fields and methods, see {@link
+     * MemberTable}.  They are created when a class with many members
+     * is searched and replaced when they are out of date.
+     */
+    private MemberTable fieldTable;
+    private MemberTable methodTable;
+    /**
+     * Counts the renamed fields and methods of this class.  A member
+     * table is only valid while this doesn't change.
+     */
+    private volatile int memberRenames = 0;
     
     /**
      * The type signature that also contains template information.
@@ -332,6 +413,56 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      */
     public static final int ALL                = 100;
 
+    /**
+     * This bit can be given in the attribute mask of {@link
+     * #load(int, int)}.  It selects the Signature attributes, that
+     * contain the template information of the class and its members.
+     */
+    public static final int ATTR_SIGNATURES   = 0x0001;
+    /**
+     * This bit can be given in the attribute mask of {@link
+     * #load(int, int)}.  It selects the Code attributes of the
+     * methods.  Without it the methods look like abstract or native
+     * methods.  It only matters for {@link #NODEBUG} and more.
+     */
+    public static final int ATTR_CODE         = 0x0002;
+    /**
+     * This bit can be given in the attribute mask of {@link
+     * #load(int, int)}.  It selects the local variable tables of the
+     * methods.  It only matters for {@link #ALMOSTALL} and more.
+     */
+    public static final int ATTR_LVT          = 0x0004;
+    /**
+     * This bit can be given in the attribute mask of {@link
+     * #load(int, int)}.  It selects the line number tables of the
+     * methods.  It only matters for {@link #ALMOSTALL} and more.
+     */
+    public static final int ATTR_LNT          = 0x0008;
+    /**
+     * This bit can be given in the attribute mask of {@link
+     * #load(int, int)}.  It selects the InnerClasses attribute.
+     * Without it the class has no inner classes and the classes it
+     * mentions get no outer class information from it.
+     */
+    public static final int ATTR_INNERCLASSES = 0x0010;
+    /**
+     * This bit can be given in the attribute mask of {@link
+     * #load(int, int)}.  It selects the non-standard attributes.  It
+     * only matters for {@link #ALL}.
+     */
+    public static final int ATTR_UNKNOWN      = 0x0020;
+    /**
+     * This bit can be given in the attribute mask of {@link
+     * #load(int, int)}.  It selects the Exceptions attributes, that
+     * list the exceptions the methods throw.
+     */
+    public static final int ATTR_EXCEPTIONS   = 0x0040;
+    /**
+     * The attribute mask that selects all attributes.  This is what
+     * {@link #load(int)} reads.
+     */
+    public static final int ATTR_ALL          = 0x007f;
+
     /**
      * @deprecated
      */
@@ -387,7 +518,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	 * stream.
 	 */
 	if (name != null)
-	    this.name = name.intern();
+	    this.name = classpath.getSymbolTable().intern(name);
 	this.classpath = classpath;
     }
 
@@ -442,9 +573,58 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
              + modifiers + "<->" + newModifiers);
     }
 
-    private void mergeOuterInfo(String className, ClassInfo outer, 
-				int realModifiers, boolean ms) 
-	throws ClassFormatException 
+    /**
+     * Merges outer class information that was read from this class
+     * into the given class.  The lock of this class must be held.
+     * The information for other classes is only remembered and
+     * merged by {@link #mergePendingOuterInfo}.
+     */
+    private void addOuterInfo(ClassInfo target, String className,
+			      ClassInfo outer, int realModifiers, boolean ms)
+	throws ClassFormatException
+    {
+	if (target == this) {
+	    mergeOuterInfo(className, outer, realModifiers, ms);
+	    return;
+	}
+	if (pendingOuterInfo == null)
+	    pendingOuterInfo = new ArrayList();
+	pendingOuterInfo.add(new OuterInfo(target, className, outer,
+					   realModifiers, ms));
+    }
+
+    /**
+     * Merges the outer class information that was found while this
+     * class was read into the other classes, locking each of them.
+     * This does nothing while the current thread holds the lock of
+     * this class; the outermost load or read does it.
+     */
+    private void mergePendingOuterInfo() throws ClassFormatException {
+	if (Thread.holdsLock(this))
+	    return;
+	List pending;
+	synchronized (this) {
+	    pending = pendingOuterInfo;
+	    pendingOuterInfo = null;
+	}
+	if (pending == null)
+	    return;
+	for (Iterator i = pending.iterator(); i.hasNext(); ) {
+	    OuterInfo info = (OuterInfo) i.next();
+	    synchronized (info.target) {
+		info.target.mergeOuterInfo(info.className, info.outer,
+					   info.modifiers, info.methodScoped);
+	    }
+	}
+    }
+
+    /**
+     * Merges outer class information into this class.  The lock of
+     * this class must be held.
+     */
+    private void mergeOuterInfo(String className, ClassInfo outer,
+				int realModifiers, boolean ms)
+	throws ClassFormatException
     {
 	if (status >= OUTERCLASS) {
 	    if ((className == null 
@@ -473,12 +653,16 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	    this.className = className;
 	    this.outerClass = outer;
 	    this.methodScoped = ms;
+	    /* This is what the InnerClasses attribute of this class
+	     * would tell.
+	     */
+	    this.loadedAttributes = ATTR_INNERCLASSES;
 	    this.status = OUTERCLASS;
 	}
     }
 
     private void readInnerClassesAttribute(int length, ConstantPool cp,
-					   DataInputStream input)
+					   ByteBuffer input)
 	throws IOException
     {
 	/* The InnerClasses attribute is transformed in a special way
@@ -496,7 +680,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 
 	hasInnerClassesAttr = true;
 	    
-	int count = input.readUnsignedShort();
+	int count = input.getShort() & 0xffff;
 	if (length != 2 + 8 * count)
 	    throw new ClassFormatException
 		("InnerClasses attribute has wrong length");
@@ -509,14 +693,14 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	ClassInfo[] innerCIs = new ClassInfo[count];
 
 	for (int i = 0; i < count; i++) {
-	    int innerIndex = input.readUnsignedShort();
-	    int outerIndex = input.readUnsignedShort();
-	    int nameIndex = input.readUnsignedShort();
+	    int innerIndex = input.getShort() & 0xffff;
+	    int outerIndex = input.getShort() & 0xffff;
+	    int nameIndex = input.getShort() & 0xffff;
 	    String inner = cp.getClassName(innerIndex);
 	    String outer = outerIndex != 0
 		? cp.getClassName(outerIndex) : null;
 	    String innername = nameIndex != 0 ? cp.getUTF8(nameIndex) : null;
-	    int access = input.readUnsignedShort();
+	    int access = input.getShort() & 0xffff;
 	    if (innername != null && innername.length() == 0)
 		innername = null;
 
@@ -541,8 +725,8 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	    ClassInfo outerCI = outer != null
 		? classpath.getClassInfo(outer) : null;
 
-	    innerCI.mergeOuterInfo(innername, outerCI, 
-				   access, outerCI == null);
+	    addOuterInfo(innerCI, innername, outerCI,
+			 access, outerCI == null);
 	    if (outerCI == this)
 		innerCIs[innerCount++] = innerCI;
 	}
@@ -560,18 +744,23 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 
     protected void readAttribute(String name, int length,
 				 ConstantPool cp,
-				 DataInputStream input, 
+				 ByteBuffer input,
 				 int howMuch) throws IOException {
 	if (howMuch >= ClassInfo.ALMOSTALL && name.equals("SourceFile")) {
 	    if (length != 2)
 		throw new ClassFormatException("SourceFile attribute"
 					       + " has wrong length");
-	    sourceFile = cp.getUTF8(input.readUnsignedShort());
+	    sourceFile = cp.getUTF8(input.getShort() & 0xffff);
 	} else if (howMuch >= ClassInfo.OUTERCLASS
 		   && name.equals("InnerClasses")) {
 	    readInnerClassesAttribute(length, cp, input);
 	} else if (name.equals("Signature")) {
-	    signature = cp.getUTF8(input.readUnsignedShort());
+	    signature = cp.getUTF8(input.getShort() & 0xffff);
+	} else if (name.equals("EnclosingMethod")) {
+	    /* This refers to entries of the constant pool, so it can't
+	     * be written back unchanged.  Class versions before 49
+	     * don't have it.
+	     */
 	} else if (name.equals("Deprecated")) {
 	    deprecatedFlag = true;
 	    if (length != 0)
@@ -581,43 +770,55 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	    super.readAttribute(name, length, cp, input, howMuch);
     }
 
-    void loadFromReflection(Class clazz, int howMuch) 
-	throws SecurityException, ClassFormatException {
-	if (howMuch >= OUTERCLASS) {
-	    Class declarer = clazz.getDeclaringClass();
-	    if (declarer != null) {
-		/* We have to guess the className, since reflection doesn't
-		 * tell it :-(
-		 */
-		int dollar = name.lastIndexOf('$');
-		className = name.substring(dollar+1);
-		outerClass = classpath.getClassInfo(declarer.getName());
-		/* As mentioned above OUTERCLASS is recursive */
-		if (outerClass.status < OUTERCLASS)
-		    outerClass.loadFromReflection(declarer, OUTERCLASS);
+    /**
+     * Adds the outer class information of a class that is loaded by
+     * reflection, see {@link #addOuterInfo}.
+     * @param target the class info of clazz.
+     * @param clazz the class.
+     */
+    private void addReflectionOuterInfo(ClassInfo target, Class clazz)
+	throws ClassFormatException
+    {
+	String name = target.name;
+	String className = null;
+	ClassInfo outer = null;
+	boolean ms = false;
+	Class declarer = clazz.getDeclaringClass();
+	if (declarer != null) {
+	    /* We have to guess the className, since reflection doesn't
+	     * tell it :-(
+	     */
+	    int dollar = name.lastIndexOf('$');
+	    className = name.substring(dollar+1);
+	    outer = classpath.getClassInfo(declarer.getName());
+	    /* As mentioned above OUTERCLASS is recursive */
+	    if (outer.status < OUTERCLASS)
+		addReflectionOuterInfo(outer, declarer);
+	} else {
+	    /* Check if class name ends with $[numeric]$name or
+	     * $[numeric], in which case it is a method scoped
+	     * resp.  anonymous class.
+	     */
+	    int dollar = name.lastIndexOf('$');
+	    if (dollar >= 0 && Character.isDigit(name.charAt(dollar+1))) {
+		/* anonymous class */
+		ms = true;
 	    } else {
-		/* Check if class name ends with $[numeric]$name or
-		 * $[numeric], in which case it is a method scoped
-		 * resp.  anonymous class.  
-		 */
-		int dollar = name.lastIndexOf('$');
-		if (dollar >= 0 && Character.isDigit(name.charAt(dollar+1))) {
-		    /* anonymous class */
-		    className = null;
-		    outerClass = null;
-		    methodScoped = true;
-		} else {
-		    int dollar2 = name.lastIndexOf('$', dollar);
-		    if (dollar2 >= 0
-			&& Character.isDigit(name.charAt(dollar2+1))) {
-			className = name.substring(dollar+1);
-			outerClass = null;
-			methodScoped = true;
-		    }
+		int dollar2 = name.lastIndexOf('$', dollar);
+		if (dollar2 >= 0
+		    && Character.isDigit(name.charAt(dollar2+1))) {
+		    className = name.substring(dollar+1);
+		    ms = true;
 		}
 	    }
-		
 	}
+	addOuterInfo(target, className, outer, -1, ms);
+    }
+
+    void loadFromReflection(Class clazz, int howMuch) 
+	throws SecurityException, ClassFormatException {
+	if (howMuch >= OUTERCLASS)
+	    addReflectionOuterInfo(this, clazz);
 	if (howMuch >= HIERARCHY) {
 	    modifiers = clazz.getModifiers();
 	    if (clazz.getSuperclass() == null)
@@ -684,17 +885,20 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 		methods[--methodPtr] = new MethodInfo
 		    ("<init>", type, cs[i].getModifiers());
 	    }
+	    claimMembers(fields);
+	    claimMembers(methods);
 	    if (is.length > 0) {
 		innerClasses = new ClassInfo[is.length];
 		for (int i = is.length; --i >= 0; ) {
 		    innerClasses[i] = classpath.getClassInfo(is[i].getName());
 		    /* As mentioned above OUTERCLASS is loaded recursive */
 		    if (innerClasses[i].status < OUTERCLASS)
-			innerClasses[i].loadFromReflection(is[i], OUTERCLASS);
+			addReflectionOuterInfo(innerClasses[i], is[i]);
 		}
 	    } else
 		innerClasses = EMPTY_INNER;
 	}
+	loadedAttributes = ATTR_ALL;
 	status = howMuch;
     }
     
@@ -702,7 +906,8 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * Reads a class file from a data input stream.  Normally you should
      * <code>load</code> a class from its classpath instead.  This may
      * be useful for special kinds of input streams, that ClassPath 
-     * doesn't handle.
+     * doesn't handle.  The stream is read until its end, and the
+     * class is read by {@link #read(ByteBuffer, int)}.
      *
      * @param input The input stream, containing the class in standard
      *              bytecode format.
@@ -714,91 +919,203 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * @exception IllegalStateException if this ClassInfo was modified.
      * @see #load
      */
-    public void read(DataInputStream input, int howMuch) 
+    public void read(DataInputStream input, int howMuch)
 	throws IOException 
     {
 	if (modified)
 	    throw new IllegalStateException(name);
-	if (status >= howMuch)
+	if (isLoaded(howMuch, wantedAttributes))
 	    return;
 
-	/* Since we have to read the whole class anyway, we load all
-	 * info, that we may need later and that does not take much memory. 
+	byte[] contents = new byte[4096];
+	int length = 0;
+	int count;
+	while ((count = input.read(contents, length, contents.length - length))
+	       != -1) {
+	    length += count;
+	    if (length == contents.length) {
+		byte[] newContents = new byte[2 * contents.length];
+		System.arraycopy(contents, 0, newContents, 0, length);
+		contents = newContents;
+	    }
+	}
+	read(ByteBuffer.wrap(contents, 0, length), howMuch);
+    }
+
+    /**
+     * Reads a class file from a buffer.  Normally you should
+     * <code>load</code> a class from its classpath instead.  The
+     * buffer may be a heap buffer or a direct or mapped buffer.  The
+     * constant pool, the code and unknown attributes are not copied,
+     * but kept as views into the buffer and decoded when they are
+     * requested, so you mustn't change the contents of the buffer
+     * afterwards.
+     *
+     * @param input The buffer, containing the class in standard
+     *              bytecode format from its position on.
+     * @param howMuch The amount of information that should be read in, one
+     *                of HIERARCHY, PUBLICDECLARATIONS, DECLARATIONS or ALL.
+     * @exception ClassFormatException if the buffer doesn't contain a
+     * valid class.
+     * @exception IOException if an attribute reader throws an exception.
+     * @exception IllegalStateException if this ClassInfo was modified.
+     * @see #load
+     */
+    public void read(ByteBuffer input, int howMuch)
+	throws IOException
+    {
+	synchronized (this) {
+	    if (modified)
+		throw new IllegalStateException(name);
+	    if (isLoaded(howMuch, wantedAttributes))
+		return;
+	    /* Some attributes are missing, read them again with the
+	     * information we already have.
+	     */
+	    if (howMuch < status)
+		howMuch = status;
+
+	    /* Don't change the position of the caller's buffer. */
+	    input = input.slice();
+	    try {
+		readClass(input, howMuch, wantedAttributes);
+	    } catch (BufferUnderflowException ex) {
+		throw new ClassFormatException("truncated class file");
+	    }
+	}
+	mergePendingOuterInfo();
+    }
+
+    private void readClass(ByteBuffer input, int howMuch, int attributes)
+	throws IOException
+    {
+	/* The outer class and hierarchy information is at the start
+	 * and the end of the class file, so for these we skip the
+	 * fields and methods.  Otherwise we have to read the whole
+	 * class anyway and load all info, that we may need later and
+	 * that does not take much memory.
 	 */
-	if (howMuch <= DECLARATIONS)
+	if (howMuch > HIERARCHY && howMuch <= DECLARATIONS)
 	    howMuch = DECLARATIONS;
 
 	/* header */
-	if (input.readInt() != 0xcafebabe)
+	if (input.getInt() != 0xcafebabe)
 	    throw new ClassFormatException("Wrong magic");
-	int version = input.readUnsignedShort();
-	version |= input.readUnsignedShort() << 16;
+	int version = input.getShort() & 0xffff;
+	version |= (input.getShort() & 0xffff) << 16;
 	if (version < (45 << 16 | 0))
 	  throw new ClassFormatException("Wrong class version");
 
 	/* constant pool */
-        ConstantPool cpool = new ConstantPool();
+	ConstantPool cpool = new ConstantPool(classpath.getSymbolTable());
         cpool.read(input);
+	constantPoolSize = cpool.size();
 
 	/* modifiers */
-	modifiers = input.readUnsignedShort();
+	int fileModifiers = input.getShort() & 0xffff;
 	/* name */
-	String className = cpool.getClassName(input.readUnsignedShort());
+	String className = cpool.getClassName(input.getShort() & 0xffff);
 	if (name == null)
 	    name = className;
 	else if (!name.equals(className))
 	    throw new ClassFormatException("wrong name " + className);
 
 	/* superclass */
-	int superID = input.readUnsignedShort();
+	int superID = input.getShort() & 0xffff;
 	superclass = superID == 0 ? null
 	    : classpath.getClassInfo(cpool.getClassName(superID));
 
 	/* interfaces */
-	int count = input.readUnsignedShort();
+	int count = input.getShort() & 0xffff;
 	interfaces = new ClassInfo[count];
 	for (int i = 0; i < count; i++) {
 	    interfaces[i] = classpath.getClassInfo
-		(cpool.getClassName(input.readUnsignedShort()));
+		(cpool.getClassName(input.getShort() & 0xffff));
+	}
+
+	if (howMuch == HIERARCHY && status >= OUTERCLASS) {
+	    /* The outer class info was already taken from a class
+	     * that mentions this class, so we need nothing after the
+	     * interfaces.  Keep the modifiers of the inner class that
+	     * were merged in with the outer class info.
+	     */
+	    mergeModifiers(fileModifiers);
+	    declarationsSkipped = true;
+	    status = HIERARCHY;
+	    return;
+	}
+	modifiers = fileModifiers;
+
+	/* initialize inner classes to empty array, in case there
+	 * is no InnerClasses attribute.
+	 */
+	innerClasses = EMPTY_INNER;
+
+	if (howMuch <= HIERARCHY) {
+	    /* Only the InnerClasses attribute is needed, the
+	     * declarations are read when they are requested.
+	     */
+	    BinaryInfo.skipMembers(input);
+	    BinaryInfo.skipMembers(input);
+	    howMuch = HIERARCHY;
+	    readAttributes(cpool, input, howMuch, ATTR_ALL);
+	    mergeConstantPoolClasses(cpool);
+	    declarationsSkipped = true;
+	    loadedAttributes = ATTR_ALL;
+	    status = howMuch;
+	    return;
 	}
 
 	/* fields */
-	count = input.readUnsignedShort();
+	count = input.getShort() & 0xffff;
 	fields = new FieldInfo[count];
 	for (int i = 0; i < count; i++) {
 	    fields[i] = new FieldInfo(); 
-	    fields[i].read(cpool, input, howMuch);
+	    fields[i].read(cpool, input, howMuch, attributes);
 	}
 
 	/* methods */
-	count = input.readUnsignedShort();
+	count = input.getShort() & 0xffff;
 	methods = new MethodInfo[count];
 	for (int i = 0; i < count; i++) {
 	    methods[i] = new MethodInfo(); 
-	    methods[i].read(cpool, input, howMuch);
+	    methods[i].read(cpool, input, howMuch, attributes);
 	}
-
-	/* initialize inner classes to empty array, in case there
-	 * is no InnerClasses attribute.
-	 */
-	innerClasses = EMPTY_INNER;
+	claimMembers(fields);
+	claimMembers(methods);
 
 	/* attributes */
-	readAttributes(cpool, input, howMuch);
+	readAttributes(cpool, input, howMuch, attributes);
+	mergeConstantPoolClasses(cpool);
 
+	/* Set status */
+	declarationsSkipped = false;
+	loadedAttributes = attributes;
+	status = howMuch;
+    }
+
+    /**
+     * Gives the classes mentioned in the constant pool an outer
+     * class info, after the InnerClasses attribute was read.
+     */
+    private void mergeConstantPoolClasses(ConstantPool cpool)
+	throws ClassFormatException
+    {
 	/* All classes that are mentioned in the constant pool must
 	 * have an empty outer class info.  This is specified in the
 	 * 2nd edition of the JVM specification.
+	 *
+	 * These classes are probably needed soon, so let the class
+	 * path prefetch them.
 	 */
 	Iterator iter = cpool.iterateClassNames();
 	while (iter.hasNext()) {
 	    ClassInfo ci = classpath.getClassInfo((String) iter.next());
 	    if (ci.status < OUTERCLASS)
-		ci.mergeOuterInfo(null, null, -1, false);
+		addOuterInfo(ci, null, null, -1, false);
+	    if (ci != this && ci.status < HIERARCHY)
+		classpath.prefetch(ci);
 	}
-
-	/* Set status */
-	status = howMuch;
     }
 
     /****** WRITING CLASS FILES ***************************************/
@@ -823,6 +1140,8 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * written to the class file.
      */
     private void prepareWriting(GrowableConstantPool gcp) {
+	HierarchyOracle oracle
+	    = majorVersion >= 50 ? new HierarchyOracle(classpath) : null;
 	gcp.putClassName(name);
 	gcp.putClassName(superclass.name);
 	for (int i = 0; i < interfaces.length; i++)
@@ -832,7 +1151,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	    fields[i].prepareWriting(gcp);
 
 	for (int i = 0; i < methods.length; i++)
-	    methods[i].prepareWriting(gcp);
+	    methods[i].prepareWriting(gcp, this, oracle);
 
 	for (int i = 0; i < innerClasses.length; i++)
 	    gcp.putClassName(innerClasses[i].name);
@@ -938,43 +1257,50 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 
 
     /**
-     * Writes a class to the given DataOutputStream.  Of course this only
+     * Writes a class to the given stream.  Of course this only
      * works if ALL information for this class is loaded/set.  If this
      * class has an outer class, inner classes or extra classes, their 
-     * status must contain at least the OUTERCLASS information.
+     * status must contain at least the OUTERCLASS information. <br>
+     *
+     * The class file is assembled in a buffer and then given to the
+     * stream in a single write, so the stream needn't be buffered.
      * @param out the output stream.
      * @exception IOException if out throws io exception.
      * @exception IllegalStateException if not enough information is set.
      */
-    public void write(DataOutputStream out) throws IOException {
+    public void write(OutputStream out) throws IOException {
 	if (status < ALL)
 	    throw new IllegalStateException("state is "+status);
 
-	GrowableConstantPool gcp = new GrowableConstantPool();
+	GrowableConstantPool gcp = constantPoolSize > 0
+	    ? new GrowableConstantPool(constantPoolSize)
+	    : new GrowableConstantPool();
 	reserveSmallConstants(gcp);
 	prepareWriting(gcp);
 
-	out.writeInt(0xcafebabe);
-	out.writeShort(3);
-	out.writeShort(45);
-	gcp.write(out);
+	ClassFileBuffer output = ClassFileBuffer.getBuffer();
+	output.writeInt(0xcafebabe);
+	output.writeShort(minorVersion);
+	output.writeShort(majorVersion);
+	gcp.write(output);
 
-	out.writeShort(javaModifiersToBytecode(modifiers));
-	out.writeShort(gcp.putClassName(name));
-	out.writeShort(gcp.putClassName(superclass.getName()));
-	out.writeShort(interfaces.length);
+	output.writeShort(javaModifiersToBytecode(modifiers));
+	output.writeShort(gcp.putClassName(name));
+	output.writeShort(gcp.putClassName(superclass.getName()));
+	output.writeShort(interfaces.length);
 	for (int i = 0; i < interfaces.length; i++)
-	    out.writeShort(gcp.putClassName(interfaces[i].getName()));
+	    output.writeShort(gcp.putClassName(interfaces[i].getName()));
 
-	out.writeShort(fields.length);
+	output.writeShort(fields.length);
 	for (int i = 0; i < fields.length; i++)
-	    fields[i].write(gcp, out);
+	    fields[i].write(gcp, output);
 
-	out.writeShort(methods.length);
+	output.writeShort(methods.length);
 	for (int i = 0; i < methods.length; i++)
-	    methods[i].write(gcp, out);
+	    methods[i].write(gcp, output);
 
-        writeAttributes(gcp, out);
+	writeAttributes(gcp, output);
+	output.writeTo(out);
     }
 
     /**
@@ -996,17 +1322,115 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      */
     public void load(int howMuch) 
 	throws IOException
+    {
+	load(howMuch, ATTR_ALL);
+    }
+
+    /**
+     * Loads the contents of a class from its class path, but only
+     * the selected attributes.  The attributes that aren't selected
+     * are skipped without decoding them, as if the class file didn't
+     * contain them.  For example the decompiler doesn't need the line
+     * number tables, so it doesn't load them.  <br>
+     *
+     * The mask only matters for {@link #PUBLICDECLARATIONS} and
+     * more, and each bit only for the amount of information, that
+     * contains the attribute.  If the class was loaded before with
+     * less attributes, it is read again.  The attributes that were
+     * read before are kept in this case.
+     *
+     * @param howMuch The amount of information that should be loaded
+     * at least, see {@link #load(int)}.
+     * @param attributes the attributes that should be loaded, the
+     * bitwise or of some of the ATTR_ constants, e.g. {@link
+     * #ATTR_ALL} <code>&amp; ~</code>{@link #ATTR_LNT}.
+     * @exception ClassFormatException if the file doesn't denote a
+     *            valid class.
+     * @exception FileNotFoundException if class wasn't found in classpath.
+     * @exception IOException if an io exception occured while reading
+     * the class.
+     * @exception SecurityException if a security manager prohibits loading
+     * the class.
+     * @exception IllegalStateException if this ClassInfo was modified by
+     * calling one of the setSomething methods.
+     */
+    public void load(int howMuch, int attributes)
+	throws IOException
     {
 	if (modified)
 	    throw new IllegalStateException(name);
-	if (status >= howMuch)
-	    return;
-	if (classpath.loadClass(this, howMuch)) {
-	    if (status < howMuch)
-		throw new IllegalStateException("state = "+status);
+	if (isLoaded(howMuch, attributes))
 	    return;
+	/* Only one thread may load the class.  If another thread is
+	 * already loading it, we wait for it and then check if it
+	 * loaded enough.
+	 */
+	boolean loaded;
+	synchronized (this) {
+	    if (isLoaded(howMuch, attributes))
+		return;
+	    wantedAttributes = attributes
+		| (loadedAttributes & getLevelAttributes(status));
+	    try {
+		loaded = classpath.loadClass(this, howMuch);
+		if (loaded && !isLoaded(howMuch, attributes))
+		    throw new IllegalStateException("state = "+status);
+	    } finally {
+		wantedAttributes = ATTR_ALL;
+	    }
 	}
-	throw new FileNotFoundException(name);
+	mergePendingOuterInfo();
+	if (!loaded)
+	    throw new FileNotFoundException(name);
+    }
+
+    /**
+     * Loads the hierarchy of this class, unless it is already known.
+     * Unlike load, this works for modified classes, too.
+     */
+    void loadHierarchy() throws IOException {
+	if (status < HIERARCHY)
+	    load(HIERARCHY);
+    }
+
+    /**
+     * Loads the declarations of this class, unless they are already
+     * known.  Unlike load, this works for modified classes, too.
+     */
+    void loadDeclarations() throws IOException {
+	if (status < DECLARATIONS)
+	    load(DECLARATIONS);
+    }
+
+    /**
+     * Gets the attributes that the given amount of information
+     * contains.  The attributes needed for less information are
+     * always read.
+     */
+    private static int getLevelAttributes(int howMuch) {
+	int attributes = 0;
+	if (howMuch >= OUTERCLASS)
+	    attributes |= ATTR_INNERCLASSES;
+	if (howMuch >= PUBLICDECLARATIONS)
+	    attributes |= ATTR_SIGNATURES | ATTR_EXCEPTIONS;
+	if (howMuch >= NODEBUG)
+	    attributes |= ATTR_CODE;
+	if (howMuch >= ALMOSTALL)
+	    attributes |= ATTR_LVT | ATTR_LNT;
+	if (howMuch >= ALL)
+	    attributes |= ATTR_UNKNOWN;
+	return attributes;
+    }
+
+    /**
+     * Tells if the given information and attributes are already
+     * loaded.
+     */
+    private boolean isLoaded(int howMuch, int attributes) {
+	if (status < howMuch)
+	    return false;
+	attributes &= getLevelAttributes(howMuch);
+	return (loadedAttributes & attributes) == attributes;
     }
 
     /**
@@ -1025,7 +1449,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * @see #ALMOSTALL
      * @see #ALL 
      */
-    public void guess(int howMuch) 
+    public synchronized void guess(int howMuch)
     {
 	if (howMuch <= status)
 	    throw new IllegalStateException("status = "+status);
@@ -1071,6 +1495,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	    fields = new FieldInfo[0];
 	    innerClasses = EMPTY_INNER;
 	}
+	loadedAttributes = ATTR_ALL;
 	status = howMuch;
     }
 
@@ -1083,7 +1508,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      *    {@link #NONE} or anything that <code>load</code> accepts.
      * @see #load
      */
-    public void drop(int keep) {
+    public synchronized void drop(int keep) {
 	if (status <= keep)
 	    return;
 	if (modified) {
@@ -1126,9 +1551,22 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	status = keep;
     }
 
+    /**
+     * Forgets all information about this class, even if it was
+     * modified, so that it is read again when it is loaded.  This is
+     * called by the class path when the class file was changed.
+     */
+    synchronized void reset() {
+	modified = false;
+	isGuessed = false;
+	drop(NONE);
+    }
+
     /**
      * Returns the full qualified name of this class.
-     * @return the full qualified name of this class, an interned string.
+     * @return the full qualified name of this class.  It is unique in
+     * the {@link ClassPath#getSymbolTable symbol table} of the class
+     * path, but not interned by String.intern.
      */
     public String getName() {
         return name;
@@ -1244,6 +1682,55 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	return deprecatedFlag;
     }
 
+    /**
+     * Checks that the declarations are loaded.  If they were skipped
+     * because the class was read for its hierarchy only, they are
+     * read now.  Reading the hierarchy used to read the declarations
+     * as well, and callers still rely on that.
+     * @exception IllegalStateException if PUBLICDECLARATIONS
+     * information wasn't loaded and can't be read.  If reading
+     * failed, its message tells why.
+     */
+    private void checkDeclarations() {
+	if (status < PUBLICDECLARATIONS && declarationsSkipped) {
+	    try {
+		load(DECLARATIONS);
+	    } catch (IOException ex) {
+		IllegalStateException ise = new IllegalStateException
+		    ("status is " + status
+		     + ", reading the declarations failed: " + ex);
+		ise.initCause(ex);
+		throw ise;
+	    }
+	}
+	if (status < PUBLICDECLARATIONS)
+	    throw new IllegalStateException("status is "+status);
+    }
+
+    /**
+     * Tells the given fields or methods that they belong to this
+     * class, so that they report when they are renamed.
+     */
+    private void claimMembers(Object[] members) {
+	for (int i = 0; i < members.length; i++) {
+	    if (members[i] instanceof MethodInfo)
+		((MethodInfo) members[i]).clazz = this;
+	    else
+		((FieldInfo) members[i]).clazz = this;
+	}
+    }
+
+    /**
+     * Called when a field or method of this class is renamed.  This
+     * invalidates the member tables and the member resolver.
+     */
+    void memberRenamed() {
+	synchronized (this) {
+	    memberRenames++;
+	}
+	classpath.membersChanged();
+    }
+
     /**
      * Searches for a field with given name and type signature.
      * @param name the name of the field.
@@ -1252,8 +1739,16 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * @return the field info for the field.  
      */
     public FieldInfo findField(String name, String typeSig) {
-        if (status < PUBLICDECLARATIONS)
-            throw new IllegalStateException("status is "+status);
+	checkDeclarations();
+	FieldInfo[] fields = this.fields;
+	if (fields.length > MemberTable.HASH_THRESHOLD) {
+	    MemberTable table = fieldTable;
+	    int renames = memberRenames;
+	    if (table == null || !table.isValidFor(fields, renames))
+		fieldTable = table = new MemberTable(fields, renames);
+	    int index = table.lookup(name, typeSig);
+	    return index < 0 ? null : fields[index];
+	}
         for (int i = 0; i < fields.length; i++)
             if (fields[i].getName().equals(name)
                 && fields[i].getType().equals(typeSig))
@@ -1269,8 +1764,16 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * @return the method info for the method.  
      */
     public MethodInfo findMethod(String name, String typeSig) {
-        if (status < PUBLICDECLARATIONS)
-            throw new IllegalStateException("status is "+status);
+	checkDeclarations();
+	MethodInfo[] methods = this.methods;
+	if (methods.length > MemberTable.HASH_THRESHOLD) {
+	    MemberTable table = methodTable;
+	    int renames = memberRenames;
+	    if (table == null || !table.isValidFor(methods, renames))
+		methodTable = table = new MemberTable(methods, renames);
+	    int index = table.lookup(name, typeSig);
+	    return index < 0 ? null : methods[index];
+	}
         for (int i = 0; i < methods.length; i++)
             if (methods[i].getName().equals(name)
                 && methods[i].getType().equals(typeSig))
@@ -1282,8 +1785,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * Gets the methods of this class.
      */
     public MethodInfo[] getMethods() {
-        if (status < PUBLICDECLARATIONS)
-            throw new IllegalStateException("status is "+status);
+	checkDeclarations();
         return methods;
     }
 
@@ -1291,8 +1793,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * Gets the fields (class and member variables) of this class.
      */
     public FieldInfo[] getFields() {
-        if (status < PUBLICDECLARATIONS)
-            throw new IllegalStateException("status is "+status);
+	checkDeclarations();
         return fields;
     }
 
@@ -1334,8 +1835,7 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * wasn't loaded yet.  
      */
     public ClassInfo[] getClasses() {
-        if (status < PUBLICDECLARATIONS)
-            throw new IllegalStateException("status is "+status);
+	checkDeclarations();
         return innerClasses;
     }
 
@@ -1343,6 +1843,35 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	return sourceFile;
     }
 
+    /**
+     * Gets the major version of the class file written by write().
+     */
+    public int getMajorVersion() {
+	return majorVersion;
+    }
+
+    /**
+     * Gets the minor version of the class file written by write().
+     */
+    public int getMinorVersion() {
+	return minorVersion;
+    }
+
+    /**
+     * Sets the version of the class file written by write().  The
+     * default is 45.3, which every virtual machine understands.  For
+     * version 50 and later the StackMapTable of every method is
+     * computed; this needs the super classes of all classes the
+     * methods use in the class path.  Version 51 and later doesn't
+     * allow subroutines (jsr/ret).
+     * @param major the major version, e.g. 50 for Java 6.
+     * @param minor the minor version, usually 0.
+     */
+    public void setClassVersion(int major, int minor) {
+	majorVersion = major;
+	minorVersion = minor;
+    }
+
     /**
      * Sets the name of this class info.  Note that by changing the
      * name you may overwrite an already loaded class.  This can have
@@ -1353,8 +1882,9 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	/* The class name is used as index in the hash table.  We have
 	 * to update the class path and tell it about the name change.
 	 */
-	classpath.renameClassInfo(this, newName);
-	name = newName.intern();
+	String oldName = name;
+	name = classpath.getSymbolTable().intern(newName);
+	classpath.renameClassInfo(this, oldName);
 	status = ALL;
 	modified = true;
     }
@@ -1363,12 +1893,14 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 	superclass = newSuper;
 	status = ALL;
 	modified = true;
+	classpath.hierarchyChanged();
     }
     
     public void setInterfaces(ClassInfo[] newIfaces) {
         interfaces = newIfaces;
 	status = ALL;
 	modified = true;
+	classpath.hierarchyChanged();
     }
 
     public void setModifiers(int newModifiers) {
@@ -1383,14 +1915,18 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
 
     public void setMethods(MethodInfo[] mi) {
         methods = mi;
+	claimMembers(mi);
 	status = ALL;
 	modified = true;
+	classpath.membersChanged();
     }
 
     public void setFields(FieldInfo[] fi) {
         fields = fi;
+	claimMembers(fi);
 	status = ALL;
 	modified = true;
+	classpath.membersChanged();
     }
 
     public void setOuterClass(ClassInfo oc) {
@@ -1530,20 +2066,18 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * complete hierarchy of child on demand and can throw an IOException
      * if some classes are not found or broken.
      *
-     * It doesn't check for cycles in class hierarchy, so it may get
-     * into an eternal loop.
+     * The answer is looked up in the {@link ClassHierarchy hierarchy
+     * index} of the class path.  If a class of the hierarchy is
+     * missing, the super classes are walked instead, as far as
+     * needed.  A cycle in the class hierarchy is reported as {@link
+     * ClassFormatException}.
      *
      * @param child the class that should be a child class of us.
      * @return true if this is as super class of child, false otherwise
      * @exception IOException if hierarchy of child could not be loaded.
      */
     public boolean superClassOf(ClassInfo child) throws IOException {
-        while (child != this && child != null) {
-	    if (child.status < HIERARCHY)
-		child.load(HIERARCHY);
-            child = child.getSuperclass();
-        }
-        return child == this;
+	return classpath.getHierarchy().isSuperclassOf(this, child);
     }
 
     /**
@@ -1553,25 +2087,33 @@ public final class ClassInfo extends BinaryInfo implements Comparable {
      * interface it returns false, but you should check it yourself for 
      * better performance. <br>
      *
-     * It doesn't check for cycles in class hierarchy, so it may get
-     * into an eternal loop.
+     * The answer is looked up in the {@link ClassHierarchy hierarchy
+     * index} of the class path.  If a class of the hierarchy is
+     * missing, the super classes and interfaces are walked instead,
+     * as far as needed.  A cycle in the class hierarchy is reported
+     * as {@link ClassFormatException}.
      * @param clazz the class to be checked.
      * @return true if this is a interface and is implemented by clazz,
      * false otherwise
      * @exception IOException if hierarchy of clazz could not be loaded.
      */
     public boolean implementedBy(ClassInfo clazz) throws IOException {
-        while (clazz != this && clazz != null) {
-	    if (clazz.status < HIERARCHY)
-		clazz.load(HIERARCHY);
-            ClassInfo[] ifaces = clazz.getInterfaces();
-            for (int i = 0; i < ifaces.length; i++) {
-                if (implementedBy(ifaces[i]))
-                    return true;
-            }
-            clazz = clazz.getSuperclass();
-        }
-        return clazz == this;
+	return classpath.getHierarchy().implementedBy(this, clazz);
+    }
+
+    /**
+     * Gets the most specific class that both this class and the given
+     * class extend.  Interfaces are not considered.  This loads the
+     * complete hierarchy of both classes on demand.
+     * @param other the other class.
+     * @return the common super class, or null if the classes have
+     * different root classes.
+     * @exception IOException if a hierarchy could not be loaded.
+     */
+    public ClassInfo getCommonSuperclass(ClassInfo other)
+	throws IOException
+    {
+	return classpath.getHierarchy().getCommonSuperclass(this, other);
     }
 
     /**
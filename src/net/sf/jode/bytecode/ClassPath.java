@@ -20,8 +20,6 @@
 package net.sf.jode.bytecode;
 
 import java.io.ByteArrayInputStream;
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -29,23 +27,47 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
 
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.NoSuchElementException;
 import java.util.Hashtable;
 import java.util.Vector;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 ///#def COLLECTIONS java.util
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
 ///#enddef
 
 import net.sf.jode.GlobalOptions;
-import net.sf.jode.util.UnifyHash;
+import net.sf.jode.util.SymbolTable;
+import net.sf.jode.util.ConcurrentUnifyHash;
 
 /**
  * A path in which class files are searched for.  
@@ -58,7 +80,12 @@ import net.sf.jode.util.UnifyHash;
  * <li> A URL (unified resource location), pointing to a directory </li>
  * <li> A URL pointing to a jar or zip file. </li>
  * <li> A Jar URL (see {@link java.net.JarURLConnection}), useful if
- * the jar file is not packed correctly.</li>
+ * the jar file is not packed correctly.  Jar URLs may also point into
+ * nested archives, e.g. <code>jar:file:app.jar!/lib/inner.jar!/</code>.
+ * </li>
+ * <li> The runtime image URL <code>jrt:/</code>.  This location
+ * reads the system classes of a Java 9 or later virtual machine
+ * directly from its runtime image. </li>
  * <li> The reflection URL <code>reflection:/</code>.  This is a
  * special location, which fills the ClassInfo with the information
  * from the java reflection API.  Obviously it can't load any files
@@ -87,6 +114,11 @@ import net.sf.jode.util.UnifyHash;
  * A ClassPath handles some <code>IOException</code>s and
  * <code>SecurityException</code>s skipping the path that produced
  * them.
+ *
+ * A ClassPath may be shared by several threads.  They can create and
+ * load class infos at the same time; if two threads load the same
+ * class, the second one waits for the first.  Your own {@link
+ * Location}s must be thread safe, too.
  * 
  * @author Jochen Hoenicke
  * @version 1.1 
@@ -140,6 +172,19 @@ public class ClassPath  {
 	    return false;
 	}
 
+	/**
+	 * Tells whether {@link #isDirectory} knows every directory of
+	 * this location.  If it does, the class path skips this
+	 * location when it searches for a file in a directory that
+	 * doesn't exist here. <br>
+	 * The default implementation returns false.
+	 * @return true if this location can't contain any file in a
+	 * directory for which isDirectory returns false.
+	 */
+	protected boolean listsDirectories() {
+	    return false;
+	}
+
 	/**
 	 * Returns an input stream that reads the given file.  It is only
 	 * called for files for which exists returns true. <br>
@@ -180,6 +225,65 @@ public class ClassPath  {
 	    return null;
 	}
 
+	/**
+	 * Returns the fingerprint of a file, if it is known without
+	 * reading the file, e.g. from the directory of an archive.
+	 * The fingerprint is the size of the file in the upper 32 bits
+	 * and the CRC-32 of its contents in the lower 32 bits. <br>
+	 * The default implementation returns -1.
+	 * @param file the name of the file, subdirectories are always
+	 * separated by "/".
+	 * @return the fingerprint, or -1 if it isn't known.
+	 * @exception IOException if an io exception occured while
+	 * reading the directory.
+	 * @see ClassPath#getClassFingerprint
+	 */
+	protected long getFingerprint(String file) throws IOException {
+	    return -1;
+	}
+
+	/**
+	 * Returns the local directory of this location, that is
+	 * watched by {@link ClassPath#setWatchFiles}.
+	 * @return the directory, or null if this location can't be
+	 * watched.
+	 */
+	File getWatchedDirectory() {
+	    return null;
+	}
+
+	/**
+	 * Tells this location that a file in its directory was
+	 * created, changed or deleted.  Locations that remember the
+	 * listing of the directory must forget it.
+	 */
+	void directoryChanged() {
+	}
+
+	/**
+	 * Gets the contents of a file as a byte buffer. <br>
+	 * The default implementation reads the stream returned by
+	 * getFile() into a heap buffer.  Locations that have the file
+	 * in memory already should override this to return a view of
+	 * it.
+	 * @param file the name of the file, subdirectories are always
+	 * separated by "/".
+	 * @return a buffer containing exactly the file, or null if the
+	 * file was not found.  The caller mustn't change its contents.
+	 * @exception IOException if an io exception occured while
+	 * reading the file.
+	 */
+	protected ByteBuffer getFileBuffer(String file) throws IOException {
+	    InputStream input = getFile(file);
+	    if (input == null)
+		return null;
+	    try {
+		return ByteBuffer.wrap(readFully(input));
+	    } finally {
+		input.close();
+	    }
+	}
+
 	/**
 	 * Loads a class from this location and fills it with the given
 	 * information. <br>
@@ -207,9 +311,10 @@ public class ClassPath  {
 	    String file = clazz.getName().replace('.', '/') + ".class";
 	    if (!exists(file))
 		return false;
-	    DataInputStream input = new DataInputStream
-		(new BufferedInputStream(getFile(file)));
-	    clazz.read(input, howMuch);
+	    ByteBuffer contents = getFileBuffer(file);
+	    if (contents == null)
+		throw new FileNotFoundException(file);
+	    clazz.read(contents, howMuch);
 	    return true;
 	}
     }
@@ -249,6 +354,10 @@ public class ClassPath  {
 	    dir = path;
 	}
 
+	File getWatchedDirectory() {
+	    return dir;
+	}
+
 	protected boolean exists(String filename) {
 	    if (java.io.File.separatorChar != '/')
 		filename = filename
@@ -267,6 +376,10 @@ public class ClassPath  {
 	    return new File(dir, filename).isDirectory();
 	}
 
+	protected boolean listsDirectories() {
+	    return true;
+	}
+
 	protected InputStream getFile(String filename) throws IOException {
 	    if (java.io.File.separatorChar != '/')
 		filename = filename
@@ -395,6 +508,10 @@ public class ClassPath  {
 	    return entries.containsKey(filename);
 	}
 
+	protected boolean listsDirectories() {
+	    return true;
+	}
+
 	protected InputStream getFile(String filename) throws IOException {
 	    String fullname = prefix != null ? prefix + filename : filename;
 	    if (contents != null) {
@@ -437,6 +554,16 @@ public class ClassPath  {
 	    return null;
 	}
 
+	protected long getFingerprint(String filename) {
+	    if (file == null)
+		return -1;
+	    String fullname = prefix != null ? prefix + filename : filename;
+	    ZipEntry ze = file.getEntry(fullname);
+	    if (ze == null || ze.getSize() < 0 || ze.getCrc() < 0)
+		return -1;
+	    return (ze.getSize() << 32) | ze.getCrc();
+	}
+
 	protected Enumeration listFiles(String directory) {
 	    Vector direntries = (Vector) entries.get(directory);
 	    if (direntries != null)
@@ -449,6 +576,205 @@ public class ClassPath  {
 	}
     }
 
+    /**
+     * A zip location that serves its files from a {@link ZipIndex}.
+     * The central directory is read only once and files are looked
+     * up by hash code, without any ZipEntry objects.
+     */
+    private static class IndexedZipLocation extends Location {
+	private ZipIndex index;
+
+	IndexedZipLocation(ZipIndex index) {
+	    this.index = index;
+	}
+
+	protected boolean exists(String filename) {
+	    return index.isDirectory(filename) || index.isFile(filename);
+	}
+
+	protected boolean isDirectory(String filename) {
+	    return index.isDirectory(filename);
+	}
+
+	protected boolean listsDirectories() {
+	    return true;
+	}
+
+	protected InputStream getFile(String filename) throws IOException {
+	    return index.getFile(filename);
+	}
+
+	protected long getFingerprint(String filename) throws IOException {
+	    return index.getFingerprint(filename);
+	}
+
+	protected ByteBuffer getFileBuffer(String filename)
+	    throws IOException {
+	    return index.getContents(filename);
+	}
+
+	protected Enumeration listFiles(String directory) {
+	    return index.listFiles(directory);
+	}
+
+	public String toString() {
+	    return index.toString();
+	}
+    }
+
+    /**
+     * A location that reads the system classes from the runtime
+     * image of Java 9 and later through the <code>jrt:/</code> file
+     * system.  When it is created, it builds an index which modules
+     * contain which package, so that a file is only looked up in
+     * the modules that can contain it.
+     */
+    private static class JrtLocation extends Location {
+	/**
+	 * Maps a package directory, e.g. <code>java/lang</code>, to
+	 * the Vector of directories of the modules that contain it.
+	 * Usually this is a single module, but a package directory
+	 * may also exist in a module that only contains sub packages.
+	 */
+	private Hashtable packages = new Hashtable();
+	/**
+	 * Maps every directory that contains a package to the Vector
+	 * of its subdirectories.
+	 */
+	private Hashtable subdirs = new Hashtable();
+
+	JrtLocation() throws IOException {
+	    FileSystem fs;
+	    try {
+		fs = FileSystems.getFileSystem(URI.create("jrt:/"));
+	    } catch (RuntimeException ex) {
+		/* There is no runtime image before Java 9. */
+		throw new FileNotFoundException("jrt:/");
+	    }
+	    Path modules = fs.getPath("/modules");
+	    DirectoryStream packageDirs
+		= Files.newDirectoryStream(fs.getPath("/packages"));
+	    try {
+		Iterator iter = packageDirs.iterator();
+		while (iter.hasNext()) {
+		    Path packageDir = (Path) iter.next();
+		    DirectoryStream moduleLinks
+			= Files.newDirectoryStream(packageDir);
+		    try {
+			String dir = packageDir.getFileName().toString()
+			    .replace('.', '/');
+			Iterator links = moduleLinks.iterator();
+			while (links.hasNext()) {
+			    String module = ((Path) links.next())
+				.getFileName().toString();
+			    addPackage(dir, modules.resolve(module));
+			}
+		    } finally {
+			moduleLinks.close();
+		    }
+		}
+	    } finally {
+		packageDirs.close();
+	    }
+	}
+
+	private void addPackage(String dir, Path module) {
+	    Vector moduleDirs = (Vector) packages.get(dir);
+	    if (moduleDirs != null) {
+		moduleDirs.addElement(module);
+		return;
+	    }
+	    moduleDirs = new Vector(1);
+	    moduleDirs.addElement(module);
+	    packages.put(dir, moduleDirs);
+	    while (dir.length() > 0) {
+		int slash = dir.lastIndexOf('/');
+		String parent = slash == -1 ? "" : dir.substring(0, slash);
+		String name = dir.substring(slash + 1);
+		Vector children = (Vector) subdirs.get(parent);
+		if (children != null) {
+		    if (!children.contains(name))
+			children.addElement(name);
+		    /* The parents of parent are already known. */
+		    return;
+		}
+		children = new Vector();
+		children.addElement(name);
+		subdirs.put(parent, children);
+		dir = parent;
+	    }
+	}
+
+	private Path getPath(String filename) {
+	    int slash = filename.lastIndexOf('/');
+	    if (slash == -1)
+		return null;
+	    Vector moduleDirs = (Vector)
+		packages.get(filename.substring(0, slash));
+	    if (moduleDirs == null)
+		return null;
+	    for (int i = 0; i < moduleDirs.size(); i++) {
+		Path path = ((Path) moduleDirs.elementAt(i)).resolve(filename);
+		if (Files.isRegularFile(path))
+		    return path;
+	    }
+	    return null;
+	}
+
+	protected boolean exists(String filename) {
+	    return isDirectory(filename) || getPath(filename) != null;
+	}
+
+	protected boolean isDirectory(String filename) {
+	    return (packages.containsKey(filename)
+		    || subdirs.containsKey(filename));
+	}
+
+	protected boolean listsDirectories() {
+	    return true;
+	}
+
+	protected InputStream getFile(String filename) throws IOException {
+	    Path path = getPath(filename);
+	    return path != null ? Files.newInputStream(path) : null;
+	}
+
+	protected Enumeration listFiles(String directory) {
+	    Vector result = new Vector();
+	    Vector children = (Vector) subdirs.get(directory);
+	    if (children != null) {
+		for (int i = 0; i < children.size(); i++)
+		    result.addElement(children.elementAt(i));
+	    }
+	    Vector moduleDirs = (Vector) packages.get(directory);
+	    for (int i = 0; moduleDirs != null && i < moduleDirs.size(); i++) {
+		Path module = (Path) moduleDirs.elementAt(i);
+		try {
+		    DirectoryStream files = Files.newDirectoryStream
+			(module.resolve(directory));
+		    try {
+			Iterator iter = files.iterator();
+			while (iter.hasNext()) {
+			    Path file = (Path) iter.next();
+			    if (Files.isRegularFile(file))
+				result.addElement(file.getFileName()
+						  .toString());
+			}
+		    } finally {
+			files.close();
+		    }
+		} catch (IOException ex) {
+		    /* ignore, just list the sub packages */
+		}
+	    }
+	    return result.elements();
+	}
+
+	public String toString() {
+	    return "jrt:/";
+	}
+    }
+
     private static class URLLocation extends Location {
 	private URL base;
 
@@ -486,17 +812,14 @@ public class ClassPath  {
 	     * exists call, and to optimize howMuch.
 	     */
 	    String file = clazz.getName().replace('.', '/') + ".class";
-	    InputStream is = getFile(file);
-	    if (is == null)
+	    ByteBuffer contents = getFileBuffer(file);
+	    if (contents == null)
 		return false;
 
-	    DataInputStream input = new DataInputStream
-		(new BufferedInputStream(is));
-
 	    /* Reading an URL may be expensive.  Therefore we ignore
 	     * howMuch and read everything to avoid reading it again.
 	     */
-	    clazz.read(input, ClassInfo.ALL);
+	    clazz.read(contents, ClassInfo.ALL);
 	    return true;
 	}
 
@@ -506,10 +829,256 @@ public class ClassPath  {
     }
 
     private Location[] paths;
-    private UnifyHash classes = new UnifyHash();
+    /**
+     * The class infos created by this class path, hashed by their
+     * name.  Several threads can create class infos at once.
+     */
+    private ConcurrentUnifyHash classes = new ConcurrentUnifyHash();
+    /**
+     * Tells if two class infos have the same name.
+     */
+    private static final Comparator nameComparator = new Comparator() {
+	public int compare(Object o1, Object o2) {
+	    return ((ClassInfo) o1).getName()
+		.equals(((ClassInfo) o2).getName()) ? 0 : 1;
+	}
+    };
     
     ClassPath fallback = null;
 
+    /**
+     * The hierarchy index, created when it is first needed.
+     */
+    private volatile ClassHierarchy hierarchy = null;
+    /**
+     * The member resolver, created when it is first needed.
+     */
+    private volatile MemberResolver resolver = null;
+
+    /**
+     * The table in which the names and types of the classes are
+     * interned.  It is only used if there is no fallback.
+     */
+    private SymbolTable symbols = new SymbolTable();
+
+    /**
+     * The files that exist in none of the locations.  This doesn't
+     * include the fallback.
+     */
+    private Set missingFiles = new HashSet();
+    /**
+     * Maps the classes that none of the locations could load to the
+     * lowest level (as Integer) that failed.  Some locations, like
+     * reflection, can load the declarations but not the code of a
+     * class, so a class is only missing for loads at that level and
+     * above.
+     */
+    private Map missingClasses = new HashMap();
+    /**
+     * Maps a directory name to the BitSet of locations that may
+     * contain files in this directory.
+     */
+    private Hashtable packageFilters = new Hashtable();
+    /**
+     * The counters of the negative lookup cache.  They are guarded
+     * by missingFiles.
+     */
+    private int cacheHits = 0;
+    private int cacheMisses = 0;
+
+    /**
+     * The contents of recently read class files, mapped by class
+     * name, in least recently used order.  All class file cache
+     * fields are guarded by this map.
+     */
+    private LinkedHashMap classFiles = new LinkedHashMap(16, 0.75f, true);
+    private int classFilesSize = 0;
+    private int maxClassFilesSize = 0;
+    private int classFileHits = 0;
+    private int classFileMisses = 0;
+    private int classFileEvictions = 0;
+
+    /**
+     * The number of recently prefetched classes that are kept.  The
+     * class registry only holds weak references, so without this a
+     * prefetched class could be garbage collected before it is used.
+     */
+    private static final int PREFETCH_KEEP = 256;
+    /**
+     * The classes that should be prefetched.  All prefetch fields
+     * are guarded by this queue.
+     */
+    private LinkedList prefetchQueue = new LinkedList();
+    private ClassInfo[] prefetched = new ClassInfo[PREFETCH_KEEP];
+    private int prefetchedPtr = 0;
+    private volatile int prefetchThreads = 0;
+    private int runningPrefetchers = 0;
+
+    /**
+     * The thread that watches the local directories, null if they
+     * aren't watched.
+     */
+    private Watcher watcher = null;
+
+    /**
+     * A daemon thread that watches the directories of all local
+     * locations and invalidates the cached information about every
+     * file that is created, changed or deleted.
+     */
+    private class Watcher extends Thread {
+	private WatchService service;
+	/**
+	 * Maps the WatchKey of a directory to its name, relative to
+	 * the location.
+	 */
+	private Hashtable keys = new Hashtable();
+	/**
+	 * Maps the WatchKey of a directory to its location.
+	 */
+	private Hashtable keyLocations = new Hashtable();
+
+	Watcher() throws IOException {
+	    super("ClassPath watcher");
+	    setDaemon(true);
+	    service = FileSystems.getDefault().newWatchService();
+	    for (int i = 0; i < paths.length; i++) {
+		if (paths[i] == null)
+		    continue;
+		File dir = paths[i].getWatchedDirectory();
+		if (dir != null)
+		    register(paths[i], dir.toPath(), "");
+	    }
+	}
+
+	private void register(Location location, Path dir, String dirName)
+	    throws IOException
+	{
+	    WatchKey key = dir.register(service, new WatchEvent.Kind[] {
+		StandardWatchEventKinds.ENTRY_CREATE,
+		StandardWatchEventKinds.ENTRY_DELETE,
+		StandardWatchEventKinds.ENTRY_MODIFY
+	    });
+	    keys.put(key, dirName);
+	    keyLocations.put(key, location);
+	    DirectoryStream subdirs = Files.newDirectoryStream(dir);
+	    try {
+		Iterator iter = subdirs.iterator();
+		while (iter.hasNext()) {
+		    Path subdir = (Path) iter.next();
+		    if (Files.isDirectory(subdir)) {
+			String name = subdir.getFileName().toString();
+			register(location, subdir,
+				 dirName.length() == 0 ? name
+				 : dirName + "/" + name);
+		    }
+		}
+	    } finally {
+		subdirs.close();
+	    }
+	}
+
+	void close() {
+	    try {
+		service.close();
+	    } catch (IOException ex) {
+		/* ignore, the thread stops anyway */
+	    }
+	}
+
+	public void run() {
+	    while (true) {
+		WatchKey key;
+		try {
+		    key = service.take();
+		} catch (InterruptedException ex) {
+		    return;
+		} catch (ClosedWatchServiceException ex) {
+		    return;
+		}
+		String dirName = (String) keys.get(key);
+		Location location = (Location) keyLocations.get(key);
+		if (location != null)
+		    location.directoryChanged();
+		Iterator iter = key.pollEvents().iterator();
+		while (iter.hasNext()) {
+		    WatchEvent event = (WatchEvent) iter.next();
+		    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+			|| dirName == null) {
+			invalidateCache();
+			continue;
+		    }
+		    Path child = (Path) event.context();
+		    String name = child.toString();
+		    if (dirName.length() > 0)
+			name = dirName + "/" + name;
+		    Path path = ((Path) key.watchable()).resolve(child);
+		    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+			&& Files.isDirectory(path)) {
+			/* A whole tree of packages may appear at once.
+			 * Watch it and forget everything we know.
+			 */
+			try {
+			    register(location, path, name);
+			} catch (IOException ex) {
+			    /* It was removed again. */
+			}
+			invalidateCache();
+		    } else
+			invalidateFile(name);
+		}
+		if (!key.reset()) {
+		    keys.remove(key);
+		    keyLocations.remove(key);
+		}
+	    }
+	}
+    }
+
+    /**
+     * A daemon thread that loads the classes in the prefetch queue.
+     */
+    private class Prefetcher extends Thread {
+	Prefetcher() {
+	    super("ClassPath prefetcher");
+	    setDaemon(true);
+	}
+
+	public void run() {
+	    while (true) {
+		ClassInfo clazz;
+		synchronized (prefetchQueue) {
+		    while (prefetchQueue.isEmpty()
+			   && runningPrefetchers <= prefetchThreads) {
+			try {
+			    prefetchQueue.wait();
+			} catch (InterruptedException ex) {
+			    break;
+			}
+		    }
+		    if (prefetchQueue.isEmpty()
+			|| runningPrefetchers > prefetchThreads) {
+			runningPrefetchers--;
+			return;
+		    }
+		    clazz = (ClassInfo) prefetchQueue.removeFirst();
+		    prefetched[prefetchedPtr] = clazz;
+		    prefetchedPtr = (prefetchedPtr + 1) % PREFETCH_KEEP;
+		}
+		try {
+		    clazz.load(ClassInfo.HIERARCHY);
+		} catch (IOException ex) {
+		    /* The thread that needs the class will get the
+		     * error again when it loads the class itself.
+		     */
+		} catch (RuntimeException ex) {
+		    /* The same holds for illegal classes, or for
+		     * classes that were modified in the meantime.
+		     */
+		}
+	    }
+	}
+    }
+
     /**
      * Creates a new class path for the given path.  See the class
      * description for more information, which kind of paths are
@@ -533,6 +1102,23 @@ public class ClassPath  {
 	initPath(paths);
     }
 
+    /**
+     * Creates a new class path for the given path, whose listing is
+     * taken from the given index where possible.  See the class
+     * description for more information, which kind of paths are
+     * supported. When a class or a file is not found in the class
+     * path the fallback is used.
+     * @param paths An array of paths.
+     * @param fallback The fallback classpath, may be null.
+     * @param index The class path index, may be null.
+     * @see ClassPathIndex
+     */
+    public ClassPath(String[] paths, ClassPath fallback,
+		     ClassPathIndex index) {
+	this.fallback = fallback;
+	initPath(paths, index);
+    }
+
     /**
      * Creates a new class path for the given path.  When a class
      * or a file is not found in the class path the fallback is used.
@@ -579,6 +1165,23 @@ public class ClassPath  {
 	initPath(tokenizeClassPath(path));
     }
 
+    /**
+     * Creates a new class path for the given path, whose listing is
+     * taken from the given index where possible.  See the class
+     * description for more information, which kind of paths are
+     * supported.
+     * @param path One or more paths.  They should be separated by the
+     * altPathSeparatorChar or pathSeparatorChar, but the latter is
+     * deprecated since it may give problems for UNIX machines.
+     * @param fallback The fallback classpath, may be null.
+     * @param index The class path index, may be null.
+     * @see ClassPathIndex
+     */
+    public ClassPath(String path, ClassPath fallback, ClassPathIndex index) {
+	this.fallback = fallback;
+	initPath(tokenizeClassPath(path), index);
+    }
+
     /**
      * Creates a location for a given path component.  See the
      * class comment which path components are supported.
@@ -597,6 +1200,9 @@ public class ClassPath  {
 	// The special reflection URL
 	if (path.startsWith("reflection:"))
 	    return new ReflectionLocation();
+	// The runtime image of Java 9 and later
+	if (path.startsWith("jrt:"))
+	    return new JrtLocation();
 	
 	// We handle jar URL's ourself, this makes them work even with
 	// java 1.1
@@ -610,7 +1216,9 @@ public class ClassPath  {
 	    if (index == -1 || index == path.length() - 1)
 		throw new MalformedURLException(path);
 	    zipPrefix = path.substring(index+2);
-	    if (!zipPrefix.endsWith("/"))
+	    if (zipPrefix.length() == 0)
+		zipPrefix = null;
+	    else if (!zipPrefix.endsWith("/"))
 		zipPrefix += "/";
 	    path = path.substring(4, index);
 	}
@@ -626,18 +1234,65 @@ public class ClassPath  {
 		|| connection.getContentType().endsWith("/zip")) {
 		// This is a zip file.  Read it into memory.
 		byte[] contents = readURLZip(connection);
-		return new ZipLocation(contents, zipPrefix);
+		try {
+		    return createZipLocation(ByteBuffer.wrap(contents),
+					     path, zipPrefix);
+		} catch (ZipException ex) {
+		    if (zipPrefix != null && zipPrefix.indexOf("!/") != -1)
+			throw ex;
+		    return new ZipLocation(contents, zipPrefix);
+		}
 	    } else
 		return new URLLocation(base);
 	} else {
 	    File dir = new File(path);
 	    if (zipPrefix != null || !dir.isDirectory()) {
-		return new ZipLocation(new ZipFile(dir), zipPrefix);
+		try {
+		    return createZipLocation(ZipIndex.mapFile(dir),
+					     path, zipPrefix);
+		} catch (ZipException ex) {
+		    if (zipPrefix != null && zipPrefix.indexOf("!/") != -1)
+			throw ex;
+		    /* Fall back to ZipFile, which can handle ZIP64
+		     * archives and archives that are too large to map.
+		     */
+		    return new ZipLocation(new ZipFile(dir), zipPrefix);
+		}
 	    } else
 		return new LocalLocation(dir);
 	}
     }
 
+    /**
+     * Creates a location for a zip archive in the given buffer.  The
+     * zip prefix may name archives nested in this archive, separated
+     * by "!/", e.g. <code>lib/inner.jar!/org/</code>.  A nested
+     * archive is read directly from the outer buffer if it is stored
+     * and inflated into memory otherwise.
+     * @param contents the contents of the outermost archive.
+     * @param name the name of the outermost archive.
+     * @param zipPrefix the directory in the innermost archive that
+     * should be used as root directory, ending with a slash.  May be
+     * null.
+     */
+    private static Location createZipLocation(ByteBuffer contents,
+					      String name, String zipPrefix)
+	throws IOException
+    {
+	int nested;
+	while (zipPrefix != null && (nested = zipPrefix.indexOf("!/")) != -1) {
+	    String entry = zipPrefix.substring(0, nested);
+	    contents = new ZipIndex(contents, null, name).getContents(entry);
+	    name = name + "!/" + entry;
+	    if (contents == null)
+		throw new FileNotFoundException(name);
+	    zipPrefix = zipPrefix.substring(nested + 2);
+	    if (zipPrefix.length() == 0)
+		zipPrefix = null;
+	}
+	return new IndexedZipLocation(new ZipIndex(contents, zipPrefix, name));
+    }
+
     private static String[] tokenizeClassPath(String path) {
 	// Calculate a good approximation (rounded upwards) of the tokens
 	// in this path.
@@ -739,6 +1394,10 @@ public class ClassPath  {
     }
 
     private void initPath(String[] tokens) {
+	initPath(tokens, null);
+    }
+
+    private void initPath(String[] tokens, ClassPathIndex index) {
 	int length = tokens.length;
 	paths = new Location[length];
 
@@ -746,7 +1405,8 @@ public class ClassPath  {
 	    if (tokens[i] == null)
 		continue;
 	    try {
-		paths[i] = createLocation(tokens[i]);
+		paths[i] = (index != null ? index.getLocation(tokens[i])
+			    : createLocation(tokens[i]));
 	    } catch (MalformedURLException ex) {
 		GlobalOptions.err.println
 		    ("Warning: Malformed URL "+ tokens[i] + ".");
@@ -760,8 +1420,26 @@ public class ClassPath  {
 		     +tokens[i]+".");
 	    }
 	}
+	if (index != null) {
+	    try {
+		index.save();
+	    } catch (IOException ex) {
+		GlobalOptions.err.println
+		    ("Warning: Can't write class path index: "+ex.getMessage());
+	    }
+	}
     }
 
+    /**
+     * Returns the symbol table in which the names and types read from
+     * the class files are interned.  Class paths share the symbol
+     * table with their fallback, so that the names of all their
+     * classes can be compared by identity.
+     * @return the symbol table.
+     */
+    public SymbolTable getSymbolTable() {
+	return fallback != null ? fallback.getSymbolTable() : symbols;
+    }
 
     /** 
      * Creates a new class info for a class residing in this search
@@ -782,16 +1460,37 @@ public class ClassPath  {
     public ClassInfo getClassInfo(String classname) 
     {
 	checkClassName(classname);
-	int hash = classname.hashCode();
-	Iterator iter = classes.iterateHashCode(hash);
-	while (iter.hasNext()) {
-	    ClassInfo clazz = (ClassInfo) iter.next();
-	    if (clazz.getName().equals(classname))
+	ClassInfo clazz = findClassInfo(classname);
+	if (clazz != null)
+	    return clazz;
+	return (ClassInfo) classes.unify(new ClassInfo(classname, this),
+					 classname.hashCode(), nameComparator);
+    }
+
+    /**
+     * Gets the class info with the given name, that was already
+     * created.
+     * @return the class info, or null if there is none.
+     */
+    private ClassInfo findClassInfo(String classname) {
+	for (ConcurrentUnifyHash.Entry e
+		 = classes.getEntry(classname.hashCode());
+	     e != null; e = e.getNext()) {
+	    ClassInfo clazz = (ClassInfo) e.get();
+	    if (clazz != null && clazz.getName().equals(classname))
 		return clazz;
 	}
-	ClassInfo clazz = new ClassInfo(classname, this);
-	classes.put(hash, clazz);
-        return clazz;
+	return null;
+    }
+
+    /**
+     * Puts a class info into the registry and removes any other class
+     * info with the same name.
+     */
+    private void putClassInfo(ClassInfo classInfo) {
+	classes.replace(classInfo, classInfo.getName().hashCode(),
+			nameComparator);
+	membersChanged();
     }
 
     /** 
@@ -814,42 +1513,83 @@ public class ClassPath  {
 	throws IOException, ClassFormatException
     {
 	ClassInfo classInfo = new ClassInfo(null, this);
-	classInfo.read(new DataInputStream(new BufferedInputStream(stream)),
-		   ClassInfo.ALL);
-	String classname = classInfo.getName();
-	/* Remove the classinfo with the same name from this path if
-	 * it exists.
+	classInfo.read(ByteBuffer.wrap(readFully(stream)), ClassInfo.ALL);
+	/* This removes the classinfo with the same name from this
+	 * path if it exists.
 	 */
-	Iterator iter = classes.iterateHashCode(classname.hashCode());
-	while (iter.hasNext()) {
-	    ClassInfo clazz = (ClassInfo) iter.next();
-	    if (clazz.getName().equals(classname)) {
-		iter.remove();
-		break;
-	    }
-	}
-	classes.put(classname.hashCode(), classInfo);
+	putClassInfo(classInfo);
 	return classInfo;
     }
 
     /**
      * Updates the classes unify hash for a class renaming.  This
-     * should be only called by {@link ClassInfo#setName}.
+     * should be only called by {@link ClassInfo#setName}, after it
+     * changed the name.
      */
-    void renameClassInfo(ClassInfo classInfo, String classname) {
-	classes.remove(classInfo.getName().hashCode(), classInfo);
+    void renameClassInfo(ClassInfo classInfo, String oldName) {
+	classes.remove(oldName.hashCode(), classInfo);
 	/* Now remove any class already loaded with that name, just
 	 * in case we're overwriting one.
 	 */
-	Iterator iter = classes.iterateHashCode(classname.hashCode());
-	while (iter.hasNext()) {
-	    ClassInfo clazz = (ClassInfo) iter.next();
-	    if (clazz.getName().equals(classname)) {
-		iter.remove();
-		break;
+	putClassInfo(classInfo);
+    }
+
+    /**
+     * Gets the index of the class hierarchy of the classes in this
+     * class path.  It answers subclass and implements questions
+     * without walking the super classes of a class every time.
+     * @return the hierarchy index.
+     */
+    public ClassHierarchy getHierarchy() {
+	ClassHierarchy h = hierarchy;
+	if (h == null) {
+	    synchronized (this) {
+		if (hierarchy == null)
+		    hierarchy = new ClassHierarchy(this);
+		h = hierarchy;
 	    }
 	}
-	classes.put(classname.hashCode(), classInfo);
+	return h;
+    }
+
+    /**
+     * Invalidates the hierarchy index and the member resolver.  This
+     * is called by {@link ClassInfo#setSuperclass} and {@link
+     * ClassInfo#setInterfaces}.
+     */
+    void hierarchyChanged() {
+	ClassHierarchy h = hierarchy;
+	if (h != null)
+	    h.invalidate();
+	membersChanged();
+    }
+
+    /**
+     * Gets the resolver that finds the declaring classes of field and
+     * method references to the classes in this class path.
+     * @return the member resolver.
+     */
+    public MemberResolver getResolver() {
+	MemberResolver r = resolver;
+	if (r == null) {
+	    synchronized (this) {
+		if (resolver == null)
+		    resolver = new MemberResolver(this);
+		r = resolver;
+	    }
+	}
+	return r;
+    }
+
+    /**
+     * Clears the cache of the member resolver.  This is called when
+     * the fields or methods of a class are changed, or a class is
+     * replaced.
+     */
+    void membersChanged() {
+	MemberResolver r = resolver;
+	if (r != null)
+	    r.invalidate();
     }
 
     /**
@@ -870,11 +1610,107 @@ public class ClassPath  {
      * @see #existsClass
      */
     public boolean existsFile(String filename) {
+	return findLocation(filename) != null;
+    }
+
+    /**
+     * Searches the location that contains the given file.  This
+     * consults the negative lookup cache and the package filters.
+     * @param filename the file name.
+     * @return the first location containing the file, null if no
+     * location contains it.
+     */
+    private Location findLocation(String filename) {
+	synchronized (missingFiles) {
+	    if (missingFiles.contains(filename)) {
+		cacheHits++;
+		return null;
+	    }
+	    cacheMisses++;
+	}
+	BitSet filter = getPackageFilter(filename);
         for (int i=0; i<paths.length; i++) {
-	    if (paths[i] != null && paths[i].exists(filename))
-		return true;
+	    if (filter.get(i) && paths[i].exists(filename))
+		return paths[i];
+	}
+	synchronized (missingFiles) {
+	    missingFiles.add(filename);
+	}
+	return null;
+    }
+
+    /**
+     * Gets the set of locations that may contain the given file.  A
+     * location is excluded, if it {@link Location#listsDirectories
+     * lists its directories} and the directory of the file isn't
+     * among them.
+     * @param filename the file name.
+     * @return a bit set with the indices of the locations.
+     */
+    private BitSet getPackageFilter(String filename) {
+	int slash = filename.lastIndexOf('/');
+	String dir = slash == -1 ? "" : filename.substring(0, slash);
+	/* packageFilters is a Hashtable, which is thread safe.  If two
+	 * threads compute the same filter at once, both get the same
+	 * result.  The filters are never changed after they are put.
+	 */
+	BitSet filter = (BitSet) packageFilters.get(dir);
+	if (filter == null) {
+	    filter = new BitSet(paths.length);
+	    for (int i = 0; i < paths.length; i++) {
+		if (paths[i] != null
+		    && (slash == -1 || !paths[i].listsDirectories()
+			|| paths[i].isDirectory(dir)))
+		    filter.set(i);
+	    }
+	    packageFilters.put(dir, filter);
+	}
+	return filter;
+    }
+
+    /**
+     * Forgets all cached lookup results.  The class path caches which
+     * files and classes don't exist and which locations contain a
+     * directory.  If files are added to the locations after the
+     * class path was created, this method must be called to make them
+     * visible.  This also clears the class file cache.
+     */
+    public void invalidateCache() {
+	synchronized (classFiles) {
+	    classFiles.clear();
+	    classFilesSize = 0;
+	}
+	synchronized (missingFiles) {
+	    missingFiles.clear();
+	}
+	synchronized (missingClasses) {
+	    missingClasses.clear();
+	}
+	packageFilters.clear();
+    }
+
+    /**
+     * Returns how many lookups were answered by the negative lookup
+     * cache, without asking any location.
+     * @return the number of cache hits.
+     * @see #invalidateCache
+     */
+    public int getCacheHits() {
+	synchronized (missingFiles) {
+	    return cacheHits;
+	}
+    }
+
+    /**
+     * Returns how many lookups weren't answered by the negative lookup
+     * cache and had to ask the locations.
+     * @return the number of cache misses.
+     * @see #invalidateCache
+     */
+    public int getCacheMisses() {
+	synchronized (missingFiles) {
+	    return cacheMisses;
 	}
-	return false;
     }
 
     private void checkClassName(String name) {
@@ -892,10 +1728,9 @@ public class ClassPath  {
      * @return An InputStream for the file.
      */
     public InputStream getFile(String filename) throws IOException {
-        for (int i=0; i < paths.length; i++) {
-	    if (paths[i] != null && paths[i].exists(filename))
-		return paths[i].getFile(filename);
-	}
+	Location location = findLocation(filename);
+	if (location != null)
+	    return location.getFile(filename);
 	if (fallback != null)
 	    return fallback.getFile(filename);
 	throw new FileNotFoundException(filename);
@@ -909,11 +1744,8 @@ public class ClassPath  {
      * @return true, if filename exists and is a directory, false otherwise.
      */
     public boolean isDirectory(String filename) {
-        for (int i=0; i < paths.length; i++) {
-	    if (paths[i] != null && paths[i].exists(filename))
-		return paths[i].isDirectory(filename);
-	}
-	return false;
+	Location location = findLocation(filename);
+	return location != null && location.isDirectory(filename);
     }
 
     /**
@@ -1012,15 +1844,343 @@ public class ClassPath  {
     boolean loadClass(ClassInfo clazz, int howMuch) 
 	throws IOException, ClassFormatException
     {
-	for (int i = 0; i < paths.length; i++) {
-	    if (paths[i] != null && paths[i].loadClass(clazz, howMuch))
+	String classname = clazz.getName();
+	boolean missing;
+	synchronized (missingClasses) {
+	    Integer failed = (Integer) missingClasses.get(classname);
+	    missing = failed != null && failed.intValue() <= howMuch;
+	}
+	synchronized (missingFiles) {
+	    if (missing)
+		cacheHits++;
+	    else
+		cacheMisses++;
+	}
+	if (!missing) {
+	    byte[] contents = null;
+	    boolean useCache;
+	    synchronized (classFiles) {
+		useCache = maxClassFilesSize > 0;
+		if (useCache) {
+		    contents = (byte[]) classFiles.get(classname);
+		    if (contents != null)
+			classFileHits++;
+		    else
+			classFileMisses++;
+		}
+	    }
+	    if (contents != null) {
+		clazz.read(ByteBuffer.wrap(contents), howMuch);
 		return true;
+	    }
+
+	    String filename = classname.replace('.', '/') + ".class";
+	    BitSet filter = getPackageFilter(filename);
+	    for (int i = 0; i < paths.length; i++) {
+		if (!filter.get(i))
+		    continue;
+		/* Only locations that know their files can be
+		 * cached, the others may load classes on their own.
+		 */
+		if (useCache && paths[i].listsDirectories()) {
+		    if (paths[i].exists(filename)) {
+			contents = readClassFile(paths[i], classname, filename);
+			clazz.read(ByteBuffer.wrap(contents), howMuch);
+			return true;
+		    }
+		} else if (paths[i].loadClass(clazz, howMuch))
+		    return true;
+	    }
+	    synchronized (missingClasses) {
+		Integer failed = (Integer) missingClasses.get(classname);
+		if (failed == null || failed.intValue() > howMuch)
+		    missingClasses.put(classname, new Integer(howMuch));
+	    }
 	}
 	if (fallback != null)
 	    return fallback.loadClass(clazz, howMuch);
 	return false;
     }
 
+    /**
+     * Returns a fingerprint of the contents of a class file.  Class
+     * files with the same name and the same fingerprint are byte
+     * identical with overwhelming probability, so that the results
+     * of analyzing one of them can be reused for the other.  This is
+     * common if the same library is copied into several archives.
+     * <br>
+     *
+     * The fingerprint is the size of the class file in the upper 32
+     * bits and the CRC-32 of its contents in the lower 32 bits.  For
+     * archives it is taken from the zip directory, otherwise the
+     * class file is read.  If the {@link #setClassFileCacheSize class
+     * file cache} is enabled, the contents are kept there, so that
+     * loading the class afterwards doesn't read it again.
+     *
+     * @param classname the full qualified name of the class.
+     * @return the fingerprint of the class file that {@link
+     * #getClassInfo} would read, or -1 if the class file is not
+     * found or can't be read, e.g. if the class comes from
+     * reflection.
+     * @exception IOException if an io exception occured while
+     * reading the class file.
+     */
+    public long getClassFingerprint(String classname) throws IOException {
+	checkClassName(classname);
+	String filename = classname.replace('.', '/') + ".class";
+	Location location = findLocation(filename);
+	if (location == null) {
+	    if (fallback != null)
+		return fallback.getClassFingerprint(classname);
+	    return -1;
+	}
+	long fingerprint = location.getFingerprint(filename);
+	if (fingerprint != -1)
+	    return fingerprint;
+
+	byte[] contents;
+	synchronized (classFiles) {
+	    contents = (byte[]) classFiles.get(classname);
+	}
+	if (contents == null) {
+	    try {
+		contents = readClassFile(location, classname, filename);
+	    } catch (FileNotFoundException ex) {
+		return -1;
+	    }
+	}
+	CRC32 crc = new CRC32();
+	crc.update(contents);
+	return ((long) contents.length << 32) | crc.getValue();
+    }
+
+    /**
+     * Starts or stops watching the local directories in this class
+     * path.  While they are watched, a background thread is notified
+     * by the file system when a file is created, changed or deleted.
+     * It invalidates the cached information about the file and, if
+     * it is a class file, resets its class info, so that it reads the
+     * new contents when it is loaded again.  The class info object
+     * stays the same, so the other classes still refer to it.  Changes
+     * to a modified class are discarded.  <br>
+     *
+     * This is useful for long running sessions, e.g. a class browser,
+     * while the class files are rebuilt.  Archives and URLs are not
+     * watched; directories whose listing comes from a {@link
+     * ClassPathIndex} are.
+     *
+     * @param watch true to start watching, false to stop.
+     * @exception IOException if the file system can't watch the
+     * directories.
+     */
+    public void setWatchFiles(boolean watch) throws IOException {
+	synchronized (paths) {
+	    if (watch && watcher == null) {
+		watcher = new Watcher();
+		watcher.start();
+	    } else if (!watch && watcher != null) {
+		watcher.close();
+		watcher = null;
+	    }
+	}
+    }
+
+    /**
+     * Invalidates the cached information about a file that was
+     * created, changed or deleted.  If it is a class file, the class
+     * info is reset, so that it is read again.
+     * @param filename the name of the file, separated by "/".
+     */
+    private void invalidateFile(String filename) {
+	synchronized (missingFiles) {
+	    missingFiles.remove(filename);
+	}
+	int slash = filename.lastIndexOf('/');
+	packageFilters.remove(slash == -1 ? "" : filename.substring(0, slash));
+	packageFilters.remove(filename);
+	if (!filename.endsWith(".class"))
+	    return;
+
+	String classname = filename.substring(0, filename.length() - 6)
+	    .replace('/', '.');
+	synchronized (missingClasses) {
+	    missingClasses.remove(classname);
+	}
+	synchronized (classFiles) {
+	    byte[] old = (byte[]) classFiles.remove(classname);
+	    if (old != null)
+		classFilesSize -= old.length;
+	}
+	ClassInfo clazz = findClassInfo(classname);
+	if (clazz != null) {
+	    clazz.reset();
+	    hierarchyChanged();
+	}
+    }
+
+    /**
+     * Sets the maximum size of the class file cache.  The class path
+     * keeps the contents of the class files it read from local
+     * directories, archives and the runtime image in memory, until
+     * their total size exceeds the given number of bytes; then the
+     * least recently used class files are evicted.  If a class was
+     * dropped and is loaded again, it is parsed from the cache,
+     * instead of being read again.  <br>
+     *
+     * The cache is disabled by default.
+     *
+     * @param bytes the maximum size in bytes, 0 to disable the cache.
+     * @see ClassInfo#drop
+     */
+    public void setClassFileCacheSize(int bytes) {
+	synchronized (classFiles) {
+	    maxClassFilesSize = bytes;
+	    evictClassFiles();
+	}
+    }
+
+    /**
+     * Returns how many classes were loaded from the class file cache.
+     * @return the number of cache hits.
+     * @see #setClassFileCacheSize
+     */
+    public int getClassFileCacheHits() {
+	synchronized (classFiles) {
+	    return classFileHits;
+	}
+    }
+
+    /**
+     * Returns how many classes were not found in the class file cache
+     * while it was enabled.
+     * @return the number of cache misses.
+     * @see #setClassFileCacheSize
+     */
+    public int getClassFileCacheMisses() {
+	synchronized (classFiles) {
+	    return classFileMisses;
+	}
+    }
+
+    /**
+     * Returns how many class files were evicted from the class file
+     * cache, because it grew too large.
+     * @return the number of evicted class files.
+     * @see #setClassFileCacheSize
+     */
+    public int getClassFileCacheEvictions() {
+	synchronized (classFiles) {
+	    return classFileEvictions;
+	}
+    }
+
+    /**
+     * Removes the least recently used class files from the class
+     * file cache, until it isn't too large.  The caller must
+     * synchronize on classFiles.
+     */
+    private void evictClassFiles() {
+	Iterator iter = classFiles.values().iterator();
+	while (classFilesSize > maxClassFilesSize && iter.hasNext()) {
+	    classFilesSize -= ((byte[]) iter.next()).length;
+	    iter.remove();
+	    classFileEvictions++;
+	}
+    }
+
+    /**
+     * Reads a class file from a location and puts its contents into
+     * the class file cache.
+     */
+    private byte[] readClassFile(Location location, String classname,
+				 String filename) throws IOException {
+	InputStream input = location.getFile(filename);
+	if (input == null)
+	    throw new FileNotFoundException(filename);
+	byte[] contents;
+	try {
+	    contents = readFully(input);
+	} finally {
+	    input.close();
+	}
+	synchronized (classFiles) {
+	    if (contents.length <= maxClassFilesSize) {
+		byte[] old = (byte[]) classFiles.put(classname, contents);
+		if (old != null)
+		    classFilesSize -= old.length;
+		classFilesSize += contents.length;
+		evictClassFiles();
+	    }
+	}
+	return contents;
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException {
+	byte[] contents = new byte[4096];
+	int pos = 0;
+	int count;
+	while ((count = input.read(contents, pos, contents.length - pos))
+	       != -1) {
+	    pos += count;
+	    if (pos == contents.length) {
+		byte[] newarr = new byte[2 * contents.length];
+		System.arraycopy(contents, 0, newarr, 0, pos);
+		contents = newarr;
+	    }
+	}
+	byte[] result = new byte[pos];
+	System.arraycopy(contents, 0, result, 0, pos);
+	return result;
+    }
+
+    /**
+     * Sets the number of threads that prefetch classes.  A class
+     * that is read by this class path mentions other classes in its
+     * constant pool and these classes are usually needed soon
+     * afterwards.  If prefetching is enabled, they are loaded to
+     * {@link ClassInfo#HIERARCHY} in the background, so that reading
+     * the class files overlaps with the analysis of the current
+     * class.  This is most useful if the class path is on a slow or
+     * remote file system.  <br>
+     *
+     * Prefetching is disabled by default.  It shouldn't be enabled
+     * if classes are modified, since a class can't be loaded after
+     * it was modified.
+     *
+     * @param count the number of threads, 0 to disable prefetching.
+     */
+    public void setPrefetchThreads(int count) {
+	synchronized (prefetchQueue) {
+	    prefetchThreads = count;
+	    if (count == 0) {
+		prefetchQueue.clear();
+		prefetched = new ClassInfo[PREFETCH_KEEP];
+	    }
+	    while (runningPrefetchers < count) {
+		new Prefetcher().start();
+		runningPrefetchers++;
+	    }
+	    /* Wake up superfluous threads, so that they exit. */
+	    prefetchQueue.notifyAll();
+	}
+    }
+
+    /**
+     * Queues a class for prefetching.  This is only called by
+     * ClassInfo, after it read a class that refers to clazz.  Classes
+     * read by the prefetcher are not followed further, so that it
+     * doesn't load the whole class path.
+     */
+    void prefetch(ClassInfo clazz) {
+	if (prefetchThreads == 0
+	    || Thread.currentThread() instanceof Prefetcher)
+	    return;
+	synchronized (prefetchQueue) {
+	    prefetchQueue.addLast(clazz);
+	    prefetchQueue.notify();
+	}
+    }
+
     /**
      * Returns a string representation of this classpath.
      * @return a string useful for debugging purposes.
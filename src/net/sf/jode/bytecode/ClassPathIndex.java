@@ -0,0 +1,444 @@
+/* ClassPathIndex Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.bytecode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+
+///#def COLLECTIONS java.util
+import java.util.Arrays;
+///#enddef
+
+import net.sf.jode.GlobalOptions;
+
+/**
+ * A persistent index of the files in the local components of a
+ * class path.  It remembers for every local directory and archive
+ * the listing of all its directories, together with the time stamps
+ * that tell when the listing becomes stale.  It is stored in a
+ * cache file, so that the next run can answer the questions which
+ * classes and packages exist without opening a single archive or
+ * scanning a single directory.  <br>
+ *
+ * An archive is considered stale if its modification time or its
+ * size changed.  A directory is considered stale if the modification
+ * time of any of its subdirectories changed, which happens whenever
+ * a file is created, removed or renamed.  Stale entries are rebuilt
+ * when their location is requested and the cache file is rewritten
+ * by {@link #save}.  The contents of files are never cached, the
+ * real location is opened when the first file is read.  <br>
+ *
+ * URLs and the reflection location are not cached; for them
+ * {@link #getLocation} returns the same location as
+ * {@link ClassPath#createLocation}.
+ *
+ * @author Jochen Hoenicke
+ * @see ClassPath#ClassPath(String, ClassPath, ClassPathIndex)
+ */
+public class ClassPathIndex {
+    private static final int MAGIC = 0x4a434958; // "JCIX"
+    private static final int VERSION = 1;
+
+    private File indexFile;
+    /**
+     * Maps the absolute path of a location to its Entry.
+     */
+    private Hashtable entries = new Hashtable();
+    private boolean modified = false;
+    private int reused = 0;
+    private int rebuilt = 0;
+
+    /**
+     * The cached listing of a single location.
+     */
+    private static class Entry {
+	boolean isArchive;
+	long lastModified;
+	long length;
+	/**
+	 * The names of all directories, relative to the location and
+	 * separated by "/".  The root directory is "".
+	 */
+	String[] dirNames;
+	/**
+	 * The modification times of the directories, only used if
+	 * this is not an archive.
+	 */
+	long[] dirStamps;
+	/**
+	 * Maps directory names to the sorted array of the names
+	 * of the files and subdirectories they contain.
+	 */
+	Hashtable listings;
+
+	boolean isValid(File file) {
+	    if (isArchive)
+		return (file.isFile()
+			&& file.lastModified() == lastModified
+			&& file.length() == length);
+	    if (!file.isDirectory())
+		return false;
+	    for (int i = 0; i < dirNames.length; i++) {
+		File dir = new File(file, dirNames[i].replace
+				    ('/', File.separatorChar));
+		if (dir.lastModified() != dirStamps[i])
+		    return false;
+	    }
+	    return true;
+	}
+    }
+
+    /**
+     * A location that answers all questions about existing files
+     * from the cached listing and only creates the real location
+     * when a file or its fingerprint is read.  When the watched directory changes, the
+     * listing is stale and the real location answers everything.
+     */
+    private static class CachedLocation extends ClassPath.Location {
+	private String path;
+	/**
+	 * The cached listing, null after the directory changed.
+	 */
+	private volatile Entry entry;
+	private boolean isArchive;
+	private ClassPath.Location location;
+
+	public CachedLocation(String path, Entry entry) {
+	    this.path = path;
+	    this.entry = entry;
+	    this.isArchive = entry.isArchive;
+	}
+
+	File getWatchedDirectory() {
+	    return isArchive ? null : new File(path);
+	}
+
+	void directoryChanged() {
+	    entry = null;
+	}
+
+	protected boolean exists(String filename) {
+	    Entry entry = this.entry;
+	    if (entry == null) {
+		try {
+		    return getRealLocation().exists(filename);
+		} catch (IOException ex) {
+		    return false;
+		}
+	    }
+	    if (entry.listings.containsKey(filename))
+		return true;
+	    int slash = filename.lastIndexOf('/');
+	    String[] files = (String[]) entry.listings.get
+		(slash == -1 ? "" : filename.substring(0, slash));
+	    return (files != null && Arrays.binarySearch
+		    (files, filename.substring(slash + 1)) >= 0);
+	}
+
+	protected boolean isDirectory(String filename) {
+	    Entry entry = this.entry;
+	    if (entry == null) {
+		try {
+		    return getRealLocation().isDirectory(filename);
+		} catch (IOException ex) {
+		    return false;
+		}
+	    }
+	    return entry.listings.containsKey(filename);
+	}
+
+	protected boolean listsDirectories() {
+	    return true;
+	}
+
+	private synchronized ClassPath.Location getRealLocation()
+	    throws IOException
+	{
+	    if (location == null)
+		location = ClassPath.createLocation(path);
+	    return location;
+	}
+
+	protected InputStream getFile(String filename) throws IOException {
+	    return getRealLocation().getFile(filename);
+	}
+
+	protected ByteBuffer getFileBuffer(String filename) throws IOException {
+	    return getRealLocation().getFileBuffer(filename);
+	}
+
+	protected long getFingerprint(String filename) throws IOException {
+	    return getRealLocation().getFingerprint(filename);
+	}
+
+	protected boolean loadClass(ClassInfo clazz, int howMuch)
+	    throws IOException, ClassFormatException
+	{
+	    /* Don't open the real location for classes it doesn't have. */
+	    if (!exists(clazz.getName().replace('.', '/') + ".class"))
+		return false;
+	    return getRealLocation().loadClass(clazz, howMuch);
+	}
+
+	protected Enumeration listFiles(String directory) {
+	    Entry entry = this.entry;
+	    if (entry == null) {
+		try {
+		    return getRealLocation().listFiles(directory);
+		} catch (IOException ex) {
+		    return null;
+		}
+	    }
+	    final String[] files = (String[]) entry.listings.get(directory);
+	    if (files == null)
+		return null;
+	    return new Enumeration() {
+		int i = 0;
+		public boolean hasMoreElements() {
+		    return i < files.length;
+		}
+		public Object nextElement() {
+		    if (i >= files.length)
+			throw new NoSuchElementException();
+		    return files[i++];
+		}
+	    };
+	}
+
+	public String toString() {
+	    return path;
+	}
+    }
+
+    /**
+     * Creates a class path index that is stored in the given file.
+     * If the file exists, the index is read from it.  If it can't be
+     * read, a warning is printed and the index starts empty.
+     * @param indexFile the cache file.
+     */
+    public ClassPathIndex(File indexFile) {
+	this.indexFile = indexFile;
+	if (!indexFile.exists())
+	    return;
+	try {
+	    read();
+	} catch (IOException ex) {
+	    GlobalOptions.err.println
+		("Warning: Can't read class path index "+indexFile+": "+ex);
+	    entries.clear();
+	}
+    }
+
+    private static boolean isLocalPath(String path) {
+	/* Grrr, we need to distinguish c:\foo from URLs. */
+	return (!path.startsWith("jar:")
+		&& !path.startsWith("reflection:")
+		&& path.indexOf(':') <= 1);
+    }
+
+    /**
+     * Creates a location for a given path component.  If the
+     * component is a local directory or archive and the index has an
+     * up to date listing of it, the location is answered from the
+     * index.  Otherwise the location is created by {@link
+     * ClassPath#createLocation} and, if it is local, its listing is
+     * added to the index.
+     * @param path the path component.
+     * @return a location corresponding to the path component.
+     * @exception IOException if an io exception occured while accessing the
+     * path component.
+     * @exception SecurityException if a security exception occured
+     * while accessing the path component.
+     */
+    public ClassPath.Location getLocation(String path)
+	throws IOException, SecurityException
+    {
+	if (!isLocalPath(path))
+	    return ClassPath.createLocation(path);
+
+	File file = new File(path);
+	String key = file.getAbsolutePath();
+	Entry entry = (Entry) entries.get(key);
+	if (entry != null && entry.isValid(file)) {
+	    reused++;
+	    return new CachedLocation(path, entry);
+	}
+
+	if (entry != null) {
+	    entries.remove(key);
+	    modified = true;
+	}
+	ClassPath.Location location = ClassPath.createLocation(path);
+	entries.put(key, scan(file, location));
+	modified = true;
+	rebuilt++;
+	return location;
+    }
+
+    private static Entry scan(File file, ClassPath.Location location) {
+	Entry entry = new Entry();
+	entry.isArchive = !file.isDirectory();
+	/* Take the time stamps before reading the listing, so that a
+	 * concurrent change makes the entry stale.
+	 */
+	entry.lastModified = file.lastModified();
+	entry.length = entry.isArchive ? file.length() : 0L;
+	entry.listings = new Hashtable();
+	Vector dirNames = new Vector();
+	Vector dirStamps = new Vector();
+	scanDirectory(file, location, entry, "", dirNames, dirStamps);
+
+	int count = dirNames.size();
+	entry.dirNames = new String[count];
+	entry.dirStamps = new long[count];
+	dirNames.copyInto(entry.dirNames);
+	for (int i = 0; i < count; i++)
+	    entry.dirStamps[i] = ((Long) dirStamps.elementAt(i)).longValue();
+	return entry;
+    }
+
+    private static void scanDirectory(File file, ClassPath.Location location,
+				      Entry entry, String dirName,
+				      Vector dirNames, Vector dirStamps) {
+	long stamp = 0L;
+	if (!entry.isArchive)
+	    stamp = new File(file, dirName.replace('/', File.separatorChar))
+		.lastModified();
+	Vector names = new Vector();
+	Enumeration enumeration = location.listFiles(dirName);
+	if (enumeration != null) {
+	    while (enumeration.hasMoreElements())
+		names.addElement(enumeration.nextElement());
+	}
+	String[] files = new String[names.size()];
+	names.copyInto(files);
+	Arrays.sort(files);
+
+	dirNames.addElement(dirName);
+	dirStamps.addElement(new Long(stamp));
+	entry.listings.put(dirName, files);
+
+	for (int i = 0; i < files.length; i++) {
+	    String fullName = (dirName.length() == 0 ? files[i]
+			       : dirName + "/" + files[i]);
+	    if (location.isDirectory(fullName))
+		scanDirectory(file, location, entry, fullName,
+			      dirNames, dirStamps);
+	}
+    }
+
+    private void read() throws IOException {
+	DataInputStream input = new DataInputStream
+	    (new BufferedInputStream(new FileInputStream(indexFile)));
+	try {
+	    if (input.readInt() != MAGIC || input.readInt() != VERSION)
+		throw new IOException("wrong format");
+	    int count = input.readInt();
+	    for (int i = 0; i < count; i++) {
+		String key = input.readUTF();
+		Entry entry = new Entry();
+		entry.isArchive = input.readBoolean();
+		entry.lastModified = input.readLong();
+		entry.length = input.readLong();
+		int dirCount = input.readInt();
+		entry.dirNames = new String[dirCount];
+		entry.dirStamps = new long[dirCount];
+		entry.listings = new Hashtable(dirCount * 4 / 3 + 1);
+		for (int j = 0; j < dirCount; j++) {
+		    entry.dirNames[j] = input.readUTF();
+		    entry.dirStamps[j] = input.readLong();
+		    String[] files = new String[input.readInt()];
+		    for (int k = 0; k < files.length; k++)
+			files[k] = input.readUTF();
+		    entry.listings.put(entry.dirNames[j], files);
+		}
+		entries.put(key, entry);
+	    }
+	} finally {
+	    input.close();
+	}
+    }
+
+    /**
+     * Writes the index back to its cache file, if it was changed
+     * since it was read.  The file is written to a temporary file
+     * first and then renamed, so that concurrent readers never see a
+     * half written index.
+     * @exception IOException if the file couldn't be written.
+     */
+    public void save() throws IOException {
+	if (GlobalOptions.verboseLevel > 0)
+	    GlobalOptions.err.println
+		("Class path index "+indexFile+": "+reused+" reused, "
+		 +rebuilt+" rebuilt.");
+	if (!modified)
+	    return;
+	File tmpFile = new File(indexFile.getPath() + ".tmp");
+	DataOutputStream output = new DataOutputStream
+	    (new BufferedOutputStream(new FileOutputStream(tmpFile)));
+	try {
+	    output.writeInt(MAGIC);
+	    output.writeInt(VERSION);
+	    output.writeInt(entries.size());
+	    Enumeration keys = entries.keys();
+	    while (keys.hasMoreElements()) {
+		String key = (String) keys.nextElement();
+		Entry entry = (Entry) entries.get(key);
+		output.writeUTF(key);
+		output.writeBoolean(entry.isArchive);
+		output.writeLong(entry.lastModified);
+		output.writeLong(entry.length);
+		output.writeInt(entry.dirNames.length);
+		for (int j = 0; j < entry.dirNames.length; j++) {
+		    output.writeUTF(entry.dirNames[j]);
+		    output.writeLong(entry.dirStamps[j]);
+		    String[] files = (String[])
+			entry.listings.get(entry.dirNames[j]);
+		    output.writeInt(files.length);
+		    for (int k = 0; k < files.length; k++)
+			output.writeUTF(files[k]);
+		}
+	    }
+	} finally {
+	    output.close();
+	}
+	if (!tmpFile.renameTo(indexFile)) {
+	    /* Some systems don't allow to rename onto an existing file.
+	     */
+	    indexFile.delete();
+	    if (!tmpFile.renameTo(indexFile))
+		throw new IOException("Can't rename "+tmpFile
+				      +" to "+indexFile);
+	}
+	modified = false;
+    }
+}
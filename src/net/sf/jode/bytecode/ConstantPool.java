@@ -20,6 +20,8 @@
 package net.sf.jode.bytecode;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 import java.util.NoSuchElementException;
 ///#def COLLECTIONS java.util
@@ -29,11 +31,18 @@ import java.util.Iterator;
 import java.lang.UnsupportedOperationException;
 ///#enddef
 
+import net.sf.jode.util.SymbolTable;
+
 /**
  * This class represent the constant pool.  Normally you wont need to
  * touch this class, as ClassInfo already does all the hard work.  You
  * will only need it if you want to add your own custom attributes
- * that use the constant pool.
+ * that use the constant pool. <br>
+ *
+ * When the constant pool is read, the numeric and UTF8 constants are
+ * not decoded.  Their raw bytes are kept and they are decoded on
+ * first access.  Most classes contain many strings, e.g. the types of
+ * members or names of local variables, that are never looked at.
  *
  * @author Jochen Hoenicke
  */
@@ -49,60 +58,157 @@ public class ConstantPool {
     public final static int DOUBLE             =  6;
     public final static int NAMEANDTYPE        = 12;
     public final static int UTF8               =  1;
+    public final static int METHODHANDLE       = 15;
+    public final static int METHODTYPE         = 16;
+    public final static int DYNAMIC            = 17;
+    public final static int INVOKEDYNAMIC      = 18;
+    public final static int MODULE             = 19;
+    public final static int PACKAGE            = 20;
 
     int count;
     int[] tags;
+    /**
+     * The indices of the referenced entries.  For numeric and UTF8
+     * constants that weren't decoded yet, indices1 holds the offset
+     * into data and indices2 the length.
+     */
     int[] indices1, indices2;
 
+    /**
+     * The decoded constants, null if they weren't decoded yet.
+     */
     Object[] constants;
+    /**
+     * The raw bytes of the numeric and UTF8 constants, null if the
+     * constants weren't read from a class file.  This may be the
+     * array containing the whole class file.
+     */
+    byte[] data;
+    /**
+     * The table used to intern the strings, null if String.intern
+     * should be used.
+     */
+    SymbolTable symbols;
 
     public ConstantPool () {
     }
 
-    public void read(DataInputStream stream) 
-	throws IOException {
-	count = stream.readUnsignedShort();
+    /**
+     * Creates a constant pool whose strings are interned in the
+     * given symbol table instead of by String.intern.  Strings of
+     * constant pools sharing the same table can be compared by
+     * identity.
+     * @param symbols the symbol table.
+     */
+    public ConstantPool (SymbolTable symbols) {
+	this.symbols = symbols;
+    }
+
+    /**
+     * Remembers the position of the raw bytes of a numeric or UTF8
+     * constant.  If the input is backed by an array, data is that
+     * array, otherwise the bytes are copied into data.
+     */
+    private int readData(ByteBuffer input, int dataLength,
+			 int i, int length) {
+	if (length > input.remaining())
+	    throw new BufferUnderflowException();
+	if (input.hasArray()) {
+	    indices1[i] = input.arrayOffset() + input.position();
+	    input.position(input.position() + length);
+	} else {
+	    if (dataLength + length > data.length) {
+		byte[] newData = new byte[Math.max(data.length * 2,
+						   dataLength + length)];
+		System.arraycopy(data, 0, newData, 0, dataLength);
+		data = newData;
+	    }
+	    input.get(data, dataLength, length);
+	    indices1[i] = dataLength;
+	    dataLength += length;
+	}
+	indices2[i] = length;
+	return dataLength;
+    }
+
+    /**
+     * Reads the constant pool from a buffer, which is positioned at
+     * the constant pool count.  If the buffer is backed by an array,
+     * the strings and numbers are decoded directly from that array
+     * when they are requested.  You mustn't change the contents of
+     * the buffer afterwards.
+     * @param input the buffer.  Its position is advanced over the
+     * constant pool.
+     * @exception ClassFormatException if the constant pool is
+     * malformed or truncated.
+     */
+    public void read(ByteBuffer input) throws ClassFormatException {
+	try {
+	    readEntries(input);
+	} catch (BufferUnderflowException ex) {
+	    throw new ClassFormatException("truncated constant pool");
+	}
+    }
+
+    private void readEntries(ByteBuffer input) throws ClassFormatException {
+	count = input.getShort() & 0xffff;
         tags = new int[count];
         indices1 = new int[count];
         indices2 = new int[count];
         constants = new Object[count];
+	data = input.hasArray() ? input.array() : new byte[count * 12];
+	int dataLength = 0;
 
 	for (int i=1; i< count; i++) {
-            int tag = stream.readUnsignedByte();
+	    int tag = input.get() & 0xff;
             tags[i] = tag;
             switch (tag) {
 	    case CLASS:
-		indices1[i] = stream.readUnsignedShort();
+		indices1[i] = input.getShort() & 0xffff;
 		break;
 	    case FIELDREF:
 	    case METHODREF:
 	    case INTERFACEMETHODREF:
-		indices1[i] = stream.readUnsignedShort();
-		indices2[i] = stream.readUnsignedShort();
+		indices1[i] = input.getShort() & 0xffff;
+		indices2[i] = input.getShort() & 0xffff;
 		break;
 	    case STRING:
-		indices1[i] = stream.readUnsignedShort();
+		indices1[i] = input.getShort() & 0xffff;
 		break;
 	    case INTEGER:
-		constants[i] = new Integer(stream.readInt());
-		break;
 	    case FLOAT:
-		constants[i] = new Float(stream.readFloat());
+		dataLength = readData(input, dataLength, i, 4);
 		break;
 	    case LONG:
-		constants[i] = new Long(stream.readLong());
-                tags[++i] = -LONG;
-		break;
 	    case DOUBLE:
-		constants[i] = new Double(stream.readDouble());
-                tags[++i] = -DOUBLE;
+		dataLength = readData(input, dataLength, i, 8);
+		tags[++i] = -tag;
 		break;
 	    case NAMEANDTYPE:
-		indices1[i] = stream.readUnsignedShort();
-		indices2[i] = stream.readUnsignedShort();
+		indices1[i] = input.getShort() & 0xffff;
+		indices2[i] = input.getShort() & 0xffff;
 		break;
 	    case UTF8:
-		constants[i] = stream.readUTF().intern();
+		dataLength = readData(input, dataLength, i,
+				      input.getShort() & 0xffff);
+		break;
+		/* The following constants of newer class files are
+		 * only read to skip them, they are only used by code
+		 * and attributes that we don't understand anyway.
+		 */
+	    case METHODHANDLE:
+		indices1[i] = input.get() & 0xff;
+		indices2[i] = input.getShort() & 0xffff;
+		break;
+	    case METHODTYPE:
+	    case MODULE:
+	    case PACKAGE:
+		indices1[i] = input.getShort() & 0xffff;
+		break;
+	    case DYNAMIC:
+	    case INVOKEDYNAMIC:
+		indices1[i] = input.getShort() & 0xffff;
+		indices2[i] = input.getShort() & 0xffff;
 		break;
 	    default:
 		throw new ClassFormatException("unknown constant tag");
@@ -110,18 +216,129 @@ public class ConstantPool {
 	}
     }
 
+    /**
+     * Reads the constant pool from a stream.  The raw entries are
+     * copied into an array that is then read by {@link
+     * #read(ByteBuffer)}.
+     * @param stream the stream, positioned at the constant pool count.
+     * @exception IOException if the stream throws an exception.
+     * @exception ClassFormatException if the constant pool is malformed.
+     */
+    public void read(DataInputStream stream)
+	throws IOException {
+	int poolCount = stream.readUnsignedShort();
+	byte[] raw = new byte[poolCount * 8 + 2];
+	raw[0] = (byte) (poolCount >> 8);
+	raw[1] = (byte) poolCount;
+	int rawLength = 2;
+	for (int i = 1; i < poolCount; i++) {
+	    int tag = stream.readUnsignedByte();
+	    int length;
+	    switch (tag) {
+	    case CLASS: case STRING:
+	    case METHODTYPE: case MODULE: case PACKAGE:
+		length = 2;
+		break;
+	    case METHODHANDLE:
+		length = 3;
+		break;
+	    case FIELDREF: case METHODREF: case INTERFACEMETHODREF:
+	    case NAMEANDTYPE: case DYNAMIC: case INVOKEDYNAMIC:
+	    case INTEGER: case FLOAT:
+		length = 4;
+		break;
+	    case LONG: case DOUBLE:
+		length = 8;
+		i++;
+		break;
+	    case UTF8:
+		length = 2 + stream.readUnsignedShort();
+		break;
+	    default:
+		throw new ClassFormatException("unknown constant tag");
+	    }
+	    if (rawLength + 1 + length > raw.length) {
+		byte[] newRaw = new byte[Math.max(raw.length * 2,
+						  rawLength + 1 + length)];
+		System.arraycopy(raw, 0, newRaw, 0, rawLength);
+		raw = newRaw;
+	    }
+	    raw[rawLength++] = (byte) tag;
+	    if (tag == UTF8) {
+		raw[rawLength++] = (byte) ((length - 2) >> 8);
+		raw[rawLength++] = (byte) (length - 2);
+		length -= 2;
+	    }
+	    stream.readFully(raw, rawLength, length);
+	    rawLength += length;
+	}
+	read(ByteBuffer.wrap(raw, 0, rawLength));
+    }
+
     public int getTag(int i) throws ClassFormatException {
         if (i == 0)
             throw new ClassFormatException("null tag");
         return tags[i];
     }
 
+    private long getLong(int offset, int length) {
+	long value = 0;
+	for (int j = 0; j < length; j++)
+	    value = (value << 8) | (data[offset + j] & 0xff);
+	return value;
+    }
+
+    /**
+     * Returns the unique instance of the given string, see
+     * SymbolTable.intern.
+     */
+    String intern(String s) {
+	return symbols != null ? symbols.intern(s) : s.intern();
+    }
+
     public String getUTF8(int i) throws ClassFormatException {
         if (tags[i] != UTF8)
             throw new ClassFormatException("Tag mismatch");
+	if (constants[i] == null) {
+	    /* Two threads may decode the same constant at once, but
+	     * both get the same interned string.
+	     */
+	    try {
+		constants[i] = symbols != null
+		    ? symbols.intern(data, indices1[i], indices2[i])
+		    : SymbolTable.decodeUTF8(data, indices1[i], indices2[i])
+		    .intern();
+	    } catch (IllegalArgumentException ex) {
+		throw new ClassFormatException(ex.getMessage());
+	    }
+	}
         return (String)constants[i];
     }
 
+    /**
+     * Gets the value of a numeric constant, decoding it if necessary.
+     */
+    private Object getNumber(int i) {
+	if (constants[i] == null) {
+	    long bits = getLong(indices1[i], indices2[i]);
+	    switch (tags[i]) {
+	    case INTEGER:
+		constants[i] = new Integer((int) bits);
+		break;
+	    case FLOAT:
+		constants[i] = new Float(Float.intBitsToFloat((int) bits));
+		break;
+	    case LONG:
+		constants[i] = new Long(bits);
+		break;
+	    case DOUBLE:
+		constants[i] = new Double(Double.longBitsToDouble(bits));
+		break;
+	    }
+	}
+	return constants[i];
+    }
+
     public Reference getRef(int i) throws ClassFormatException {
         if (tags[i] != FIELDREF
             && tags[i] != METHODREF && tags[i] != INTERFACEMETHODREF)
@@ -155,7 +372,7 @@ public class ConstantPool {
         case FLOAT:
         case LONG:
         case DOUBLE:
-            return constants[i];
+	    return getNumber(i);
         case CLASS:
 	    return Reference.getReference(getClassType(i), 
 					  "class", "Ljava/lang/Class;");
@@ -170,7 +387,7 @@ public class ConstantPool {
             throw new ClassFormatException("Tag mismatch");
 	String clName = getUTF8(indices1[i]);
 	if (clName.charAt(0) != '[') {
-	    clName = ("L"+clName+';').intern();
+	    clName = intern("L"+clName+';');
 	}
 	try {
 	    TypeSignature.checkTypeSig(clName);
@@ -190,7 +407,7 @@ public class ConstantPool {
 	    } catch (IllegalArgumentException ex) {
 		throw new ClassFormatException(ex.getMessage());
 	    }
-	    constants[i] = clName.replace('/','.').intern();
+	    constants[i] = intern(clName.replace('/','.'));
 	}
 	return (String) constants[i];
     }
@@ -239,15 +456,19 @@ public class ConstantPool {
         case STRING:
             return "String \""+toString(indices1[i])+"\"";
         case INTEGER:
-            return "Int "+constants[i].toString();
+	    return "Int "+getNumber(i).toString();
         case FLOAT:
-            return "Float "+constants[i].toString();
+	    return "Float "+getNumber(i).toString();
         case LONG:
-            return "Long "+constants[i].toString();
+	    return "Long "+getNumber(i).toString();
         case DOUBLE:
-            return "Double "+constants[i].toString();
+	    return "Double "+getNumber(i).toString();
         case UTF8:
-            return constants[i].toString();
+	    try {
+		return getUTF8(i);
+	    } catch (ClassFormatException ex) {
+		return "malformed UTF8";
+	    }
         case FIELDREF:
             return "Fieldref: "+toString(indices1[i])+"; "
                 + toString(indices2[i]);
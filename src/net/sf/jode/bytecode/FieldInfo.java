@@ -18,7 +18,7 @@
  */
 
 package net.sf.jode.bytecode;
-import java.io.DataInputStream;
+import java.nio.ByteBuffer;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
@@ -73,6 +73,11 @@ public final class FieldInfo extends BinaryInfo implements Comparable {
      * The type signature that also contains template information.
      */
     private String signature;
+    /**
+     * The class that has this field, or null if it wasn't given to a
+     * class yet.  It is told when the field is renamed.
+     */
+    volatile ClassInfo clazz;
     
     /**
      * Creates a new empty field info.
@@ -96,14 +101,14 @@ public final class FieldInfo extends BinaryInfo implements Comparable {
 
     protected void readAttribute(String name, int length,
 				 ConstantPool cp,
-				 DataInputStream input, 
+				 ByteBuffer input,
 				 int howMuch) throws IOException {
 	if (howMuch >= ClassInfo.DECLARATIONS
 	    && name.equals("ConstantValue")) {
 	    if (length != 2)
 		throw new ClassFormatException
 		    ("ConstantValue attribute has wrong length");
-	    int index = input.readUnsignedShort();
+	    int index = input.getShort() & 0xffff;
 	    constant = cp.getConstant(index);
 	} else if (name.equals("Synthetic")) {
 	    modifier |= ACC_SYNTHETIC;
@@ -116,17 +121,18 @@ public final class FieldInfo extends BinaryInfo implements Comparable {
 		throw new ClassFormatException
 		    ("Deprecated attribute has wrong length");
 	} else if (name.equals("Signature")) {
-	    signature = cp.getUTF8(input.readUnsignedShort());
+	    signature = cp.getUTF8(input.getShort() & 0xffff);
 	} else
 	    super.readAttribute(name, length, cp, input, howMuch);
     }
     
     void read(ConstantPool constantPool, 
-	      DataInputStream input, int howMuch) throws IOException {
-	modifier = input.readUnsignedShort();
-	name = constantPool.getUTF8(input.readUnsignedShort());
-	typeSig = constantPool.getUTF8(input.readUnsignedShort());
-        readAttributes(constantPool, input, howMuch);
+	      ByteBuffer input, int howMuch, int attributes)
+	throws IOException {
+	modifier = input.getShort() & 0xffff;
+	name = constantPool.getUTF8(input.getShort() & 0xffff);
+	typeSig = constantPool.getUTF8(input.getShort() & 0xffff);
+	readAttributes(constantPool, input, howMuch, attributes);
     }
 
     void reserveSmallConstants(GrowableConstantPool gcp) {
@@ -268,6 +274,9 @@ public final class FieldInfo extends BinaryInfo implements Comparable {
      */
     public void setName(String newName) {
         name = newName;
+	ClassInfo owner = clazz;
+	if (owner != null)
+	    owner.memberRenamed();
     }
 
     /**
@@ -277,6 +286,9 @@ public final class FieldInfo extends BinaryInfo implements Comparable {
      */
     public void setType(String newType) {
         typeSig = newType;
+	ClassInfo owner = clazz;
+	if (owner != null)
+	    owner.memberRenamed();
     }
 
     /**
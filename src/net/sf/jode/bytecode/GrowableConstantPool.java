@@ -20,7 +20,6 @@
 package net.sf.jode.bytecode;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.Hashtable;
 
 /**
  * This class represent a constant pool, where new constants can be
@@ -31,46 +30,45 @@ import java.util.Hashtable;
  * @author Jochen Hoenicke
  */
 public class GrowableConstantPool extends ConstantPool {
-    Hashtable entryToIndex = new Hashtable(); 
+    /**
+     * The open addressed hash table, that maps the entries to their
+     * index.  A slot contains the index of an entry, or 0 if it is
+     * free.  Its length is a power of two.
+     */
+    int[] entryToIndex;
+    /**
+     * The primary object of every entry, see {@link #findEntry}.
+     * This can't be kept in constants, since ConstantPool caches the
+     * decoded references and class names there.
+     */
+    Object[] keys;
     boolean written;
 
     /**
-     * This class is used as key to the entryToIndex hashtable
+     * Create a new growable constant pool
      */
-    private class Key {
-	int tag;
-	Object objData;
-	int intData;
-
-	public Key(int tag, Object objData, int intData) {
-	    this.tag = tag;
-	    this.objData = objData;
-	    this.intData = intData;
-	}
-
-	public int hashCode() {
-	    return tag ^ objData.hashCode() ^ intData;
-	}
-
-	public boolean equals(Object o) {
-	    if (o instanceof Key) {
-		Key k = (Key) o;
-		return tag == k.tag && intData == k.intData
-		    && objData.equals(k.objData);
-	    }
-	    return false;
-	}
+    public GrowableConstantPool () {
+	this(128);
     }
 
     /**
-     * Create a new growable constant pool
+     * Create a new growable constant pool with room for the given
+     * number of entries.  When a class is written back, the size of
+     * the constant pool it was read from is a good estimate.
+     * @param initialSize the expected number of entries.
      */
-    public GrowableConstantPool () {
+    public GrowableConstantPool (int initialSize) {
+	initialSize = Math.max(initialSize, 16);
 	count = 1;
-	tags = new int[128];
-	indices1 = new int[128];
-	indices2 = new int[128];  
-	constants = new Object[128];
+	tags = new int[initialSize];
+	indices1 = new int[initialSize];
+	indices2 = new int[initialSize];
+	constants = new Object[initialSize];
+	keys = new Object[initialSize];
+	int tableSize = 32;
+	while (tableSize < initialSize * 2)
+	    tableSize *= 2;
+	entryToIndex = new int[tableSize];
 	written = false;
     }
 
@@ -93,54 +91,98 @@ public class GrowableConstantPool extends ConstantPool {
 	    Object[] tmpobjs = new Object[newSize];
 	    System.arraycopy(constants, 0, tmpobjs, 0, count);
 	    constants = tmpobjs;
+	    tmpobjs = new Object[newSize];
+	    System.arraycopy(keys, 0, tmpobjs, 0, count);
+	    keys = tmpobjs;
+	}
+	if (wantedSize * 2 > entryToIndex.length) {
+	    int[] oldTable = entryToIndex;
+	    entryToIndex = new int[oldTable.length * 2];
+	    for (int i = 0; i < oldTable.length; i++) {
+		int index = oldTable[i];
+		if (index != 0)
+		    entryToIndex[findSlot(tags[index], keys[index],
+					  indices2[index])] = index;
+	    }
 	}
     }
 
-    private int putConstant(int tag, Object constant) {
-	Key key = new Key(tag, constant, 0);
-	Integer index = (Integer) entryToIndex.get(key);
-	if (index != null)
-	    return index.intValue();
+    private static int hash(int tag, Object objData, int intData) {
+	int hash = (tag * 31 + objData.hashCode()) * 31 + intData;
+	return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Finds the slot in entryToIndex for the given entry.  An entry
+     * is identified by its tag, its primary object and an int.  The
+     * int is zero except for NAMEANDTYPE and reference entries, where
+     * it is the second index, so it is always the same as indices2.
+     * @return the slot containing the index of the entry, or the free
+     * slot where it should be put.
+     */
+    private int findSlot(int tag, Object objData, int intData) {
+	int mask = entryToIndex.length - 1;
+	int slot = hash(tag, objData, intData) & mask;
+	int index;
+	while ((index = entryToIndex[slot]) != 0) {
+	    if (tags[index] == tag && indices2[index] == intData
+		&& objData.equals(keys[index]))
+		break;
+	    slot = (slot + 1) & mask;
+	}
+	return slot;
+    }
+
+    /**
+     * Adds a new entry with the given tag, primary object and int and
+     * returns its index.  The caller fills in the rest.
+     * @param slot the free slot returned by findSlot.
+     * @param size the number of pool entries the constant takes.
+     */
+    private int addEntry(int slot, int tag, Object objData, int intData,
+			 int size) {
 	int newIndex = count;
-	grow(count + 1);
+	int oldLength = entryToIndex.length;
+	grow(count + size);
+	if (entryToIndex.length != oldLength)
+	    slot = findSlot(tag, objData, intData);
 	tags[newIndex] = tag;
-	constants[newIndex] = constant;
-	entryToIndex.put(key, new Integer(newIndex));
-	count++;
+	keys[newIndex] = objData;
+	indices2[newIndex] = intData;
+	entryToIndex[slot] = newIndex;
+	count += size;
 	return newIndex;
     }
 
+    private int putConstant(int tag, Object constant) {
+	int slot = findSlot(tag, constant, 0);
+	int index = entryToIndex[slot];
+	if (index != 0)
+	    return index;
+	index = addEntry(slot, tag, constant, 0, 1);
+	constants[index] = constant;
+	return index;
+    }
+
     private int putLongConstant(int tag, Object constant) {
-	Key key = new Key(tag, constant, 0);
-	Integer index = (Integer) entryToIndex.get(key);
-	if (index != null)
-	    return index.intValue();
-	int newIndex = count;
-	grow(count + 2);
-	tags[newIndex] = tag;
-	tags[newIndex+1] = -tag;
-	constants[newIndex] = constant;
-	entryToIndex.put(key, new Integer(newIndex));
-	count += 2;
-	return newIndex;
+	int slot = findSlot(tag, constant, 0);
+	int index = entryToIndex[slot];
+	if (index != 0)
+	    return index;
+	index = addEntry(slot, tag, constant, 0, 2);
+	tags[index+1] = -tag;
+	constants[index] = constant;
+	return index;
     }
 
     private int putIndexed(int tag, Object obj1, int index1, int index2) {
-	Key key = new Key(tag, obj1, index2);
-	Integer indexObj = (Integer) entryToIndex.get(key);
-	if (indexObj != null) {
-	    /* Maybe this was a reserved, but not filled entry */
-	    int index = indexObj.intValue();
-	    indices1[index] = index1;
-	    indices2[index] = index2;
-	    return index;
-	}
-	grow(count+1);
-	tags[count] = tag;
-	indices1[count] = index1;
-	indices2[count] = index2;
-	entryToIndex.put(key, new Integer(count));
-	return count++;
+	int slot = findSlot(tag, obj1, index2);
+	int index = entryToIndex[slot];
+	if (index == 0)
+	    index = addEntry(slot, tag, obj1, index2, 1);
+	/* Maybe this was a reserved, but not filled entry */
+	indices1[index] = index1;
+	return index;
     }
 
     /**
@@ -0,0 +1,82 @@
+/* HierarchyOracle Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.bytecode;
+import net.sf.jode.GlobalOptions;
+import java.io.IOException;
+///#def COLLECTIONS java.util
+import java.util.HashMap;
+import java.util.Map;
+///#enddef
+
+/**
+ * Answers the questions about the class hierarchy that come up when
+ * the stack map frames of a method are computed.  The classes are
+ * looked up in a class path and their common super class is found
+ * with its {@link ClassHierarchy hierarchy index}.  The answers are
+ * cached, since the same pairs of classes meet at many join points of
+ * a class.
+ *
+ * @author Jochen Hoenicke
+ */
+class HierarchyOracle {
+    private ClassPath classpath;
+    private Map commonSuperclasses = new HashMap();
+
+    public HierarchyOracle(ClassPath classpath) {
+	this.classpath = classpath;
+    }
+
+    /**
+     * Gets the most specific common super class of two classes.
+     * Interfaces are treated like java.lang.Object, as the verifier
+     * does.  If the hierarchy of one of the classes is unknown,
+     * java.lang.Object is returned.
+     * @param class1 the dot separated full qualified name of the
+     * first class.
+     * @param class2 the name of the second class.
+     * @return the name of the common super class.
+     */
+    public String getCommonSuperclass(String class1, String class2) {
+	if (class1.equals(class2))
+	    return class1;
+	String key = class1 + ',' + class2;
+	String result = (String) commonSuperclasses.get(key);
+	if (result == null) {
+	    result = "java.lang.Object";
+	    ClassInfo clazz1 = classpath.getClassInfo(class1);
+	    ClassInfo clazz2 = classpath.getClassInfo(class2);
+	    try {
+		clazz1.loadHierarchy();
+		clazz2.loadHierarchy();
+		if (!clazz1.isInterface() && !clazz2.isInterface()) {
+		    ClassInfo common = clazz1.getCommonSuperclass(clazz2);
+		    if (common != null)
+			result = common.getName();
+		}
+	    } catch (IOException ex) {
+		GlobalOptions.err.println
+		    ("WARNING: Can't get full hierarchy of " + class1
+		     + " and " + class2 + ".");
+	    }
+	    commonSuperclasses.put(key, result);
+	}
+	return result;
+    }
+}
@@ -18,9 +18,9 @@
  */
 
 package net.sf.jode.bytecode;
-import net.sf.jode.util.UnifyHash;
+import net.sf.jode.util.ConcurrentUnifyHash;
 ///#def COLLECTIONS java.util
-import java.util.Iterator;
+import java.util.Comparator;
 ///#enddef
 
 /**
@@ -39,11 +39,19 @@ import java.util.Iterator;
 public final class LocalVariableInfo {
     private String name, type;
     private int slot;
-    private static LocalVariableInfo anonymous[];
+    private static volatile LocalVariableInfo anonymous[];
     static {
 	grow(5);
     }
-    private static final UnifyHash unifier = new UnifyHash();
+    private static final ConcurrentUnifyHash unifier
+	= new ConcurrentUnifyHash();
+    private static final Comparator unifyComparator = new Comparator() {
+	public int compare(Object o1, Object o2) {
+	    LocalVariableInfo lvi1 = (LocalVariableInfo) o1;
+	    LocalVariableInfo lvi2 = (LocalVariableInfo) o2;
+	    return lvi1.matches(lvi2.slot, lvi2.name, lvi2.type) ? 0 : 1;
+	}
+    };
 
     private LocalVariableInfo(int slot) {
 	this.slot = slot;
@@ -55,16 +63,20 @@ public final class LocalVariableInfo {
 	this.type = type;
     }
 
-    private static void grow(int upper) {
+    private static synchronized LocalVariableInfo[] grow(int upper) {
+	/* Another thread may have grown the array meanwhile. */
+	if (anonymous != null && anonymous.length >= upper)
+	    return anonymous;
 	LocalVariableInfo[] newAnon = new LocalVariableInfo[upper];
 	int start = 0;
 	if (anonymous != null) {
 	    start = anonymous.length;
 	    System.arraycopy(anonymous, 0, newAnon, 0, start);
 	}
-	anonymous = newAnon;
 	for (int i=start; i< upper; i++)
-	    anonymous[i] = new LocalVariableInfo(i);
+	    newAnon[i] = new LocalVariableInfo(i);
+	anonymous = newAnon;
+	return newAnon;
     }
 
     /**
@@ -72,9 +84,10 @@ public final class LocalVariableInfo {
      * @param slot the slot number.
      */
     public static LocalVariableInfo getInfo(int slot) {
-	if (slot >= anonymous.length)
-	    grow(Math.max(slot + 1, anonymous.length * 2));
-	return anonymous[slot];
+	LocalVariableInfo[] anon = anonymous;
+	if (slot >= anon.length)
+	    anon = grow(Math.max(slot + 1, anon.length * 2));
+	return anon[slot];
     }
 
     /**
@@ -88,17 +101,20 @@ public final class LocalVariableInfo {
 	if (name == null && type == null)
 	    return getInfo(slot);
 	int hash = slot ^ name.hashCode() ^ type.hashCode();
-	Iterator iter = unifier.iterateHashCode(hash);
-	while (iter.hasNext()) {
-	    LocalVariableInfo lvi = (LocalVariableInfo) iter.next();
-	    if (lvi.slot == slot
-		&& lvi.name.equals(name)
-		&& lvi.type.equals(type))
+	for (ConcurrentUnifyHash.Entry e = unifier.getEntry(hash);
+	     e != null; e = e.getNext()) {
+	    LocalVariableInfo lvi = (LocalVariableInfo) e.get();
+	    if (lvi != null && lvi.matches(slot, name, type))
 		return lvi;
 	}
-	LocalVariableInfo lvi = new LocalVariableInfo(slot, name, type);
-	unifier.put(hash, lvi);
-	return lvi;
+	return (LocalVariableInfo) unifier.unify
+	    (new LocalVariableInfo(slot, name, type), hash, unifyComparator);
+    }
+
+    private boolean matches(int slot, String name, String type) {
+	return this.slot == slot
+	    && this.name.equals(name)
+	    && this.type.equals(type);
     }
     
     /**
@@ -0,0 +1,303 @@
+/* MemberResolver Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.bytecode;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
+
+///#def COLLECTIONS java.util
+import java.util.HashMap;
+import java.util.Map;
+///#enddef
+
+///#ifdef JDK12
+///#def COLLECTIONS java.util
+import java.util.WeakHashMap;
+///#enddef
+///#endif
+
+/**
+ * Finds the class that declares the field or method a {@link
+ * Reference} refers to, like the virtual machine resolves the
+ * references in the constant pool.  Use {@link ClassPath#getResolver}
+ * to get the resolver of a class path. <br>
+ *
+ * A method reference is resolved with the rules for interface
+ * methods if the class is an interface, otherwise with the rules for
+ * class methods, which apply to virtual, special and static calls:
+ *
+ * <ul><li>Class methods are searched in the class and its super
+ * classes, then in the super interfaces, skipping private and static
+ * interface methods.</li>
+ * <li>Interface methods are searched in the interface, then in
+ * java.lang.Object, then in the super interfaces.</li>
+ * <li>Fields are searched in the class, then recursively in its
+ * interfaces, then in its super class.</li></ul>
+ *
+ * The declaring classes are cached.  The cache is cleared when the
+ * members or the hierarchy of a class are changed.  It holds the
+ * references and classes weakly, so it doesn't keep them alive.
+ *
+ * @author Jochen Hoenicke
+ */
+public final class MemberResolver {
+    /**
+     * The cached result for references that can't be resolved.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    private ClassPath classpath;
+    /**
+     * Maps a method reference to a weak reference to its declaring
+     * class, or to NOT_FOUND.  All cache fields are guarded by this
+     * resolver.
+     */
+///#ifdef JDK12
+    private Map methods = new WeakHashMap();
+///#else
+///    private Map methods = new HashMap();
+///#endif
+    /**
+     * Maps a field reference to a weak reference to its declaring
+     * class, or to NOT_FOUND.
+     */
+///#ifdef JDK12
+    private Map fields = new WeakHashMap();
+///#else
+///    private Map fields = new HashMap();
+///#endif
+    /**
+     * Counts how often the cache was cleared.  A result that was
+     * searched before the cache was cleared isn't cached.
+     */
+    private int generation = 0;
+    private int cacheHits = 0;
+    private int cacheMisses = 0;
+
+    MemberResolver(ClassPath classpath) {
+	this.classpath = classpath;
+    }
+
+    /**
+     * Forgets all cached results.
+     */
+    synchronized void invalidate() {
+	generation++;
+	methods.clear();
+	fields.clear();
+    }
+
+    private synchronized int getGeneration() {
+	return generation;
+    }
+
+    private synchronized Object getCached(Map cache, Reference ref) {
+	Object result = cache.get(ref);
+	if (result instanceof WeakReference) {
+	    result = ((WeakReference) result).get();
+	    if (result == null)
+		/* The class was garbage collected. */
+		cache.remove(ref);
+	}
+	if (result != null)
+	    cacheHits++;
+	else
+	    cacheMisses++;
+	return result;
+    }
+
+    private synchronized void putCached(Map cache, Reference ref,
+					int gen, ClassInfo clazz) {
+	/* Don't cache a result found while the members or the
+	 * hierarchy were changed.
+	 */
+	if (gen == generation)
+	    cache.put(ref, clazz != null
+		      ? (Object) new WeakReference(clazz) : NOT_FOUND);
+    }
+
+    private ClassInfo getClass(Reference ref) {
+	String clName = ref.getClazz();
+	if (clName.charAt(0) == '[')
+	    /* Arrays have the methods of java.lang.Object. */
+	    return classpath.getClassInfo("java.lang.Object");
+	return TypeSignature.getClassInfo(classpath, clName);
+    }
+
+    /**
+     * Gets the class that declares the field or method a reference
+     * refers to.  This loads the declarations of the classes that are
+     * searched.
+     * @param ref the reference.
+     * @param isField true for a field reference, false for a method
+     * reference.
+     * @return the declaring class, or null if there is no such member.
+     * @exception IOException if a class couldn't be loaded.
+     */
+    public ClassInfo getDeclaringClass(Reference ref, boolean isField)
+	throws IOException
+    {
+	Map cache = isField ? fields : methods;
+	Object cached = getCached(cache, ref);
+	if (cached != null)
+	    return cached == NOT_FOUND ? null : (ClassInfo) cached;
+
+	int gen = getGeneration();
+	String name = ref.getName();
+	String type = ref.getType();
+	ClassInfo clazz = getClass(ref);
+	clazz.loadDeclarations();
+	ClassInfo result;
+	if (isField)
+	    result = findFieldClass(clazz, name, type);
+	else if (clazz.isInterface())
+	    result = findInterfaceMethodClass(clazz, name, type);
+	else
+	    result = findMethodClass(clazz, name, type);
+	putCached(cache, ref, gen, result);
+	return result;
+    }
+
+    /**
+     * Gets the method a reference refers to.
+     * @param ref the method reference.
+     * @return the method, or null if there is no such method.
+     * @exception IOException if a class couldn't be loaded.
+     */
+    public MethodInfo resolveMethod(Reference ref) throws IOException {
+	ClassInfo clazz = getDeclaringClass(ref, false);
+	if (clazz == null)
+	    return null;
+	clazz.loadDeclarations();
+	return clazz.findMethod(ref.getName(), ref.getType());
+    }
+
+    /**
+     * Gets the field a reference refers to.
+     * @param ref the field reference.
+     * @return the field, or null if there is no such field.
+     * @exception IOException if a class couldn't be loaded.
+     */
+    public FieldInfo resolveField(Reference ref) throws IOException {
+	ClassInfo clazz = getDeclaringClass(ref, true);
+	if (clazz == null)
+	    return null;
+	clazz.loadDeclarations();
+	return clazz.findField(ref.getName(), ref.getType());
+    }
+
+    private static ClassInfo findMethodClass(ClassInfo clazz,
+					     String name, String type)
+	throws IOException
+    {
+	for (ClassInfo ci = clazz; ci != null; ci = ci.getSuperclass()) {
+	    ci.loadDeclarations();
+	    if (ci.findMethod(name, type) != null)
+		return ci;
+	}
+	for (ClassInfo ci = clazz; ci != null; ci = ci.getSuperclass()) {
+	    ClassInfo result = findSuperInterfaceMethodClass(ci, name, type);
+	    if (result != null)
+		return result;
+	}
+	return null;
+    }
+
+    private static ClassInfo findInterfaceMethodClass(ClassInfo iface,
+						      String name,
+						      String type)
+	throws IOException
+    {
+	if (iface.findMethod(name, type) != null)
+	    return iface;
+	for (ClassInfo ci = iface.getSuperclass(); ci != null;
+	     ci = ci.getSuperclass()) {
+	    ci.loadDeclarations();
+	    MethodInfo method = ci.findMethod(name, type);
+	    if (method != null && Modifier.isPublic(method.getModifiers())
+		&& !method.isStatic())
+		return ci;
+	}
+	return findSuperInterfaceMethodClass(iface, name, type);
+    }
+
+    /**
+     * Searches a method in the super interfaces of a class or
+     * interface, depth first.
+     */
+    private static ClassInfo findSuperInterfaceMethodClass(ClassInfo clazz,
+							   String name,
+							   String type)
+	throws IOException
+    {
+	ClassInfo[] ifaces = clazz.getInterfaces();
+	for (int i = 0; i < ifaces.length; i++) {
+	    ifaces[i].loadDeclarations();
+	    MethodInfo method = ifaces[i].findMethod(name, type);
+	    if (method != null && !Modifier.isPrivate(method.getModifiers())
+		&& !method.isStatic())
+		return ifaces[i];
+	    ClassInfo result
+		= findSuperInterfaceMethodClass(ifaces[i], name, type);
+	    if (result != null)
+		return result;
+	}
+	return null;
+    }
+
+    private static ClassInfo findFieldClass(ClassInfo clazz,
+					    String name, String type)
+	throws IOException
+    {
+	for (ClassInfo ci = clazz; ci != null; ci = ci.getSuperclass()) {
+	    ci.loadDeclarations();
+	    if (ci.findField(name, type) != null)
+		return ci;
+	    ClassInfo[] ifaces = ci.getInterfaces();
+	    for (int i = 0; i < ifaces.length; i++) {
+		ClassInfo result = findFieldClass(ifaces[i], name, type);
+		if (result != null)
+		    return result;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Returns how many references were resolved from the cache.
+     * @return the number of cache hits.
+     */
+    public synchronized int getCacheHits() {
+	return cacheHits;
+    }
+
+    /**
+     * Returns how many references had to be resolved by searching the
+     * classes.
+     * @return the number of cache misses.
+     */
+    public synchronized int getCacheMisses() {
+	return cacheMisses;
+    }
+
+    public String toString() {
+	return "MemberResolver[" + classpath + "]";
+    }
+}
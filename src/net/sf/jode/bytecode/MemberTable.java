@@ -0,0 +1,113 @@
+/* MemberTable Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.bytecode;
+
+/**
+ * A hash index of the fields or methods of a class, keyed by name and
+ * type signature.  It is built for one member array and is immutable;
+ * if the class gets a new array or a member is renamed, a new table
+ * must be built.  Classes with few members are searched linearly,
+ * which is faster than hashing.
+ *
+ * @author Jochen Hoenicke
+ */
+final class MemberTable {
+    /**
+     * Member arrays up to this length are searched linearly.
+     */
+    static final int HASH_THRESHOLD = 8;
+
+    private final Object[] members;
+    /**
+     * The number of renamed members of the class when this table was
+     * built.
+     */
+    private final int renames;
+    /**
+     * The open addressed hash table; it contains the index of a
+     * member plus one, or zero for a free slot.
+     */
+    private final int[] slots;
+
+    private static String getName(Object member) {
+	return member instanceof MethodInfo
+	    ? ((MethodInfo) member).getName() : ((FieldInfo) member).getName();
+    }
+
+    private static String getType(Object member) {
+	return member instanceof MethodInfo
+	    ? ((MethodInfo) member).getType() : ((FieldInfo) member).getType();
+    }
+
+    private static int hash(String name, String type) {
+	int hash = name.hashCode() * 31 + type.hashCode();
+	return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Builds the table for the given members.  If several members
+     * have the same name and type, the first one is found.
+     * @param members the methods or fields of a class.
+     * @param renames the number of renamed members of the class.
+     */
+    MemberTable(Object[] members, int renames) {
+	this.members = members;
+	this.renames = renames;
+	int size = 4;
+	while (size < members.length * 2)
+	    size <<= 1;
+	slots = new int[size];
+	for (int i = 0; i < members.length; i++) {
+	    String name = getName(members[i]);
+	    String type = getType(members[i]);
+	    if (lookup(name, type) < 0) {
+		int slot = hash(name, type) & (size - 1);
+		while (slots[slot] != 0)
+		    slot = (slot + 1) & (size - 1);
+		slots[slot] = i + 1;
+	    }
+	}
+    }
+
+    /**
+     * Tells if this table is still valid for the given member array.
+     * @param renames the number of renamed members of the class.
+     */
+    boolean isValidFor(Object[] members, int renames) {
+	return this.members == members && this.renames == renames;
+    }
+
+    /**
+     * Searches the member with the given name and type.
+     * @return the index of the member, or -1 if there is none.
+     */
+    int lookup(String name, String type) {
+	int mask = slots.length - 1;
+	int slot = hash(name, type) & mask;
+	while (slots[slot] != 0) {
+	    int index = slots[slot] - 1;
+	    if (getName(members[index]).equals(name)
+		&& getType(members[index]).equals(type))
+		return index;
+	    slot = (slot + 1) & mask;
+	}
+	return -1;
+    }
+}
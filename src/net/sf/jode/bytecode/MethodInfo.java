@@ -18,10 +18,12 @@
  */
 
 package net.sf.jode.bytecode;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 ///#def COLLECTIONEXTRA java.lang
 import java.lang.Comparable;
 ///#enddef
@@ -50,7 +52,11 @@ import java.lang.Comparable;
  *
  * <dt>basicblocks</dt><dd>the bytecode of the method in form of
  * {@link BasicBlocks basic blocks}, null if it is native or
- * abstract.</dd>
+ * abstract.  When a method is read from a class file, the Code
+ * attribute is only decoded when the basic blocks are requested.
+ * Blocks that are only read, see {@link #getReadOnlyBasicBlocks},
+ * are softly referenced, so that the garbage collector may drop
+ * them and they are decoded again on the next request.</dd>
  *
  * <dt>synthetic</dt><dd>true if this method is synthetic</dd>
  *
@@ -71,12 +77,40 @@ public final class MethodInfo extends BinaryInfo implements Comparable {
     String typeSig;
 
     BasicBlocks basicblocks;
+    /**
+     * The contents of the Code attribute that wasn't decoded into
+     * basicblocks yet, null if there is none.  This is a view into
+     * the class file.
+     */
+    private ByteBuffer code;
+    /**
+     * The constant pool the code refers to.
+     */
+    private ConstantPool codePool;
+    /**
+     * The amount of information that should be decoded from code.
+     */
+    private int codeLevel;
+    /**
+     * The attributes of code that should be decoded, see {@link
+     * ClassInfo#load(int, int)}.
+     */
+    private int codeAttributes;
+    /**
+     * The basic blocks decoded from code, if they are still there.
+     */
+    private SoftReference decodedBlocks;
     String[] exceptions;
     boolean deprecatedFlag;
     /**
      * The type signature that also contains template information.
      */
     private String signature;
+    /**
+     * The class that has this method, or null if it wasn't given to
+     * a class yet.  It is told when the method is renamed.
+     */
+    volatile ClassInfo clazz;
 
     public MethodInfo() {
     }
@@ -89,16 +123,20 @@ public final class MethodInfo extends BinaryInfo implements Comparable {
 
     protected void readAttribute
 	(String name, int length, ConstantPool cp,
-	 DataInputStream input, int howMuch) throws IOException {
+	 ByteBuffer input, int howMuch) throws IOException {
 	if (howMuch >= ClassInfo.NODEBUG && name.equals("Code")) {
-	    basicblocks = new BasicBlocks(this);
-	    basicblocks.read(cp, input, howMuch);
+	    /* Most methods are never looked at, decode them on demand. */
+	    code = input;
+	    codePool = cp;
+	    codeLevel = howMuch;
+	    basicblocks = null;
+	    decodedBlocks = null;
 	} else if (howMuch >= ClassInfo.DECLARATIONS
 		   && name.equals("Exceptions")) {
-	    int count = input.readUnsignedShort();
+	    int count = input.getShort() & 0xffff;
 	    exceptions = new String[count];
 	    for (int i = 0; i < count; i++)
-		exceptions[i] = cp.getClassName(input.readUnsignedShort());
+		exceptions[i] = cp.getClassName(input.getShort() & 0xffff);
 	    if (length != 2 * (count + 1))
 		throw new ClassFormatException
 		    ("Exceptions attribute has wrong length");
@@ -113,30 +151,35 @@ public final class MethodInfo extends BinaryInfo implements Comparable {
 		throw new ClassFormatException
 		    ("Deprecated attribute has wrong length");
 	} else if (name.equals("Signature")) {
-	    signature = cp.getUTF8(input.readUnsignedShort());
+	    signature = cp.getUTF8(input.getShort() & 0xffff);
 	} else
 	    super.readAttribute(name, length, cp, input, howMuch);
     }
 
     void read(ConstantPool constantPool, 
-	      DataInputStream input, int howMuch) throws IOException {
-	modifier   = input.readUnsignedShort();
-	name = constantPool.getUTF8(input.readUnsignedShort());
-        typeSig = constantPool.getUTF8(input.readUnsignedShort());
-        readAttributes(constantPool, input, howMuch);
+	      ByteBuffer input, int howMuch, int attributes)
+	throws IOException {
+	modifier   = input.getShort() & 0xffff;
+	name = constantPool.getUTF8(input.getShort() & 0xffff);
+	typeSig = constantPool.getUTF8(input.getShort() & 0xffff);
+	codeAttributes = attributes;
+	readAttributes(constantPool, input, howMuch, attributes);
     }
 
     void reserveSmallConstants(GrowableConstantPool gcp) {
-	if (basicblocks != null)
-	    basicblocks.reserveSmallConstants(gcp);
+	BasicBlocks bb = getBasicBlocks();
+	if (bb != null)
+	    bb.reserveSmallConstants(gcp);
     }
 
-    void prepareWriting(GrowableConstantPool gcp) {
+    void prepareWriting(GrowableConstantPool gcp, ClassInfo clazz,
+			HierarchyOracle oracle) {
 	gcp.putUTF8(name);
 	gcp.putUTF8(typeSig);
-	if (basicblocks != null) {
+	BasicBlocks bb = getBasicBlocks();
+	if (bb != null) {
 	    gcp.putUTF8("Code");
-	    basicblocks.prepareWriting(gcp);
+	    bb.prepareWriting(gcp, clazz, oracle);
 	}
 	if (exceptions != null) {
 	    gcp.putUTF8("Exceptions");
@@ -152,7 +195,7 @@ public final class MethodInfo extends BinaryInfo implements Comparable {
 
     protected int getAttributeCount() {
 	int count = super.getAttributeCount();
-	if (basicblocks != null)
+	if (basicblocks != null || code != null)
 	    count++;
 	if (exceptions != null)
 	    count++;
@@ -167,9 +210,10 @@ public final class MethodInfo extends BinaryInfo implements Comparable {
 				   DataOutputStream output) 
 	throws IOException {
 	super.writeAttributes(gcp, output);
-	if (basicblocks != null) {
+	BasicBlocks bb = getBasicBlocks();
+	if (bb != null) {
 	    output.writeShort(gcp.putUTF8("Code"));
-	    basicblocks.write(gcp, output);
+	    bb.write(gcp, output);
 	}
 	if (exceptions != null) {
 	    int count = exceptions.length;
@@ -200,10 +244,22 @@ public final class MethodInfo extends BinaryInfo implements Comparable {
     protected void drop(int keep) {
 	if (keep < ClassInfo.DECLARATIONS)
 	    exceptions = null;
-	if (keep < ClassInfo.NODEBUG)
+	if (keep < ClassInfo.NODEBUG) {
 	    basicblocks = null;
-	else
-	    basicblocks.drop(keep);
+	    code = null;
+	    codePool = null;
+	    decodedBlocks = null;
+	} else {
+	    if (basicblocks != null)
+		basicblocks.drop(keep);
+	    else if (code != null) {
+		codeLevel = Math.min(codeLevel, keep);
+		BasicBlocks bb = decodedBlocks != null
+		    ? (BasicBlocks) decodedBlocks.get() : null;
+		if (bb != null)
+		    bb.drop(keep);
+	    }
+	}
 	super.drop(keep);
     }
 
@@ -245,20 +301,68 @@ public final class MethodInfo extends BinaryInfo implements Comparable {
 	return deprecatedFlag;
     }
 
-    public BasicBlocks getBasicBlocks() {
+    /**
+     * Gets the bytecode of this method.  If the method was read from
+     * a class file, the Code attribute is decoded now, unless it was
+     * decoded before and the blocks are still there.  The returned
+     * blocks are kept, so you may change them.
+     * @return the basic blocks, null if the method is native or
+     * abstract.
+     */
+    public synchronized BasicBlocks getBasicBlocks() {
+	if (basicblocks != null || code == null)
+	    return basicblocks;
+	basicblocks = getReadOnlyBasicBlocks();
+	code = null;
+	codePool = null;
+	decodedBlocks = null;
 	return basicblocks;
     }
 
+    /**
+     * Gets the bytecode of this method for reading.  Unlike {@link
+     * #getBasicBlocks}, blocks that were decoded from the class file
+     * are only softly referenced, so changes to them may be lost.
+     * @return the basic blocks, null if the method is native or
+     * abstract.
+     */
+    public synchronized BasicBlocks getReadOnlyBasicBlocks() {
+	if (basicblocks != null || code == null)
+	    return basicblocks;
+	BasicBlocks bb = decodedBlocks != null
+	    ? (BasicBlocks) decodedBlocks.get() : null;
+	if (bb == null) {
+	    bb = new BasicBlocks(this);
+	    try {
+		bb.read(codePool, code.duplicate(), codeLevel, codeAttributes);
+	    } catch (IOException ex) {
+		throw new InternalError("Can't read code of " + name
+					+ typeSig + ": " + ex.getMessage());
+	    } catch (BufferUnderflowException ex) {
+		throw new InternalError("Can't read code of " + name
+					+ typeSig + ": truncated");
+	    }
+	    decodedBlocks = new SoftReference(bb);
+	}
+	return bb;
+    }
+
     public String[] getExceptions() {
 	return exceptions;
     }
     
     public void setName(String newName) {
         name = newName;
+	ClassInfo owner = clazz;
+	if (owner != null)
+	    owner.memberRenamed();
     }
     
     public void setType(String newType) {
         typeSig = newType;
+	ClassInfo owner = clazz;
+	if (owner != null)
+	    owner.memberRenamed();
     }
 
     public void setModifiers(int newModifier) {
@@ -276,8 +380,11 @@ public final class MethodInfo extends BinaryInfo implements Comparable {
 	deprecatedFlag = flag;
     }
 
-    public void setBasicBlocks(BasicBlocks newBasicblocks) {
+    public synchronized void setBasicBlocks(BasicBlocks newBasicblocks) {
 	basicblocks = newBasicblocks;
+	code = null;
+	codePool = null;
+	decodedBlocks = null;
     }
 
     public void setExceptions(String[] newExceptions) {
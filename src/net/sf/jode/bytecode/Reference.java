@@ -18,9 +18,9 @@
  */
 
 package net.sf.jode.bytecode;
-import net.sf.jode.util.UnifyHash;
+import net.sf.jode.util.ConcurrentUnifyHash;
 ///#def COLLECTIONS java.util
-import java.util.Iterator;
+import java.util.Comparator;
 ///#enddef
 
 /**
@@ -33,22 +33,33 @@ public class Reference {
      */
     private final String clazz, name, type;
 
-    private static final UnifyHash unifier = new UnifyHash();
+    private static final ConcurrentUnifyHash unifier
+	= new ConcurrentUnifyHash();
+    private static final Comparator unifyComparator = new Comparator() {
+	public int compare(Object o1, Object o2) {
+	    Reference r1 = (Reference) o1;
+	    Reference r2 = (Reference) o2;
+	    return r1.matches(r2.clazz, r2.name, r2.type) ? 0 : 1;
+	}
+    };
 
     public static Reference getReference(String className, 
 					 String name, String type) {
 	int hash = className.hashCode() ^ name.hashCode() ^ type.hashCode();
-	Iterator iter = unifier.iterateHashCode(hash);
-	while (iter.hasNext()) {
-	    Reference ref = (Reference) iter.next();
-	    if (ref.clazz.equals(className)
-		&& ref.name.equals(name)
-		&& ref.type.equals(type))
+	for (ConcurrentUnifyHash.Entry e = unifier.getEntry(hash);
+	     e != null; e = e.getNext()) {
+	    Reference ref = (Reference) e.get();
+	    if (ref != null && ref.matches(className, name, type))
 		return ref;
 	}
-	Reference ref = new Reference(className, name, type);
-	unifier.put(hash, ref);
-	return ref;
+	return (Reference) unifier.unify(new Reference(className, name, type),
+					 hash, unifyComparator);
+    }
+
+    private boolean matches(String className, String name, String type) {
+	return clazz.equals(className)
+	    && this.name.equals(name)
+	    && this.type.equals(type);
     }
 
     private Reference(String clazz, String name, String type) {
@@ -0,0 +1,766 @@
+/* StackMapBuilder Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.bytecode;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Stack;
+///#def COLLECTIONS java.util
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+///#enddef
+
+/**
+ * This is a helper class for BasicBlockWriter, that computes the
+ * StackMapTable attribute of a method.  The types of the locals and
+ * stack entries at the start of every block are computed by a data
+ * flow analysis over the block graph.  A frame is emitted for every
+ * address that is the target of a jump or follows an unconditional
+ * jump, as the split verifier of class version 50 and later requires.
+ * <br>
+ *
+ * The types are represented by strings: the constants below for
+ * primitive and special types, the type signature for references,
+ * and <code>"U" + address + typeSig</code> for the object created
+ * by the new instruction at that address, that wasn't initialized
+ * yet.  Long and double take two slots, the second is TOP. <br>
+ *
+ * Subroutines (jsr/ret) aren't supported, such methods mustn't be
+ * given to this class.  Unreachable blocks can't be typed; the writer
+ * replaces their code by <code>nop ... athrow</code>.
+ *
+ * @author Jochen Hoenicke
+ */
+class StackMapBuilder implements Opcodes {
+    static final String TOP = "T";
+    static final String INT = "I";
+    static final String FLOAT = "F";
+    static final String LONG = "J";
+    static final String DOUBLE = "D";
+    static final String NULL = "0";
+    static final String UNINIT_THIS = "N";
+    static final String OBJECT = "Ljava/lang/Object;";
+    static final String THROWABLE = "Ljava/lang/Throwable;";
+    static final String STRING = "Ljava/lang/String;";
+    static final String[] EMPTY = new String[0];
+
+    BasicBlockWriter bbw;
+    BasicBlocks bb;
+    HierarchyOracle oracle;
+    String thisType;
+
+    /**
+     * The types of the locals and the stack at the start of every
+     * block, null if the block isn't reachable.
+     */
+    String[][] inLocals, inStacks;
+    Stack todo = new Stack();
+
+    /**
+     * The frames to write: maps the address (Integer) to an array
+     * containing the locals and the stack, both trimmed.
+     */
+    Map frames = new TreeMap();
+
+    /* The state while simulating a block. */
+    String[] locals;
+    String[] stack;
+    int stackHeight;
+
+    public StackMapBuilder(BasicBlockWriter bbw, String className,
+			   HierarchyOracle oracle) {
+	this.bbw = bbw;
+	this.bb = bbw.bb;
+	this.oracle = oracle;
+	this.thisType = "L" + className.replace('.', '/') + ";";
+	analyze();
+	buildFrames();
+    }
+
+    /**
+     * Checks if the block is reachable.  The code of unreachable
+     * blocks can't be typed and must be replaced.
+     */
+    public boolean isReachable(int blockNr) {
+	return inLocals[blockNr] != null;
+    }
+
+    /**
+     * Converts a field or parameter type signature to the type used
+     * by the verifier.
+     */
+    private static String verifierType(String typeSig) {
+	switch (typeSig.charAt(0)) {
+	case 'Z': case 'B': case 'C': case 'S': case 'I':
+	    return INT;
+	case 'F':
+	    return FLOAT;
+	case 'J':
+	    return LONG;
+	case 'D':
+	    return DOUBLE;
+	default:
+	    return typeSig;
+	}
+    }
+
+    private static boolean isReference(String type) {
+	char c = type.charAt(0);
+	return c == 'L' || c == '[' || c == '0';
+    }
+
+    private String commonSuperType(String type1, String type2) {
+	if (type1.charAt(0) == '[' && type2.charAt(0) == '[') {
+	    String elem1 = type1.substring(1);
+	    String elem2 = type2.substring(1);
+	    if (isReference(elem1) && isReference(elem2))
+		return "[" + commonSuperType(elem1, elem2);
+	    return OBJECT;
+	}
+	if (type1.charAt(0) == 'L' && type2.charAt(0) == 'L') {
+	    String name = oracle.getCommonSuperclass
+		(type1.substring(1, type1.length() - 1).replace('/', '.'),
+		 type2.substring(1, type2.length() - 1).replace('/', '.'));
+	    return "L" + name.replace('.', '/') + ";";
+	}
+	return OBJECT;
+    }
+
+    /**
+     * Merges two types.
+     * @return the most specific type both types can be assigned to,
+     * the first type if they are equal, or TOP if there is none.
+     */
+    private String mergeType(String type1, String type2) {
+	if (type1.equals(type2))
+	    return type1;
+	if (isReference(type1) && isReference(type2)) {
+	    if (type1.equals(NULL))
+		return type2;
+	    if (type2.equals(NULL))
+		return type1;
+	    return commonSuperType(type1, type2);
+	}
+	return TOP;
+    }
+
+    private void merge(Block block, String[] newLocals,
+		       String[] newStack, int newHeight) {
+	int nr = block.getBlockNr();
+	if (inLocals[nr] == null) {
+	    inLocals[nr] = (String[]) newLocals.clone();
+	    inStacks[nr] = new String[newHeight];
+	    System.arraycopy(newStack, 0, inStacks[nr], 0, newHeight);
+	    todo.push(block);
+	    return;
+	}
+	boolean changed = false;
+	String[] oldLocals = inLocals[nr];
+	for (int i = 0; i < oldLocals.length; i++) {
+	    String type = mergeType(oldLocals[i], newLocals[i]);
+	    if (!type.equals(oldLocals[i])) {
+		oldLocals[i] = type;
+		changed = true;
+	    }
+	}
+	String[] oldStack = inStacks[nr];
+	if (oldStack.length != newHeight)
+	    throw new IllegalStateException
+		("Stack height differs at block " + nr);
+	for (int i = 0; i < newHeight; i++) {
+	    String type = mergeType(oldStack[i], newStack[i]);
+	    if (!type.equals(oldStack[i])) {
+		if (type == TOP)
+		    throw new IllegalStateException
+			("Can't merge stack types " + oldStack[i]
+			 + " and " + newStack[i] + " at block " + nr);
+		oldStack[i] = type;
+		changed = true;
+	    }
+	}
+	if (changed && !todo.contains(block))
+	    todo.push(block);
+    }
+
+    private void mergeHandlers(Handler[] handlers) {
+	for (int i = 0; i < handlers.length; i++) {
+	    String type = handlers[i].type == null ? THROWABLE
+		: "L" + handlers[i].type.replace('.', '/') + ";";
+	    merge(handlers[i].catcher, locals, new String[] { type }, 1);
+	}
+    }
+
+    private void push(String type) {
+	stack[stackHeight++] = type;
+	if (type == LONG || type == DOUBLE)
+	    stack[stackHeight++] = TOP;
+    }
+
+    private String pop() {
+	return stack[--stackHeight];
+    }
+
+    private void store(int slot, String type) {
+	if (slot > 0 && (locals[slot - 1] == LONG
+			 || locals[slot - 1] == DOUBLE))
+	    locals[slot - 1] = TOP;
+	locals[slot] = type;
+	if (type == LONG || type == DOUBLE)
+	    locals[slot + 1] = TOP;
+    }
+
+    /**
+     * Replaces the uninitialized type by the initialized one, after
+     * its constructor was called.
+     */
+    private void initialize(String uninit) {
+	String type = uninit.equals(UNINIT_THIS) ? thisType
+	    : uninit.substring(uninit.indexOf('L'));
+	for (int i = 0; i < locals.length; i++) {
+	    if (locals[i].equals(uninit))
+		locals[i] = type;
+	}
+	for (int i = 0; i < stackHeight; i++) {
+	    if (stack[i].equals(uninit))
+		stack[i] = type;
+	}
+    }
+
+    /**
+     * Simulates the effect of an instruction on the current state.
+     * @param addr the address of the instruction.
+     */
+    private void modelEffect(Instruction instr, int addr) {
+	int opcode = instr.getOpcode();
+	switch (opcode) {
+	case opc_nop:
+	case opc_iinc:
+	case opc_i2b: case opc_i2c: case opc_i2s:
+	    break;
+	case opc_ldc: {
+	    Object constant = instr.getConstant();
+	    push(constant == null ? NULL
+		 : constant instanceof Integer ? INT
+		 : constant instanceof Float ? FLOAT : STRING);
+	    break;
+	}
+	case opc_ldc2_w:
+	    push(instr.getConstant() instanceof Long ? LONG : DOUBLE);
+	    break;
+	case opc_iload:
+	    push(INT);
+	    break;
+	case opc_lload:
+	    push(LONG);
+	    break;
+	case opc_fload:
+	    push(FLOAT);
+	    break;
+	case opc_dload:
+	    push(DOUBLE);
+	    break;
+	case opc_aload:
+	    push(locals[instr.getLocalSlot()]);
+	    break;
+	case opc_iaload: case opc_baload: case opc_caload: case opc_saload:
+	    stackHeight -= 2;
+	    push(INT);
+	    break;
+	case opc_laload:
+	    stackHeight -= 2;
+	    push(LONG);
+	    break;
+	case opc_faload:
+	    stackHeight -= 2;
+	    push(FLOAT);
+	    break;
+	case opc_daload:
+	    stackHeight -= 2;
+	    push(DOUBLE);
+	    break;
+	case opc_aaload: {
+	    stackHeight--;
+	    String arrType = pop();
+	    push(arrType.charAt(0) == '[' ? arrType.substring(1) : NULL);
+	    break;
+	}
+	case opc_istore:
+	    stackHeight--;
+	    store(instr.getLocalSlot(), INT);
+	    break;
+	case opc_fstore:
+	    stackHeight--;
+	    store(instr.getLocalSlot(), FLOAT);
+	    break;
+	case opc_lstore:
+	    stackHeight -= 2;
+	    store(instr.getLocalSlot(), LONG);
+	    break;
+	case opc_dstore:
+	    stackHeight -= 2;
+	    store(instr.getLocalSlot(), DOUBLE);
+	    break;
+	case opc_astore:
+	    store(instr.getLocalSlot(), pop());
+	    break;
+	case opc_iastore: case opc_fastore: case opc_aastore:
+	case opc_bastore: case opc_castore: case opc_sastore:
+	    stackHeight -= 3;
+	    break;
+	case opc_lastore: case opc_dastore:
+	    stackHeight -= 4;
+	    break;
+	case opc_pop: case opc_pop2:
+	    stackHeight -= opcode - (opc_pop - 1);
+	    break;
+	case opc_dup: case opc_dup_x1: case opc_dup_x2: {
+	    int stackdepth = stackHeight - (opcode - opc_dup + 1);
+	    for (int i = stackHeight; i > stackdepth; i--)
+		stack[i] = stack[i-1];
+	    stack[stackdepth] = stack[stackHeight++];
+	    break;
+	}
+	case opc_dup2: case opc_dup2_x1: case opc_dup2_x2: {
+	    int stacktop = stackHeight;
+	    int stackdepth = stacktop - (opcode - opc_dup2 + 2);
+	    for (int i = stacktop; i > stackdepth; i--)
+		stack[i+1] = stack[i-1];
+	    stack[stackdepth+1] = stack[stacktop+1];
+	    stack[stackdepth] = stack[stacktop];
+	    stackHeight += 2;
+	    break;
+	}
+	case opc_swap: {
+	    String tmp = stack[stackHeight-1];
+	    stack[stackHeight-1] = stack[stackHeight-2];
+	    stack[stackHeight-2] = tmp;
+	    break;
+	}
+	case opc_iadd: case opc_ladd: case opc_fadd: case opc_dadd:
+	case opc_isub: case opc_lsub: case opc_fsub: case opc_dsub:
+	case opc_imul: case opc_lmul: case opc_fmul: case opc_dmul:
+	case opc_idiv: case opc_ldiv: case opc_fdiv: case opc_ddiv:
+	case opc_irem: case opc_lrem: case opc_frem: case opc_drem: {
+	    String type = verifierType("IJFD".substring((opcode - opc_iadd) & 3));
+	    stackHeight -= (opcode & 1) != 0 ? 4 : 2;
+	    push(type);
+	    break;
+	}
+	case opc_ineg: case opc_lneg: case opc_fneg: case opc_dneg:
+	    break;
+	case opc_ishl: case opc_lshl:
+	case opc_ishr: case opc_lshr:
+	case opc_iushr: case opc_lushr:
+	    stackHeight--;
+	    break;
+	case opc_iand: case opc_land:
+	case opc_ior : case opc_lor :
+	case opc_ixor: case opc_lxor:
+	    stackHeight -= (opcode & 1) != 0 ? 2 : 1;
+	    break;
+	case opc_i2l: case opc_i2f: case opc_i2d:
+	case opc_l2i: case opc_l2f: case opc_l2d:
+	case opc_f2i: case opc_f2l: case opc_f2d:
+	case opc_d2i: case opc_d2l: case opc_d2f: {
+	    int from = (opcode-opc_i2l)/3;
+	    int to   = (opcode-opc_i2l)%3;
+	    if (to >= from)
+		to++;
+	    stackHeight -= (from & 1) != 0 ? 2 : 1;
+	    push(verifierType("IJFD".substring(to)));
+	    break;
+	}
+	case opc_lcmp: case opc_dcmpl: case opc_dcmpg:
+	    stackHeight -= 4;
+	    push(INT);
+	    break;
+	case opc_fcmpl: case opc_fcmpg:
+	    stackHeight -= 2;
+	    push(INT);
+	    break;
+	case opc_ifeq: case opc_ifne:
+	case opc_iflt: case opc_ifge:
+	case opc_ifgt: case opc_ifle:
+	case opc_ifnull: case opc_ifnonnull:
+	case opc_lookupswitch:
+	case opc_ireturn: case opc_freturn: case opc_areturn:
+	case opc_athrow:
+	case opc_monitorenter: case opc_monitorexit:
+	    stackHeight--;
+	    break;
+	case opc_if_icmpeq: case opc_if_icmpne:
+	case opc_if_icmplt: case opc_if_icmpge:
+	case opc_if_icmpgt: case opc_if_icmple:
+	case opc_if_acmpeq: case opc_if_acmpne:
+	case opc_lreturn: case opc_dreturn:
+	    stackHeight -= 2;
+	    break;
+	case opc_return:
+	    break;
+	case opc_getstatic:
+	    push(verifierType(instr.getReference().getType()));
+	    break;
+	case opc_getfield:
+	    stackHeight--;
+	    push(verifierType(instr.getReference().getType()));
+	    break;
+	case opc_putstatic:
+	    stackHeight -= TypeSignature.getTypeSize
+		(instr.getReference().getType());
+	    break;
+	case opc_putfield:
+	    stackHeight -= TypeSignature.getTypeSize
+		(instr.getReference().getType()) + 1;
+	    break;
+	case opc_invokevirtual:
+	case opc_invokespecial:
+	case opc_invokestatic :
+	case opc_invokeinterface: {
+	    Reference ref = instr.getReference();
+	    String refType = ref.getType();
+	    stackHeight -= TypeSignature.getParameterSize(refType);
+	    if (opcode != opc_invokestatic) {
+		String clazz = pop();
+		if (ref.getName().equals("<init>"))
+		    initialize(clazz);
+	    }
+	    String retType = TypeSignature.getReturnType(refType);
+	    if (!retType.equals("V"))
+		push(verifierType(retType));
+	    break;
+	}
+	case opc_new:
+	    push("U" + addr + instr.getClazzType());
+	    break;
+	case opc_arraylength:
+	case opc_instanceof:
+	    stackHeight--;
+	    push(INT);
+	    break;
+	case opc_checkcast:
+	    stackHeight--;
+	    push(instr.getClazzType());
+	    break;
+	case opc_multianewarray:
+	    stackHeight -= instr.getDimensions();
+	    push(instr.getClazzType());
+	    break;
+	default:
+	    throw new IllegalStateException("Invalid opcode " + opcode);
+	}
+    }
+
+    /**
+     * Loads the state at the start of the block and simulates its
+     * instructions.
+     * @param mergeHandlers true, if the locals before every
+     * instruction should be merged into the exception handlers.
+     */
+    private void simulate(Block block, boolean mergeHandlers) {
+	int nr = block.getBlockNr();
+	locals = (String[]) inLocals[nr].clone();
+	stackHeight = inStacks[nr].length;
+	System.arraycopy(inStacks[nr], 0, stack, 0, stackHeight);
+
+	Handler[] handlers = block.getHandlers();
+	if (mergeHandlers)
+	    mergeHandlers(handlers);
+	Instruction[] instrs = block.getInstructions();
+	int addr = bbw.blockAddr[nr];
+	for (int i = 0; i < instrs.length; i++) {
+	    Instruction instr = instrs[i];
+	    modelEffect(instr, addr);
+	    if (mergeHandlers && (instr.isStore()
+				  || instr.getOpcode() == opc_invokespecial))
+		mergeHandlers(handlers);
+	    addr += bbw.instrLength[nr][i];
+	}
+    }
+
+    private String[] initialLocals() {
+	String[] initLocals = new String[bb.getMaxLocals()];
+	for (int i = 0; i < initLocals.length; i++)
+	    initLocals[i] = TOP;
+	MethodInfo mi = bb.getMethodInfo();
+	int slot = 0;
+	if (!mi.isStatic()) {
+	    initLocals[slot++] =
+		mi.getName().equals("<init>") && !thisType.equals(OBJECT)
+		? UNINIT_THIS : thisType;
+	}
+	String[] paramTypes = TypeSignature.getParameterTypes(mi.getType());
+	for (int i = 0; i < paramTypes.length; i++) {
+	    initLocals[slot] = verifierType(paramTypes[i]);
+	    slot += TypeSignature.getTypeSize(paramTypes[i]);
+	}
+	return initLocals;
+    }
+
+    private void analyze() {
+	Block[] blocks = bb.getBlocks();
+	inLocals = new String[blocks.length][];
+	inStacks = new String[blocks.length][];
+	stack = new String[bb.getMaxStack()];
+	merge(bb.getStartBlock(), initialLocals(), EMPTY, 0);
+	while (!todo.isEmpty()) {
+	    Block block = (Block) todo.pop();
+	    simulate(block, true);
+	    Block[] succs = block.getSuccs();
+	    for (int i = 0; i < succs.length; i++) {
+		if (succs[i] != null)
+		    merge(succs[i], locals, stack, stackHeight);
+	    }
+	}
+    }
+
+    /**
+     * Converts the types of locals or stack slots into the entries of
+     * a frame.  Long and double take only one entry and trailing TOP
+     * entries are removed.
+     */
+    private static String[] trim(String[] types, int length) {
+	String[] entries = new String[length];
+	int count = 0, last = 0;
+	for (int i = 0; i < length; i++) {
+	    String type = types[i];
+	    entries[count++] = type;
+	    if (type != TOP)
+		last = count;
+	    if (type == LONG || type == DOUBLE)
+		i++;
+	}
+	if (last == length)
+	    return entries;
+	String[] result = new String[last];
+	System.arraycopy(entries, 0, result, 0, last);
+	return result;
+    }
+
+    private void addFrame(int addr, String[] frameLocals,
+			  String[] frameStack, int height) {
+	Integer key = new Integer(addr);
+	if (!frames.containsKey(key))
+	    frames.put(key, new String[][] {
+		trim(frameLocals, frameLocals.length),
+		trim(frameStack, height) });
+    }
+
+    private void buildFrames() {
+	Block[] blocks = bb.getBlocks();
+	int count = blocks.length;
+	Block startBlock = bb.getStartBlock();
+
+	/* Find the blocks that are the target of a jump or that
+	 * don't follow a block falling through to them.
+	 */
+	boolean[] needsFrame = new boolean[count];
+	if (startBlock != blocks[0]) {
+	    needsFrame[0] = true;
+	    needsFrame[startBlock.getBlockNr()] = true;
+	}
+	boolean needRet = false;
+	for (int i = 0; i < count; i++) {
+	    Instruction[] instrs = blocks[i].getInstructions();
+	    Block[] succs = blocks[i].getSuccs();
+	    Block next = i + 1 < count ? blocks[i + 1] : null;
+	    boolean hasDefaultSucc = instrs.length == 0
+		|| !instrs[instrs.length - 1].doesAlwaysJump();
+	    for (int j = 0; j < succs.length; j++) {
+		if (succs[j] == null) {
+		    if (!hasDefaultSucc || j < succs.length - 1)
+			needRet = true;
+		} else if (succs[j] != next
+			   || !hasDefaultSucc || j < succs.length - 1)
+		    needsFrame[succs[j].getBlockNr()] = true;
+	    }
+	    /* The inverted wide condition jumps over the goto_w */
+	    if (next != null
+		&& (!hasDefaultSucc || succs[succs.length - 1] != next
+		    || bbw.isWideCond.get(i + 1)))
+		needsFrame[i + 1] = true;
+	    Handler[] handlers = blocks[i].getHandlers();
+	    for (int j = 0; j < handlers.length; j++)
+		needsFrame[handlers[j].getCatcher().getBlockNr()] = true;
+	}
+
+	if (needRet) {
+	    /* The void returns, that the writer creates for null
+	     * successors, may be the target of a jump.  The stack is
+	     * empty there and no locals are needed.
+	     */
+	    for (int i = 1; i <= count; i++) {
+		if (bbw.isRet.get(i))
+		    addFrame(bbw.blockAddr[i] - 1, EMPTY, EMPTY, 0);
+	    }
+	    if (bbw.retAtEnd)
+		addFrame(bbw.blockAddr[count] - 1, EMPTY, EMPTY, 0);
+	}
+
+	for (int i = 0; i < count; i++) {
+	    int addr = bbw.blockAddr[i];
+	    int end = bbw.blockAddr[i + 1];
+	    if (!isReachable(i)) {
+		/* The writer replaces the code by nops and athrow,
+		 * keeping only the return at the end.
+		 */
+		if (bbw.isRet.get(i + 1)
+		    || (i == count - 1 && bbw.retAtEnd)) {
+		    addFrame(end - 1, EMPTY, EMPTY, 0);
+		    end--;
+		}
+		if (addr < end)
+		    addFrame(addr, EMPTY, new String[] { THROWABLE }, 1);
+		continue;
+	    }
+	    if (needsFrame[i])
+		addFrame(addr, inLocals[i], inStacks[i], inStacks[i].length);
+	    if (bbw.isWideCond.get(i + 1)) {
+		/* The inverted condition jumps behind the goto_w. */
+		simulate(blocks[i], false);
+		int[] lengths = bbw.instrLength[i];
+		int target = addr;
+		for (int j = 0; j < lengths.length; j++)
+		    target += lengths[j];
+		if (target < end)
+		    addFrame(target, locals, stack, stackHeight);
+	    }
+	}
+    }
+
+    private void writeType(DataOutputStream output, String type,
+			   GrowableConstantPool gcp) throws IOException {
+	switch (type.charAt(0)) {
+	case 'T':
+	    output.writeByte(0);
+	    break;
+	case 'I':
+	    output.writeByte(1);
+	    break;
+	case 'F':
+	    output.writeByte(2);
+	    break;
+	case 'D':
+	    output.writeByte(3);
+	    break;
+	case 'J':
+	    output.writeByte(4);
+	    break;
+	case '0':
+	    output.writeByte(5);
+	    break;
+	case 'N':
+	    output.writeByte(6);
+	    break;
+	case 'U':
+	    output.writeByte(8);
+	    output.writeShort(Integer.parseInt
+			      (type.substring(1, type.indexOf('L'))));
+	    break;
+	default:
+	    output.writeByte(7);
+	    output.writeShort(gcp.putClassType(type));
+	    break;
+	}
+    }
+
+    /**
+     * Checks if the first length entries of both arrays are equal.
+     */
+    private static boolean samePrefix(String[] types1, String[] types2,
+				      int length) {
+	for (int i = 0; i < length; i++) {
+	    if (!types1[i].equals(types2[i]))
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * Creates the contents of the StackMapTable attribute.  This puts
+     * the referenced classes into the constant pool.
+     * @return the attribute contents, null if no frames are needed.
+     */
+    public byte[] getStackMapTable(GrowableConstantPool gcp) {
+	if (frames.isEmpty())
+	    return null;
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	DataOutputStream output = new DataOutputStream(bytes);
+	try {
+	    output.writeShort(frames.size());
+	    String[] lastLocals = trim(initialLocals(), bb.getMaxLocals());
+	    int lastAddr = -1;
+	    for (Iterator i = frames.entrySet().iterator(); i.hasNext(); ) {
+		Map.Entry entry = (Map.Entry) i.next();
+		int addr = ((Integer) entry.getKey()).intValue();
+		String[][] frame = (String[][]) entry.getValue();
+		String[] frameLocals = frame[0];
+		String[] frameStack = frame[1];
+		int delta = addr - lastAddr - 1;
+		int diff = frameLocals.length - lastLocals.length;
+		boolean sameLocals = diff == 0
+		    && samePrefix(frameLocals, lastLocals, frameLocals.length);
+		if (sameLocals && frameStack.length == 0) {
+		    if (delta < 64)
+			output.writeByte(delta);
+		    else {
+			output.writeByte(251);
+			output.writeShort(delta);
+		    }
+		} else if (sameLocals && frameStack.length == 1) {
+		    if (delta < 64)
+			output.writeByte(64 + delta);
+		    else {
+			output.writeByte(247);
+			output.writeShort(delta);
+		    }
+		    writeType(output, frameStack[0], gcp);
+		} else if (frameStack.length == 0 && diff < 0 && diff >= -3
+			   && samePrefix(frameLocals, lastLocals,
+					 frameLocals.length)) {
+		    output.writeByte(251 + diff);
+		    output.writeShort(delta);
+		} else if (frameStack.length == 0 && diff > 0 && diff <= 3
+			   && samePrefix(frameLocals, lastLocals,
+					 lastLocals.length)) {
+		    output.writeByte(251 + diff);
+		    output.writeShort(delta);
+		    for (int j = lastLocals.length; j < frameLocals.length; j++)
+			writeType(output, frameLocals[j], gcp);
+		} else {
+		    output.writeByte(255);
+		    output.writeShort(delta);
+		    output.writeShort(frameLocals.length);
+		    for (int j = 0; j < frameLocals.length; j++)
+			writeType(output, frameLocals[j], gcp);
+		    output.writeShort(frameStack.length);
+		    for (int j = 0; j < frameStack.length; j++)
+			writeType(output, frameStack[j], gcp);
+		}
+		lastAddr = addr;
+		lastLocals = frameLocals;
+	    }
+	    output.close();
+	} catch (IOException ex) {
+	    throw new InternalError("IOException in ByteArrayOutputStream");
+	}
+	return bytes.toByteArray();
+    }
+}
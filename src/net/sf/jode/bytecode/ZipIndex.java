@@ -0,0 +1,571 @@
+/* ZipIndex Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.bytecode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A read-only index over the central directory of a zip archive,
+ * whose contents are held in a byte buffer.  The buffer is either a
+ * memory mapping of the archive file, a heap buffer with an archive
+ * that was downloaded from an URL, or a part of another buffer if the
+ * archive is nested in another archive.  <br>
+ *
+ * Unlike {@link java.util.zip.ZipFile} this class doesn't create
+ * <code>ZipEntry</code> objects or strings for the entries.  For
+ * every file it only keeps the hash code of its name together with
+ * the offset of its central directory record in a sorted
+ * <code>long[]</code>.  Only the directories are remembered by
+ * name, together with the offsets of the files they contain.  The
+ * contents of an entry are read directly from the buffer; stored
+ * entries aren't copied at all, deflated entries are inflated on
+ * the fly.  <br>
+ *
+ * Names are compared byte by byte in their UTF-8 form and hashed
+ * with the same function as <code>String.hashCode</code>, so that
+ * the hash of an ASCII name can be computed without encoding it.
+ * Archives in ZIP64 format are not supported.
+ *
+ * @author Jochen Hoenicke
+ */
+class ZipIndex {
+    private static final int LOCSIG = 0x04034b50;
+    private static final int CENSIG = 0x02014b50;
+    private static final int ENDSIG = 0x06054b50;
+    private static final int LOCHDR = 30;
+    private static final int CENHDR = 46;
+    private static final int ENDHDR = 22;
+
+    private static final int STORED   = 0;
+    private static final int DEFLATED = 8;
+
+    private static final int[] EMPTY_FILES = new int[0];
+
+    /**
+     * The archive contents, in little endian byte order.
+     */
+    private ByteBuffer buffer;
+    /**
+     * The offset that is added to all offsets in the archive.  This
+     * is non zero, if some data (e.g. a self extractor) was prepended.
+     */
+    private int base;
+    /**
+     * The length of the prefix that is stripped from all names.
+     */
+    private int prefixLength;
+    /**
+     * The name of the archive, used for toString().
+     */
+    private String name;
+
+    /**
+     * For every file the hash code of its name in the upper 32 bits
+     * and the offset of the central directory record in the lower 32
+     * bits.  The array is sorted, so that files with the same hash
+     * code are consecutive.
+     */
+    private long[] files;
+    /**
+     * Maps the directory names to Directory objects.  The name of
+     * the top-level directory is the empty string.
+     */
+    private Hashtable directories = new Hashtable();
+
+    private static class Directory {
+	/**
+	 * The central directory offsets of the files.
+	 */
+	int[] files = EMPTY_FILES;
+	int fileCount;
+	/**
+	 * The names of the sub directories.
+	 */
+	Vector subDirs = new Vector();
+
+	void addFile(int cen) {
+	    if (fileCount == files.length) {
+		int[] newFiles = new int[fileCount * 2 + 4];
+		System.arraycopy(files, 0, newFiles, 0, fileCount);
+		files = newFiles;
+	    }
+	    files[fileCount++] = cen;
+	}
+    }
+
+    /**
+     * Reads the central directory of the archive.
+     * @param buf the archive contents.  Only the part between
+     * position and limit is used.
+     * @param prefix the directory in the archive that should be
+     * treated as root directory, ending with a slash.  Entries outside
+     * of this directory are ignored.  May be null.
+     * @param name a human readable name of the archive.
+     * @exception ZipException if the archive is corrupt.
+     */
+    ZipIndex(ByteBuffer buf, String prefix, String name)
+	throws ZipException
+    {
+	this.buffer = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+	this.name = name;
+	byte[] prefixBytes = prefix == null ? new byte[0] : encode(prefix);
+	prefixLength = prefixBytes.length;
+	readCentralDirectory(prefixBytes);
+    }
+
+    /**
+     * Maps the given archive file into memory and reads its central
+     * directory.
+     * @param file the archive file.
+     * @param prefix the directory in the archive that should be
+     * treated as root directory, ending with a slash.  May be null.
+     * @exception IOException if the file can't be mapped or is not
+     * a supported zip archive.
+     */
+    static ZipIndex map(File file, String prefix) throws IOException {
+	return new ZipIndex(mapFile(file), prefix, file.getPath());
+    }
+
+    /**
+     * Maps the given file read-only into memory.
+     * @param file the file.
+     * @return a byte buffer with the contents of the file.
+     * @exception IOException if the file can't be mapped.
+     */
+    static ByteBuffer mapFile(File file) throws IOException {
+	FileInputStream input = new FileInputStream(file);
+	try {
+	    FileChannel channel = input.getChannel();
+	    long size = channel.size();
+	    if (size > Integer.MAX_VALUE)
+		throw new ZipException("archive too large: " + file);
+	    /* The mapping stays valid after the channel is closed. */
+	    return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	} finally {
+	    input.close();
+	}
+    }
+
+    private int getShort(int pos) {
+	return buffer.getShort(pos) & 0xffff;
+    }
+
+    private int getInt(int pos) throws ZipException {
+	int value = buffer.getInt(pos);
+	if (value < 0)
+	    throw new ZipException("ZIP64 archives are not supported");
+	return value;
+    }
+
+    private int findEnd() throws ZipException {
+	int minEnd = Math.max(0, buffer.limit() - ENDHDR - 0xffff);
+	for (int end = buffer.limit() - ENDHDR; end >= minEnd; end--) {
+	    if (buffer.getInt(end) == ENDSIG
+		&& end + ENDHDR + getShort(end + 20) <= buffer.limit())
+		return end;
+	}
+	throw new ZipException("not a zip archive: " + name);
+    }
+
+    private void readCentralDirectory(byte[] prefix) throws ZipException {
+	int end = findEnd();
+	int cenSize = getInt(end + 12);
+	int cenOffset = getInt(end + 16);
+	base = end - cenSize - cenOffset;
+	if (base < 0 || getShort(end + 10) == 0xffff)
+	    throw new ZipException("corrupt or ZIP64 archive: " + name);
+
+	/* We take the number of entries from the size of the central
+	 * directory, since the entry count may have overflown.  Every
+	 * entry takes at least CENHDR bytes.
+	 */
+	long[] hashes = new long[cenSize / CENHDR];
+	int fileCount = 0;
+
+	Directory lastDir = null;
+	int lastDirCen = 0, lastDirLength = -1;
+
+	int pos = base + cenOffset;
+	int cenEnd = pos + cenSize;
+	while (pos < cenEnd) {
+	    if (buffer.getInt(pos) != CENSIG)
+		throw new ZipException("corrupt central directory: " + name);
+	    int nameLength = getShort(pos + 28);
+	    int next = pos + CENHDR + nameLength
+		+ getShort(pos + 30) + getShort(pos + 32);
+	    if (next > cenEnd)
+		throw new ZipException("corrupt central directory: " + name);
+	    int nameStart = pos + CENHDR;
+	    int nameEnd = nameStart + nameLength;
+
+	    if (nameLength > prefix.length
+		&& buffer.get(nameEnd - 1) != '/'
+		&& regionMatches(nameStart, prefix, 0, prefix.length)) {
+		nameStart += prefix.length;
+
+		int hash = 0;
+		int lastSlash = -1;
+		for (int i = nameStart; i < nameEnd; i++) {
+		    byte b = buffer.get(i);
+		    if (b == '/')
+			lastSlash = i - nameStart;
+		    hash = 31 * hash + (b & 0xff);
+		}
+		hashes[fileCount++] = ((long) hash << 32) | pos;
+
+		/* Most archives store the files of one directory
+		 * consecutively, so we only need to look up the
+		 * directory if it differs from the last one.
+		 */
+		int dirLength = Math.max(lastSlash, 0);
+		if (lastDir == null || dirLength != lastDirLength
+		    || !regionMatches(nameStart, buffer,
+				      lastDirCen + CENHDR + prefix.length,
+				      dirLength)) {
+		    lastDir = getDirectory(decode(nameStart, dirLength));
+		    lastDirCen = pos;
+		    lastDirLength = dirLength;
+		}
+		lastDir.addFile(pos);
+	    }
+	    pos = next;
+	}
+
+	files = new long[fileCount];
+	System.arraycopy(hashes, 0, files, 0, fileCount);
+	Arrays.sort(files);
+    }
+
+    /**
+     * Gets the directory with the given name, creating it and its
+     * parent directories if necessary.
+     */
+    private Directory getDirectory(String dirName) {
+	Directory dir = (Directory) directories.get(dirName);
+	if (dir == null) {
+	    dir = new Directory();
+	    directories.put(dirName, dir);
+	    if (dirName.length() > 0) {
+		int slash = dirName.lastIndexOf('/');
+		Directory parent = getDirectory
+		    (slash == -1 ? "" : dirName.substring(0, slash));
+		parent.subDirs.addElement(dirName.substring(slash + 1));
+	    }
+	}
+	return dir;
+    }
+
+    private boolean regionMatches(int pos, byte[] bytes,
+				  int offset, int length) {
+	for (int i = 0; i < length; i++) {
+	    if (buffer.get(pos + i) != bytes[offset + i])
+		return false;
+	}
+	return true;
+    }
+
+    private boolean regionMatches(int pos, ByteBuffer other,
+				  int offset, int length) {
+	for (int i = 0; i < length; i++) {
+	    if (buffer.get(pos + i) != other.get(offset + i))
+		return false;
+	}
+	return true;
+    }
+
+    private String decode(int pos, int length) {
+	byte[] bytes = new byte[length];
+	for (int i = 0; i < length; i++)
+	    bytes[i] = buffer.get(pos + i);
+	try {
+	    return new String(bytes, "UTF-8");
+	} catch (UnsupportedEncodingException ex) {
+	    throw new InternalError("UTF-8 not supported");
+	}
+    }
+
+    private static byte[] encode(String name) {
+	int length = name.length();
+	for (int i = 0; i < length; i++) {
+	    if (name.charAt(i) >= 0x80) {
+		try {
+		    return name.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException ex) {
+		    throw new InternalError("UTF-8 not supported");
+		}
+	    }
+	}
+	byte[] bytes = new byte[length];
+	for (int i = 0; i < length; i++)
+	    bytes[i] = (byte) name.charAt(i);
+	return bytes;
+    }
+
+    /**
+     * Searches the central directory record of a file.
+     * @param filename the name of the file relative to the prefix.
+     * @return the offset of the record, or -1 if it doesn't exist.
+     */
+    private int findFile(String filename) {
+	byte[] bytes = encode(filename);
+	int hash = 0;
+	for (int i = 0; i < bytes.length; i++)
+	    hash = 31 * hash + (bytes[i] & 0xff);
+
+	int index = Arrays.binarySearch(files, (long) hash << 32);
+	if (index < 0)
+	    index = -index - 1;
+	for (; index < files.length && (int) (files[index] >> 32) == hash;
+	     index++) {
+	    int cen = (int) files[index];
+	    if (getShort(cen + 28) == prefixLength + bytes.length
+		&& regionMatches(cen + CENHDR + prefixLength,
+				 bytes, 0, bytes.length))
+		return cen;
+	}
+	return -1;
+    }
+
+    /**
+     * Tells whether the archive contains the given file.
+     * Directories are not considered as files.
+     */
+    boolean isFile(String filename) {
+	return findFile(filename) != -1;
+    }
+
+    /**
+     * Tells whether the archive contains a file in the given
+     * directory, or in one of its sub directories.
+     */
+    boolean isDirectory(String dirname) {
+	return directories.containsKey(dirname);
+    }
+
+    /**
+     * Lists the files and sub directories in the given directory.
+     * @return an enumeration of the names, or null if the
+     * directory doesn't exist.
+     */
+    Enumeration listFiles(String dirname) {
+	final Directory dir = (Directory) directories.get(dirname);
+	if (dir == null)
+	    return null;
+	final int dirLength = dirname.length() == 0
+	    ? 0 : encode(dirname).length + 1;
+	return new Enumeration() {
+	    Enumeration subDirs = dir.subDirs.elements();
+	    int i = 0;
+
+	    public boolean hasMoreElements() {
+		return subDirs.hasMoreElements() || i < dir.fileCount;
+	    }
+
+	    public Object nextElement() {
+		if (subDirs.hasMoreElements())
+		    return subDirs.nextElement();
+		if (i >= dir.fileCount)
+		    throw new NoSuchElementException();
+		int cen = dir.files[i++];
+		int skip = prefixLength + dirLength;
+		return decode(cen + CENHDR + skip, getShort(cen + 28) - skip);
+	    }
+	};
+    }
+
+    /**
+     * Returns the fingerprint of a file, computed from the central
+     * directory without reading the file.  The fingerprint is the
+     * uncompressed size in the upper 32 bits and the CRC-32 of the
+     * contents in the lower 32 bits.
+     * @return the fingerprint, or -1 if the file doesn't exist.
+     * @exception ZipException if the entry is too large.
+     */
+    long getFingerprint(String filename) throws ZipException {
+	int cen = findFile(filename);
+	if (cen == -1)
+	    return -1;
+	return ((long) getInt(cen + 24) << 32)
+	    | (buffer.getInt(cen + 16) & 0xffffffffL);
+    }
+
+    /**
+     * Returns an input stream that reads the contents of a file.
+     * @return the input stream, or null if the file doesn't exist.
+     * @exception ZipException if the entry is corrupt or uses an
+     * unsupported compression method.
+     */
+    InputStream getFile(String filename) throws ZipException {
+	int cen = findFile(filename);
+	if (cen == -1)
+	    return null;
+	return getInputStream(cen, filename);
+    }
+
+    /**
+     * Returns the contents of a file as a byte buffer.  For stored
+     * files this is a view into the archive buffer, so that archives
+     * nested in a mapped archive need not be copied.  Deflated files
+     * are inflated into a new heap buffer.
+     * @return the contents, or null if the file doesn't exist.
+     * @exception IOException if the entry is corrupt or uses an
+     * unsupported compression method.
+     */
+    ByteBuffer getContents(String filename) throws IOException {
+	int cen = findFile(filename);
+	if (cen == -1)
+	    return null;
+	if (getShort(cen + 10) == STORED)
+	    return getRawData(cen, filename);
+
+	byte[] contents = new byte[getInt(cen + 24)];
+	InputStream input = getInputStream(cen, filename);
+	try {
+	    int pos = 0;
+	    while (pos < contents.length) {
+		int count = input.read(contents, pos, contents.length - pos);
+		if (count == -1)
+		    throw new ZipException("truncated entry: " + filename);
+		pos += count;
+	    }
+	} finally {
+	    input.close();
+	}
+	return ByteBuffer.wrap(contents);
+    }
+
+    /**
+     * Returns the (possibly compressed) data of the file whose
+     * central directory record is at the given offset.
+     */
+    private ByteBuffer getRawData(int cen, String filename)
+	throws ZipException
+    {
+	int compressedSize = getInt(cen + 20);
+	int loc = base + getInt(cen + 42);
+	if (buffer.getInt(loc) != LOCSIG)
+	    throw new ZipException("corrupt local header: " + filename);
+	int data = loc + LOCHDR + getShort(loc + 26) + getShort(loc + 28);
+	if (data + compressedSize > buffer.limit())
+	    throw new ZipException("truncated entry: " + filename);
+
+	ByteBuffer slice = buffer.duplicate();
+	slice.position(data);
+	slice.limit(data + compressedSize);
+	return slice.slice();
+    }
+
+    private InputStream getInputStream(int cen, String filename)
+	throws ZipException
+    {
+	int method = getShort(cen + 10);
+	int size = getInt(cen + 24);
+	InputStream input
+	    = new ByteBufferInputStream(getRawData(cen, filename));
+	switch (method) {
+	case STORED:
+	    return input;
+	case DEFLATED: {
+	    final Inflater inflater = new Inflater(true);
+	    int bufSize = Math.max(64, Math.min(size, 8192));
+	    return new InflaterInputStream(input, inflater, bufSize) {
+		private boolean closed;
+		public void close() throws IOException {
+		    if (!closed) {
+			closed = true;
+			inflater.end();
+			super.close();
+		    }
+		}
+	    };
+	}
+	default:
+	    throw new ZipException("unsupported compression method "
+				   + method + ": " + filename);
+	}
+    }
+
+    public String toString() {
+	return name;
+    }
+
+    /**
+     * An input stream that reads the remaining bytes of a byte buffer.
+     */
+    static class ByteBufferInputStream extends InputStream {
+	private ByteBuffer buf;
+	private int mark;
+
+	ByteBufferInputStream(ByteBuffer buf) {
+	    this.buf = buf;
+	}
+
+	public int read() {
+	    return buf.hasRemaining() ? buf.get() & 0xff : -1;
+	}
+
+	public int read(byte[] b, int off, int len) {
+	    if (len == 0)
+		return 0;
+	    if (!buf.hasRemaining())
+		return -1;
+	    len = Math.min(len, buf.remaining());
+	    buf.get(b, off, len);
+	    return len;
+	}
+
+	public long skip(long n) {
+	    int count = (int) Math.max(0, Math.min(n, buf.remaining()));
+	    buf.position(buf.position() + count);
+	    return count;
+	}
+
+	public int available() {
+	    return buf.remaining();
+	}
+
+	public boolean markSupported() {
+	    return true;
+	}
+
+	public void mark(int readLimit) {
+	    mark = buf.position();
+	}
+
+	public void reset() {
+	    buf.position(mark);
+	}
+    }
+}
@@ -91,7 +91,14 @@ public class ClassAnalyzer
 			 Expression[] outerValues) 
 	throws ClassFormatException, IOException
     {
-	clazz.load(ClassInfo.ALL);
+	/* Line numbers and unknown attributes are never used, the
+	 * local variable table only if the user wants it.
+	 */
+	int attributes = ClassInfo.ATTR_ALL
+	    & ~(ClassInfo.ATTR_LNT | ClassInfo.ATTR_UNKNOWN);
+	if ((Options.options & Options.OPTION_LVT) == 0)
+	    attributes &= ~ClassInfo.ATTR_LVT;
+	clazz.load(ClassInfo.ALL, attributes);
 	ClassInfo superClass = clazz.getSuperclass();
 	String myPackage = clazz.getName().substring
 	    (clazz.getName().lastIndexOf('.') + 1);
@@ -497,7 +504,7 @@ public class ClassAnalyzer
 	writer.print(name);
 	ClassInfo superClazz = clazz.getSuperclass();
 	if (superClazz != null && 
-	    superClazz.getName() != "java.lang.Object") {
+	    !superClazz.getName().equals("java.lang.Object")) {
 	    writer.breakOp();
 	    writer.print(" extends " + (writer.getClassString
 				       (superClazz, Scope.CLASSNAME)));
@@ -689,6 +696,11 @@ public class ClassAnalyzer
     private static boolean conflicts(ClassInfo info, 
 				     String name, int usageType) {
 	while (info != null) {
+	    try {
+		info.load(ClassInfo.DECLARATIONS);
+	    } catch (IOException ex) {
+		info.guess(ClassInfo.DECLARATIONS);
+	    }
 	    if (usageType == NOSUPERMETHODNAME || usageType == METHODNAME) {
 		MethodInfo[] minfos = info.getMethods();
 		for (int i = 0; i< minfos.length; i++)
@@ -704,11 +716,6 @@ public class ClassAnalyzer
 		}
 	    }
 	    if (usageType == CLASSNAME || usageType == AMBIGUOUSNAME) {
-		try {
-		    info.load(ClassInfo.DECLARATIONS);
-		} catch (IOException ex) {
-		    info.guess(ClassInfo.DECLARATIONS);
-		}
 		ClassInfo[] iinfos = info.getClasses();
 		if (iinfos != null) {
 		    for (int i=0; i < iinfos.length; i++) {
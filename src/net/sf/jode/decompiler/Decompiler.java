@@ -45,6 +45,11 @@ public class Decompiler {
     private int indentSize  = 4;
     private int outputStyle = TabbedPrintWriter.BRACE_AT_EOL;
     private int lineWidth   = 79;
+    /**
+     * The size of the class file cache in bytes, -1 to leave the class
+     * path alone.
+     */
+    private int classFileCacheSize = -1;
 
     /**
      * We need a different pathSeparatorChar, since ':' (used for most
@@ -109,7 +114,8 @@ public class Decompiler {
     /**
      * Set an option.
      * @param option the option (pretty, style, decrypt, verify, etc.)
-     * @param value ("1"/"0" for on/off, "sun"/"gnu" for style)
+     * @param value ("1"/"0" for on/off, "sun"/"gnu" for style, the
+     * size in kilobytes for filecache)
      * @exception IllegalArgumentException if option or value is invalid.
      */
     public void setOption(String option, String value) {
@@ -155,6 +161,14 @@ public class Decompiler {
 	    importClassLimit = clazzLimit;
 	    return;
 	}
+	if (option.equals("filecache")) {
+	    int size = Integer.parseInt(value);
+	    if (size < 0 || size > Integer.MAX_VALUE / 1024)
+		throw new IllegalArgumentException
+		    ("Invalid file cache size "+value);
+	    classFileCacheSize = size * 1024;
+	    return;
+	}
 	if (option.equals("verbose")) {
 	    GlobalOptions.verboseLevel = Integer.parseInt(value);
 	    return;
@@ -214,8 +228,13 @@ public class Decompiler {
 	   if (bootcp != null)
 	       cp = bootcp + altPathSeparatorChar + cp;
 	   cp = cp.replace(File.pathSeparatorChar, altPathSeparatorChar);
+	   if (bootcp == null)
+	       /* Since Java 9 the system classes are in the runtime image. */
+	       cp = "jrt:/" + altPathSeparatorChar + cp;
 	   classPath = new ClassPath(cp);
        }
+       if (classFileCacheSize >= 0)
+	   classPath.setClassFileCacheSize(classFileCacheSize);
 
        ClassInfo clazz = classPath.getClassInfo(className);
        ImportHandler imports = new ImportHandler(classPath,
@@ -228,5 +247,10 @@ public class Decompiler {
        ClassAnalyzer clazzAna = new ClassAnalyzer(null, clazz, imports);
        clazzAna.dumpJavaFile(tabbedWriter, progress);
        writer.flush();
+       if (classFileCacheSize > 0 && GlobalOptions.verboseLevel > 0)
+	   GlobalOptions.err.println
+	       ("Class file cache: "+classPath.getClassFileCacheHits()
+		+" hits, "+classPath.getClassFileCacheMisses()+" misses, "
+		+classPath.getClassFileCacheEvictions()+" evictions.");
    }
 }
@@ -20,19 +20,24 @@
 package net.sf.jode.decompiler;
 import net.sf.jode.bytecode.ClassInfo;
 import net.sf.jode.bytecode.ClassPath;
+import net.sf.jode.bytecode.ClassPathIndex;
 import net.sf.jode.bytecode.ClassFormatException;
 import net.sf.jode.GlobalOptions;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.zip.ZipOutputStream;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipEntry;
 import java.util.Enumeration;
+import java.util.Hashtable;
 
 import gnu.getopt.LongOpt;
 import gnu.getopt.Getopt;
@@ -46,7 +51,11 @@ public class Main extends Options {
 	new LongOpt("cp", LongOpt.REQUIRED_ARGUMENT, null, 'c'),
 	new LongOpt("classpath", LongOpt.REQUIRED_ARGUMENT, null, 'c'),
 	new LongOpt("dest", LongOpt.REQUIRED_ARGUMENT, null, 'd'),
+	new LongOpt("cache", LongOpt.REQUIRED_ARGUMENT, null, 'C'),
+	new LongOpt("prefetch", LongOpt.REQUIRED_ARGUMENT, null, 'P'),
+	new LongOpt("file-cache", LongOpt.REQUIRED_ARGUMENT, null, 'F'),
 	new LongOpt("keep-going", LongOpt.NO_ARGUMENT, null, 'k'),
+	new LongOpt("dedup", LongOpt.NO_ARGUMENT, null, 'u'),
 	new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h'),
 	new LongOpt("version", LongOpt.NO_ARGUMENT, null, 'V'),
 	new LongOpt("verbose", LongOpt.OPTIONAL_ARGUMENT, null, 'v'),
@@ -76,6 +85,32 @@ public class Main extends Options {
 		    OPTION_START+9)
     };
 
+    /**
+     * Maps the names of the decompiled classes to their Decompiled
+     * entry.  This is null, unless byte identical classes are only
+     * decompiled once.
+     */
+    private static Hashtable decompiled;
+    /**
+     * Records the source written to standard output for the current
+     * class, null if it isn't needed.
+     */
+    private static ByteArrayOutputStream sourceCopy;
+    private static int reusedClasses;
+
+    private static class Decompiled {
+	long fingerprint;
+	/**
+	 * The source, if it was written to standard output.
+	 */
+	byte[] source;
+
+	Decompiled(long fingerprint, byte[] source) {
+	    this.fingerprint = fingerprint;
+	    this.source = source;
+	}
+    }
+
     public static void usage() {
 	PrintWriter err = GlobalOptions.err;
 	err.println("Version: " + GlobalOptions.version);
@@ -93,6 +128,12 @@ public class Main extends Options {
 		    "search for classes in specified classpath.");
 	err.println("                       "+
 		    "The directories should be separated by ','.");
+	err.println("  -C, --cache <file>   "+
+		    "cache the listing of the classpath in file.");
+	err.println("  -P, --prefetch <num> "+
+		    "read referenced classes in num background threads.");
+	err.println("  -F, --file-cache <kb> "+
+		    "keep up to kb kilobytes of read class files in memory.");
 	err.println("  -d, --dest <dir>     "+
 		    "write decompiled files to disk into directory destdir.");
 	err.println("  -s, --style {sun|gnu|pascal|python}  "+
@@ -110,6 +151,10 @@ public class Main extends Options {
 		    "After an error continue to decompile the other classes.");
 	err.println("                       "+
              "after an error decompiling one of them.");
+	err.println("  -u, --dedup          "+
+		    "decompile byte identical classes only once, e.g.");
+	err.println("                       "+
+		    "if a library is copied into several jar files.");
     }
 
     public static boolean handleOption(int option, int longind, String arg) {
@@ -142,8 +187,30 @@ public class Main extends Options {
 		    ("`"+className+"' is not a class name");
 		return false;
 	    }
-	    if (skipClass(clazz))
+	    long fingerprint = -1;
+	    if (decompiled != null) {
+		fingerprint = classPath.getClassFingerprint(className);
+		Decompiled done = (Decompiled) decompiled.get(className);
+		if (done != null && fingerprint != -1
+		    && done.fingerprint == fingerprint) {
+		    /* The source file of this class was already written,
+		     * only standard output needs it again.
+		     */
+		    GlobalOptions.err.println(className+" (identical)");
+		    if (done.source != null) {
+			writer.flush();
+			System.out.write(done.source, 0, done.source.length);
+			System.out.flush();
+		    }
+		    reusedClasses++;
+		    return true;
+		}
+	    }
+	    if (skipClass(clazz)) {
+		if (fingerprint != -1)
+		    decompiled.put(className, new Decompiled(fingerprint, null));
 		return true;
+	    }
 	    
 	    String filename = 
 		className.replace('.', File.separatorChar)+".java";
@@ -165,8 +232,19 @@ public class Main extends Options {
 	    
 	    GlobalOptions.err.println(className);
 		
+	    if (sourceCopy != null)
+		sourceCopy.reset();
 	    ClassAnalyzer clazzAna = new ClassAnalyzer(clazz, imports);
 	    clazzAna.dumpJavaFile(writer);
+
+	    if (fingerprint != -1) {
+		byte[] source = null;
+		if (sourceCopy != null) {
+		    writer.flush();
+		    source = sourceCopy.toByteArray();
+		}
+		decompiled.put(className, new Decompiled(fingerprint, source));
+	    }
 	    
 	    if (destZip != null) {
 		    writer.flush();
@@ -241,7 +319,14 @@ public class Main extends Options {
 	    classPathStr = classPathStr + ClassPath.altPathSeparatorChar
 		+ bootClassPath.replace(File.pathSeparatorChar, 
 					ClassPath.altPathSeparatorChar);
+	else
+	    /* Since Java 9 the system classes are in the runtime image. */
+	    classPathStr = classPathStr + ClassPath.altPathSeparatorChar
+		+ "jrt:/";
 	String destDir = null;
+	ClassPathIndex classPathIndex = null;
+	int prefetchThreads = 0;
+	int classFileCacheSize = 0;
 
 	int importPackageLimit = ImportHandler.DEFAULT_PACKAGE_LIMIT;
         int importClassLimit = ImportHandler.DEFAULT_CLASS_LIMIT;;
@@ -249,11 +334,12 @@ public class Main extends Options {
 	int indentSize = 4;
         int outputLineLength = 79;
 	boolean keepGoing = false;
+	boolean dedup = false;
 
 	GlobalOptions.err.println(GlobalOptions.copyright);
 
 	boolean errorInParams = false;
-	Getopt g = new Getopt("net.sf.jode.decompiler.Main", params, "hVvkc:d:D:i:s:l:",
+	Getopt g = new Getopt("net.sf.jode.decompiler.Main", params, "hVvkuc:C:P:F:d:D:i:s:l:",
 			      longOptions, true);
 	for (int opt = g.getopt(); opt != -1; opt = g.getopt()) {
 	    switch(opt) {
@@ -269,12 +355,48 @@ public class Main extends Options {
 	    case 'c':
 		classPathStr = g.getOptarg();
 		break;
+	    case 'C':
+		classPathIndex = new ClassPathIndex(new File(g.getOptarg()));
+		break;
+	    case 'P': {
+		String arg = g.getOptarg();
+		try {
+		    prefetchThreads = Integer.parseInt(arg);
+		    if (prefetchThreads < 0)
+			throw new NumberFormatException();
+		} catch (NumberFormatException ex) {
+		    GlobalOptions.err.println
+			("net.sf.jode.decompiler.Main: Argument `"
+			 +arg+"' to --prefetch must be a number.");
+		    errorInParams = true;
+		}
+		break;
+	    }
+	    case 'F': {
+		String arg = g.getOptarg();
+		try {
+		    classFileCacheSize = Integer.parseInt(arg);
+		    if (classFileCacheSize < 0
+			|| classFileCacheSize > Integer.MAX_VALUE / 1024)
+			throw new NumberFormatException();
+		    classFileCacheSize *= 1024;
+		} catch (NumberFormatException ex) {
+		    GlobalOptions.err.println
+			("net.sf.jode.decompiler.Main: Argument `"
+			 +arg+"' to --file-cache must be a number.");
+		    errorInParams = true;
+		}
+		break;
+	    }
 	    case 'd':
 		destDir = g.getOptarg();
 		break;
 	    case 'k':
 		keepGoing = true;
 		break;
+	    case 'u':
+		dedup = true;
+		break;
 	    case 'v': {
 		String arg = g.getOptarg();
 		if (arg == null)
@@ -369,16 +491,44 @@ public class Main extends Options {
 	}
 	if (errorInParams)
 	    return;
-	classPath = new ClassPath(classPathStr);
+	classPath = new ClassPath(classPathStr, null, classPathIndex);
+	classPath.setPrefetchThreads(prefetchThreads);
+	classPath.setClassFileCacheSize(classFileCacheSize);
+	int fileCacheHits = 0;
+	int fileCacheMisses = 0;
+	int fileCacheEvictions = 0;
 	ImportHandler imports = new ImportHandler(classPath,
 						  importPackageLimit,
 						  importClassLimit);
 
+	decompiled = dedup ? new Hashtable() : null;
+	sourceCopy = null;
+	reusedClasses = 0;
+
 	ZipOutputStream destZip = null;
 	TabbedPrintWriter writer = null;
-	if (destDir == null)
-	    writer = new TabbedPrintWriter(System.out, imports, true,
+	if (destDir == null) {
+	    OutputStream stdout = System.out;
+	    if (dedup) {
+		/* Keep a copy of the source of every class, in case a
+		 * byte identical class must be printed again.
+		 */
+		sourceCopy = new ByteArrayOutputStream();
+		stdout = new FilterOutputStream(System.out) {
+		    public void write(int b) throws IOException {
+			out.write(b);
+			sourceCopy.write(b);
+		    }
+		    public void write(byte[] b, int off, int len)
+			throws IOException {
+			out.write(b, off, len);
+			sourceCopy.write(b, off, len);
+		    }
+		};
+	    }
+	    writer = new TabbedPrintWriter(stdout, imports, true,
 					   outputStyle, indentSize, 0, outputLineLength);
+	}
 	else if (destDir.toLowerCase().endsWith(".zip")
 		 || destDir.toLowerCase().endsWith(".jar")) {
 	    try {
@@ -400,7 +550,9 @@ public class Main extends Options {
 		     * Lets do him a pleasure and allow this.
 		     */
 		    ClassPath zipClassPath
-			= new ClassPath(params[i], classPath);
+			= new ClassPath(params[i], classPath, classPathIndex);
+		    zipClassPath.setPrefetchThreads(prefetchThreads);
+		    zipClassPath.setClassFileCacheSize(classFileCacheSize);
 		    Enumeration enumeration = new ZipFile(params[i]).entries();
 		    while (enumeration.hasMoreElements()) {
 			String entry
@@ -416,6 +568,11 @@ public class Main extends Options {
 				break;
 			}
 		    }
+		    zipClassPath.setPrefetchThreads(0);
+		    fileCacheHits += zipClassPath.getClassFileCacheHits();
+		    fileCacheMisses += zipClassPath.getClassFileCacheMisses();
+		    fileCacheEvictions
+			+= zipClassPath.getClassFileCacheEvictions();
 		} else {
 		    if (!decompileClass(params[i], classPath, 
 					classPathStr,
@@ -438,5 +595,21 @@ public class Main extends Options {
 		ex.printStackTrace(GlobalOptions.err);
 	    }
 	}
+	if (GlobalOptions.verboseLevel > 0)
+	    GlobalOptions.err.println
+		("Class path lookup cache: "+classPath.getCacheHits()
+		 +" hits, "+classPath.getCacheMisses()+" misses.");
+	if (classFileCacheSize > 0 && GlobalOptions.verboseLevel > 0) {
+	    fileCacheHits += classPath.getClassFileCacheHits();
+	    fileCacheMisses += classPath.getClassFileCacheMisses();
+	    fileCacheEvictions += classPath.getClassFileCacheEvictions();
+	    GlobalOptions.err.println
+		("Class file cache: "+fileCacheHits+" hits, "
+		 +fileCacheMisses+" misses, "+fileCacheEvictions
+		 +" evictions.");
+	}
+	if (dedup && GlobalOptions.verboseLevel > 0)
+	    GlobalOptions.err.println
+		("Reused "+reusedClasses+" byte identical classes.");
     }
 }
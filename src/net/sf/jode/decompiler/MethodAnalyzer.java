@@ -195,8 +195,7 @@ public class MethodAnalyzer implements Scope, ClassDeclarer {
         this.isConstructor = 
             methodName.equals("<init>") || methodName.equals("<clinit>");
         
-	if (minfo.getBasicBlocks() != null)
-	    bb = minfo.getBasicBlocks();
+	bb = minfo.getReadOnlyBasicBlocks();
 	
         String[] excattr = minfo.getExceptions();
         if (excattr == null) {
@@ -164,6 +164,11 @@ public abstract class FieldOperator extends Operator {
     }
     
     public FieldInfo getFieldInfo() {
+	try {
+	    return classPath.getResolver().resolveField(ref);
+	} catch (IOException ex) {
+	    /* A class is missing; search the known classes. */
+	}
 	ClassInfo clazz;
 	if (ref.getClazz().charAt(0) == '[')
 	    clazz = classPath.getClassInfo("java.lang.Object");
@@ -229,6 +229,11 @@ public final class InvokeOperator extends Operator
     }
     
     public MethodInfo getMethodInfo() {
+	try {
+	    return classPath.getResolver().resolveMethod(ref);
+	} catch (IOException ex) {
+	    /* A class is missing; search again and guess it. */
+	}
 	ClassInfo clazz;
 	if (ref.getClazz().charAt(0) == '[')
 	    clazz = classPath.getClassInfo("java.lang.Object");
@@ -473,7 +478,7 @@ public final class InvokeOperator extends Operator
 	    if (cls == null && ref.getClazz().equals(classSig)) {
 		BasicBlocks bb = classInfo
 		    .findMethod(ref.getName(), ref.getType())
-		    .getBasicBlocks();
+		    .getReadOnlyBasicBlocks();
 		if (bb != null)
 		    return interpreter.interpretMethod(bb, null, params); 
 		throw new InterpreterException
@@ -855,7 +860,7 @@ public final class InvokeOperator extends Operator
 		ClassInfo[] interfaces = clazz.getInterfaces();
 		if (interfaces.length == 1
 		    && (superClazz == null
-			|| superClazz.getName() == "java.lang.Object")) {
+			|| superClazz.getName().equals("java.lang.Object"))) {
 		    clazz = interfaces[0];
 		} else {
 		    clazz = superClazz;
@@ -972,7 +977,7 @@ public final class InvokeOperator extends Operator
 		    ClassInfo superClazz = clazz.getSuperclass();
 		    ClassInfo[] interfaces = clazz.getInterfaces();
 		    if (interfaces.length == 1
-			&& superClazz.getName() == "java.lang.Object") {
+			&& superClazz.getName().equals("java.lang.Object")) {
 			clazz = interfaces[0];
 		    } else {
 			if (interfaces.length > 0) {
@@ -204,7 +204,7 @@ public class CodeVerifier implements Opcodes {
 
 		ClassInfo wantedType = destType.classInfo;
 		if (wantedType == null
-		    || wantedType.getName() == "java.lang.Object")
+		    || wantedType.getName().equals("java.lang.Object"))
 		    return true;
 
 		try {
@@ -319,12 +319,22 @@ public class CodeVerifier implements Opcodes {
 		/* Now the complete hierarchy of clazz1 and 
 		 * clazz2 is loaded */
 		try {
-		    do {
-			clazz1 = clazz1.getSuperclass();
-		    } while (!clazz1.superClassOf(clazz2));
+		    clazz1 = clazz1.getCommonSuperclass(clazz2);
 		} catch (IOException ex) {
 		    throw new InternalError("Hierarchy vanished?");
 		}
+		if (clazz1 == null) {
+		    /* The classes have no common root class, so
+		     * java.lang.Object is the best we know.
+		     */
+		    if (dimensions == 0)
+			return cv.tObject;
+		    StringBuffer result = new StringBuffer(dimensions + 18);
+		    for (int i=0; i< dimensions; i++)
+			result.append("[");
+		    result.append("Ljava/lang/Object;");
+		    return cv.tType(result.toString());
+		}
 		StringBuffer result = new StringBuffer
 		    (dimensions + clazz1.getName().length() + 2);
 		for (int i=0; i< dimensions; i++)
@@ -63,7 +63,7 @@ public class SyntheticAnalyzer implements Opcodes {
 			     boolean checkName) {
 	this.classInfo = classInfo;
 	this.method = method;
-	if (method.getBasicBlocks() == null)
+	if (method.getReadOnlyBasicBlocks() == null)
 	    return;
 	if (!checkName || method.getName().equals("class$"))
 	    if (checkGetClass())
@@ -104,7 +104,7 @@ public class SyntheticAnalyzer implements Opcodes {
 		 .equals("(Ljava/lang/String;)Ljava/lang/Class;")))
 	    return false;
 	
-	BasicBlocks bb = method.getBasicBlocks();
+	BasicBlocks bb = method.getReadOnlyBasicBlocks();
 
 	Block startBlock = bb.getStartBlock();
 	Handler[] excHandlers = bb.getExceptionHandlers();
@@ -179,7 +179,7 @@ public class SyntheticAnalyzer implements Opcodes {
      * that types of parameters are okay.  
      */
     private boolean checkAccess() {
-	BasicBlocks bb = method.getBasicBlocks();
+	BasicBlocks bb = method.getReadOnlyBasicBlocks();
 	Handler[] excHandlers = bb.getExceptionHandlers();
 	if (excHandlers != null && excHandlers.length != 0)
 	    return false;
@@ -334,7 +334,7 @@ public class SyntheticAnalyzer implements Opcodes {
     }
 
     private boolean checkConstructorAccess() {
-	BasicBlocks bb = method.getBasicBlocks();
+	BasicBlocks bb = method.getReadOnlyBasicBlocks();
 	String[] paramTypes
 	    = TypeSignature.getParameterTypes(method.getType());
 	Handler[] excHandlers = bb.getExceptionHandlers();
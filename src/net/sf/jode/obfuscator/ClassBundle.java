@@ -20,6 +20,7 @@
 package net.sf.jode.obfuscator;
 import net.sf.jode.GlobalOptions;
 import net.sf.jode.bytecode.ClassPath;
+import net.sf.jode.bytecode.ClassPathIndex;
 import net.sf.jode.bytecode.Reference;
 import net.sf.jode.obfuscator.modules.WildCard;
 import net.sf.jode.obfuscator.modules.MultiIdentifierMatcher;
@@ -52,10 +53,21 @@ public class ClassBundle implements OptionHandler {
     Set toAnalyze = new HashSet();
 
     ClassPath classPath;
+    String classPathStr;
+    ClassPathIndex classPathIndex;
+    /**
+     * The size of the class file cache in bytes.
+     */
+    int classFileCacheSize = 0;
     String destDir;
 
     String tableFile;
     String toTableFile;
+    /**
+     * The version of the written class files.
+     */
+    int majorVersion = 45;
+    int minorVersion = 3;
 
     IdentifierMatcher loading;
     IdentifierMatcher preserving;
@@ -91,10 +103,61 @@ public class ClassBundle implements OptionHandler {
 		sb.append(ClassPath.altPathSeparatorChar)
 		    .append((String)i.next());
 	    }
-	    classPath = new ClassPath(sb.toString());
+	    classPathStr = sb.toString();
+	    return;
+	}
+
+	if (option.equals("classpathcache")) {
+	    if (values.size() != 1)
+		throw new IllegalArgumentException
+		    ("Only one class path cache allowed");
+	    classPathIndex = new ClassPathIndex
+		(new File((String) values.iterator().next()));
 	    return;
 	}
 	    
+	if (option.equals("filecache")) {
+	    if (values.size() != 1)
+		throw new IllegalArgumentException
+		    ("Only one file cache size allowed");
+	    String size = (String) values.iterator().next();
+	    try {
+		classFileCacheSize = Integer.parseInt(size);
+	    } catch (NumberFormatException ex) {
+		classFileCacheSize = -1;
+	    }
+	    if (classFileCacheSize < 0
+		|| classFileCacheSize > Integer.MAX_VALUE / 1024)
+		throw new IllegalArgumentException
+		    ("Invalid file cache size "+size);
+	    classFileCacheSize *= 1024;
+	    return;
+	}
+
+	if (option.equals("version")) {
+	    if (values.size() != 1)
+		throw new IllegalArgumentException
+		    ("Only one class version allowed");
+	    String version = (String) values.iterator().next();
+	    int dot = version.indexOf('.');
+	    try {
+		if (dot >= 0) {
+		    majorVersion = Integer.parseInt(version.substring(0, dot));
+		    minorVersion = Integer.parseInt(version.substring(dot+1));
+		} else {
+		    majorVersion = Integer.parseInt(version);
+		    minorVersion = 0;
+		}
+	    } catch (NumberFormatException ex) {
+		throw new IllegalArgumentException
+		    ("Illegal class version: `"+version+"'");
+	    }
+	    if (majorVersion < 45 || minorVersion < 0)
+		throw new IllegalArgumentException
+		    ("Illegal class version: `"+version+"'");
+	    return;
+	}
+
 	if (option.equals("dest")) {
 	    if (values.size() != 1)
 		throw new IllegalArgumentException
@@ -260,8 +323,8 @@ public class ClassBundle implements OptionHandler {
 		    (typeSig.substring(nextindex+1, index).replace('/','.'));
 		newSig.append(typeAlias.replace('.', '/'));
 	    }
-	    alias = newSig.append(typeSig.substring(index))
-		.toString().intern();
+	    alias = classPath.getSymbolTable().intern
+		(newSig.append(typeSig.substring(index)).toString());
 	    aliasesHash.put(typeSig, alias);
 	}
 	return alias;
@@ -409,12 +472,12 @@ public class ClassBundle implements OptionHandler {
     }
 
     public void run() {
-	if (classPath == null) {
-	    String cp = System.getProperty("java.class.path")
+	if (classPathStr == null)
+	    classPathStr = System.getProperty("java.class.path")
 		.replace(File.pathSeparatorChar, 
 			 ClassPath.altPathSeparatorChar);
-	    classPath = new ClassPath(cp);
-	}
+	classPath = new ClassPath(classPathStr, null, classPathIndex);
+	classPath.setClassFileCacheSize(classFileCacheSize);
 
 	if (analyzer == null)
 	    analyzer = new SimpleAnalyzer();
@@ -488,5 +551,11 @@ public class ClassBundle implements OptionHandler {
 	time = System.currentTimeMillis();
         storeClasses();
 	System.err.println("Time used: "+(System.currentTimeMillis() - time));
+
+	if (classFileCacheSize > 0 && GlobalOptions.verboseLevel > 0)
+	    GlobalOptions.err.println
+		("Class file cache: "+classPath.getClassFileCacheHits()
+		 +" hits, "+classPath.getClassFileCacheMisses()+" misses, "
+		 +classPath.getClassFileCacheEvictions()+" evictions.");
     }
 }
@@ -302,8 +302,8 @@ public class ClassIdentifier extends Identifier {
 		superident.addSubClass(this);
 	    } else {
 		// all virtual methods in superclass are reachable now!
-		String clazzType = ("L"+superclass.getName().replace('.', '/')
-				    +";").intern();
+		String clazzType = superclass.getClassPath().getSymbolTable()
+		    .intern("L"+superclass.getName().replace('.', '/')+";");
 		MethodInfo[] topmethods = superclass.getMethods();
 		for (int i=0; i< topmethods.length; i++) {
 		    int modif = topmethods[i].getModifiers();
@@ -392,8 +392,20 @@ public class ClassIdentifier extends Identifier {
 	    return;
 	initialized = true;
 
+	/* Don't read the debugging information that is stripped. */
+	int attributes = ClassInfo.ATTR_ALL;
+	if ((Main.stripping & Main.STRIP_LVT) != 0)
+	    attributes &= ~ClassInfo.ATTR_LVT;
+	if ((Main.stripping & Main.STRIP_LNT) != 0)
+	    attributes &= ~ClassInfo.ATTR_LNT;
+	if (attributes != ClassInfo.ATTR_ALL)
+	    /* The class may already be loaded with the debugging
+	     * information, e.g. by a transformer.  Drop it, so that
+	     * it is read again without the stripped tables.
+	     */
+	    info.drop(ClassInfo.NODEBUG);
 	try {
-	    info.load(ClassInfo.ALL);
+	    info.load(ClassInfo.ALL, attributes);
 	} catch (IOException ex) {
 	    throw new RuntimeException("Can't read class " + info.getName()
 				       + ": " + ex.getMessage());
@@ -580,9 +592,37 @@ public class ClassIdentifier extends Identifier {
 			(new MethodInfo[newMethods.size()]));
     }
     
-    public void storeClass(DataOutputStream out) throws IOException {
+    /**
+     * Checks if one of the methods uses subroutines (jsr/ret).  They
+     * aren't allowed in class version 51 and later.
+     */
+    private boolean hasSubroutines() {
+	MethodInfo[] methods = info.getMethods();
+	for (int i = 0; i < methods.length; i++) {
+	    BasicBlocks bb = methods[i].getReadOnlyBasicBlocks();
+	    if (bb != null && bb.hasSubroutines())
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * Writes the class file of this class.  It is given to the
+     * stream in a single write.
+     */
+    public void storeClass(OutputStream out) throws IOException {
 	if (GlobalOptions.verboseLevel > 0)
 	    GlobalOptions.err.println("Writing "+this);
+	ClassBundle bundle = Main.getClassBundle();
+	int major = bundle.majorVersion;
+	int minor = bundle.minorVersion;
+	if (major >= 51 && hasSubroutines()) {
+	    GlobalOptions.err.println("WARNING: " + this + " uses jsr,"
+				      + " writing it with version 50.0");
+	    major = 50;
+	    minor = 0;
+	}
+	info.setClassVersion(major, minor);
 	info.write(out);
 	info = null;
 	fieldIdents = methodIdents = null;
@@ -755,6 +795,14 @@ public class ClassIdentifier extends Identifier {
 		if (superident.containsMethodAliasDirectly
 		    (newAlias, paramType, packMatcher))
 		    return true;
+	    } else if (paramType.length() == method.getType().length()) {
+		/* With strong overloading only the same type conflicts,
+		 * so we can look the method up.
+		 */
+		MethodInfo minfo = superInfo.findMethod(newAlias, paramType);
+		if (minfo != null
+		    && packMatcher.matches(minfo.getModifiers()))
+		    return true;
 	    } else {
 		MethodInfo[] minfos = superInfo.getMethods();
 		for (int i=0; i< minfos.length; i++) {
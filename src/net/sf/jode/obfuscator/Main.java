@@ -42,6 +42,8 @@ public class Main {
 	new LongOpt("cp", LongOpt.REQUIRED_ARGUMENT, null, 'c'),
 	new LongOpt("classpath", LongOpt.REQUIRED_ARGUMENT, null, 'c'),
 	new LongOpt("destpath", LongOpt.REQUIRED_ARGUMENT, null, 'd'),
+	new LongOpt("cache", LongOpt.REQUIRED_ARGUMENT, null, 'C'),
+	new LongOpt("file-cache", LongOpt.REQUIRED_ARGUMENT, null, 'F'),
 	new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h'),
 	new LongOpt("version", LongOpt.NO_ARGUMENT, null, 'V'),
 	new LongOpt("verbose", LongOpt.OPTIONAL_ARGUMENT, null, 'v'),
@@ -73,6 +75,10 @@ public class Main {
 		    "search for classes in specified classpath.");
 	err.println("                       "+
 		    "The directories should be separated by ','.");
+	err.println("  -C, --cache <file>   "+
+		    "cache the listing of the classpath in file.");
+	err.println("  -F, --file-cache <kb> "+
+		    "keep up to kb kilobytes of read class files in memory.");
 	err.println("  -d, --dest <dir>     "+
 		    "write decompiled files to disk into directory destdir.");
 	err.println("  -D, --debug=...      "+
@@ -89,12 +95,12 @@ public class Main {
 	    usage();
 	    return;
 	}
-	String cp = null, dest = null;
+	String cp = null, cache = null, dest = null, fileCache = null;
         
 	GlobalOptions.err.println(GlobalOptions.copyright);
 	bundle = new ClassBundle();
 	boolean errorInParams = false;
-	Getopt g = new Getopt("net.sf.jode.obfuscator.Main", params, "hVvc:d:D:",
+	Getopt g = new Getopt("net.sf.jode.obfuscator.Main", params, "hVvc:C:F:d:D:",
 			      longOptions, true);
 	for (int opt = g.getopt(); opt != -1; opt = g.getopt()) {
 	    switch(opt) {
@@ -110,6 +116,12 @@ public class Main {
 	    case 'c':
 		cp = g.getOptarg();
 		break;
+	    case 'C':
+		cache = g.getOptarg();
+		break;
+	    case 'F':
+		fileCache = g.getOptarg();
+		break;
 	    case 'd':
 		dest = g.getOptarg();
 		break;
@@ -173,6 +185,10 @@ public class Main {
 	// Command Line overwrites script options:
 	if (cp != null)
 	    bundle.setOption("classpath", Collections.singleton(cp));
+	if (cache != null)
+	    bundle.setOption("classpathcache", Collections.singleton(cache));
+	if (fileCache != null)
+	    bundle.setOption("filecache", Collections.singleton(fileCache));
 	if (dest != null)
 	    bundle.setOption("dest", Collections.singleton(dest));
 
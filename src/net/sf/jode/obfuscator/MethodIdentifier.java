@@ -27,6 +27,7 @@ import java.util.Iterator;
 ///#enddef
 
 import java.util.BitSet;
+import java.lang.reflect.Modifier;
 
 public class MethodIdentifier extends Identifier implements Opcodes {
     ClassIdentifier clazz;
@@ -49,31 +50,27 @@ public class MethodIdentifier extends Identifier implements Opcodes {
 	this.clazz = clazz;
 	this.info  = info;
 
+	if ((info.getModifiers() & (Modifier.ABSTRACT | Modifier.NATIVE)) != 0)
+	    return;
+	codeAnalyzer = Main.getClassBundle().getCodeAnalyzer();
+
+	/* Only decode the code now, if it must be changed.  Otherwise
+	 * it is decoded when the method is analyzed, so that the code
+	 * of unreachable methods is never decoded.
+	 */
+	CodeTransformer[] trafos
+	    = Main.getClassBundle().getPreTransformers();
+	if (trafos.length == 0)
+	    return;
 	BasicBlocks bb = info.getBasicBlocks();
 	if (bb != null) {
-	    if ((Main.stripping &
-		 (Main.STRIP_LVT | Main.STRIP_LNT)) != 0) {
-		Block[] blocks = bb.getBlocks();
-		for (int i = 0; i < blocks.length; i++) {
-		    Instruction[] instrs = blocks[i].getInstructions();
-		    for (int j = 0; j < instrs.length; j++) {
-			if ((Main.stripping & Main.STRIP_LVT) != 0
-			    && instrs[j].hasLocal())
-			    instrs[j].setLocalInfo
-				(LocalVariableInfo
-				 .getInfo(instrs[j].getLocalSlot()));
-			if ((Main.stripping & Main.STRIP_LNT) != 0)
-			    instrs[j].setLineNr(-1);
-		    }
-		}
-	    }
-	    codeAnalyzer = Main.getClassBundle().getCodeAnalyzer();
-
-	    CodeTransformer[] trafos
-		= Main.getClassBundle().getPreTransformers();
 	    for (int i = 0; i < trafos.length; i++) {
 		trafos[i].transformCode(bb);
 	    }
+	    /* The code is kept until the method is analyzed or
+	     * stripped, so keep it in compact form meanwhile.
+	     */
+	    bb.compact();
 	}
     }
 
@@ -176,8 +173,8 @@ public class MethodIdentifier extends Identifier implements Opcodes {
 	info.setName(getAlias());
 	ClassBundle bundle = Main.getClassBundle();
 	info.setType(bundle.getTypeAlias(type));
-	if (codeAnalyzer != null) {
-	    BasicBlocks bb = info.getBasicBlocks();
+	BasicBlocks bb = codeAnalyzer != null ? info.getBasicBlocks() : null;
+	if (bb != null) {
 	    try {
 		codeAnalyzer.transformCode(bb);
 		CodeTransformer[] trafos = bundle.getPostTransformers();
@@ -58,6 +58,10 @@ public class PackageIdentifier extends Identifier {
 	this.loadedClasses = new HashMap();
     }
 
+    private String intern(String s) {
+	return bundle.getClassPath().getSymbolTable().intern(s);
+    }
+
     /**
      * Marks the parent package as preserved, too.
      */
@@ -78,10 +82,10 @@ public class PackageIdentifier extends Identifier {
 	    Enumeration enumeration = 
 		bundle.getClassPath().listClassesAndPackages(getFullName());
 	    while (enumeration.hasMoreElements()) {
-		String subclazz = ((String)enumeration.nextElement()).intern();
+		String subclazz = intern((String)enumeration.nextElement());
 		if (loadedClasses.containsKey(subclazz))
 		    continue;
-		String subFull = (fullNamePrefix + subclazz).intern();
+		String subFull = intern(fullNamePrefix + subclazz);
 		
 		if (bundle.getClassPath().isPackage(subFull)) {
 		    PackageIdentifier ident = new PackageIdentifier
@@ -112,10 +116,10 @@ public class PackageIdentifier extends Identifier {
 	if (component != null) {
 	    Identifier ident = (Identifier) loadedClasses.get(component);
 	    if (ident == null) {
-		component = component.intern();
+		component = intern(component);
 		String subFull = (fullName.length() > 0)
 		    ? fullName + "."+ component : component;
-		subFull = subFull.intern();
+		subFull = intern(subFull);
 		if (bundle.getClassPath().isPackage(subFull)) {
 		    ident = new PackageIdentifier(bundle, this, 
 						  subFull, component);
@@ -161,10 +165,10 @@ public class PackageIdentifier extends Identifier {
 	    Enumeration enumeration = 
 		bundle.getClassPath().listClassesAndPackages(getFullName());
 	    while (enumeration.hasMoreElements()) {
-		String subclazz = ((String)enumeration.nextElement()).intern();
+		String subclazz = intern((String)enumeration.nextElement());
 		if (loadedClasses.containsKey(subclazz))
 		    continue;
-		String subFull = (fullNamePrefix + subclazz).intern();
+		String subFull = intern(fullNamePrefix + subclazz);
 		
 		if (matcher.matchesSub(this, subclazz)) {
 		    if (bundle.getClassPath().isPackage(subFull)) {
@@ -248,7 +252,7 @@ public class PackageIdentifier extends Identifier {
 	    if (ident == null) {
 		String subFull = 
 		   (fullName.length() > 0) ? fullName + "."+ name : name;
-		subFull = subFull.intern();
+		subFull = intern(subFull);
 		if (bundle.getClassPath().isPackage(subFull)) {
 		    PackageIdentifier pack
 			= new PackageIdentifier(bundle, this, subFull, name);
@@ -278,7 +282,7 @@ public class PackageIdentifier extends Identifier {
 	    if (pack == null) {
 		String subFull = (fullName.length() > 0)
 		    ? fullName + "."+ subpack : subpack;
-		subFull = subFull.intern();
+		subFull = intern(subFull);
 		if (bundle.getClassPath().isPackage(subFull)) {
 		    pack = new PackageIdentifier(bundle, this, 
 						 subFull, subpack);
@@ -409,10 +413,7 @@ public class PackageIdentifier extends Identifier {
 		    String filename = ident.getFullAlias().replace('.','/')
 			+ ".class";
 		    zip.putNextEntry(new ZipEntry(filename));
-		    DataOutputStream out = new DataOutputStream
-			(new BufferedOutputStream(zip));
-		    ((ClassIdentifier) ident).storeClass(out);
-		    out.flush();
+		    ((ClassIdentifier) ident).storeClass(zip);
 		    zip.closeEntry();
 		} catch (java.io.IOException ex) {
 		    GlobalOptions.err.println("Can't write Class "
@@ -452,9 +453,7 @@ public class PackageIdentifier extends Identifier {
 // 			     +file.getPath()+".  Remove it first.");
 // 			return;
 // 		    }
-		    DataOutputStream out = new DataOutputStream
-			(new BufferedOutputStream
-			 (new FileOutputStream(file)));
+		    OutputStream out = new FileOutputStream(file);
 		    ((ClassIdentifier) ident).storeClass(out);
 		    out.close();
 		} catch (java.io.IOException ex) {
@@ -38,21 +38,6 @@ import java.util.ArrayList;
 
 public class SimpleAnalyzer implements CodeAnalyzer, Opcodes {
 
-    private ClassInfo canonizeIfaceRef(ClassInfo clazz, Reference ref) {
-	while (clazz != null) {
-	    if (clazz.findMethod(ref.getName(), ref.getType()) != null)
-		return clazz;
-	    ClassInfo[] ifaces = clazz.getInterfaces();
-	    for (int i = 0; i < ifaces.length; i++) {
-		ClassInfo realClass = canonizeIfaceRef(ifaces[i], ref);
-		if (realClass != null)
-		    return realClass;
-	    }
-	    clazz = clazz.getSuperclass();
-	}
-	return null;
-    }
-
     protected Identifier canonizeReference(Instruction instr) {
 	Reference ref = instr.getReference();
 	Identifier ident = Main.getClassBundle().getIdentifier(ref);
@@ -65,37 +50,17 @@ public class SimpleAnalyzer implements CodeAnalyzer, Opcodes {
 				   .replace('.', '/')) + ";";
 	} else {
 	    /* We have to look at the ClassInfo's instead, to
-	     * point to the right method.
+	     * point to the right method.  Arrays don't define new
+	     * methods (well clone(), but that can be ignored), so
+	     * the resolver searches java.lang.Object for them.
 	     */
 	    ClassInfo clazz;
-	    if (clName.charAt(0) == '[') {
-		/* Arrays don't define new methods (well clone(),
-		 * but that can be ignored).
-		 */
-		clazz = classPath.getClassInfo("java.lang.Object");
-	    } else {
-		clazz = classPath.getClassInfo
-		    (clName.substring(1, clName.length()-1)
-		     .replace('/','.'));
-	    }
 	    try {
-		clazz.load(ClassInfo.DECLARATIONS);
+		clazz = classPath.getResolver().getDeclaringClass
+		    (ref, instr.getOpcode() < opc_invokevirtual);
 	    } catch (IOException ex) {
-		throw new RuntimeException("Can't get declarations of "
-					   + clazz);
-	    }
-	    if (instr.getOpcode() == opc_invokeinterface) {
-		clazz = canonizeIfaceRef(clazz, ref);
-	    } else if (instr.getOpcode() >= opc_invokevirtual) {
-		while (clazz != null
-		       && clazz.findMethod(ref.getName(), 
-					   ref.getType()) == null)
-		    clazz = clazz.getSuperclass();
-	    } else {
-		while (clazz != null
-		       && clazz.findField(ref.getName(), 
-					  ref.getType()) == null)
-		    clazz = clazz.getSuperclass();
+		throw new RuntimeException("Can't get declarations for "
+					   + ref);
 	    }
 
 	    if (clazz == null) {
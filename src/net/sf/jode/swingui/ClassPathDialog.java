@@ -18,6 +18,7 @@
  */
 
 package net.sf.jode.swingui;
+import net.sf.jode.GlobalOptions;
 import net.sf.jode.bytecode.ClassPath;
 
 ///#def JAVAX_SWING javax.swing
@@ -31,6 +32,7 @@ import java.awt.BorderLayout;
 import java.awt.event.*;
 import java.awt.AWTEventMulticaster;
 import java.io.File;
+import java.io.IOException;
 
 public class ClassPathDialog {
     JDialog dialog;
@@ -85,7 +87,21 @@ public class ClassPathDialog {
     private void createNewClassPath() {
 	String[] paths = new String[pathListModel.getSize()];
 	pathListModel.copyInto(paths);
+	if (currentClassPath != null) {
+	    try {
+		currentClassPath.setWatchFiles(false);
+	    } catch (IOException ex) {
+		/* stopping never fails */
+	    }
+	}
 	currentClassPath = new ClassPath(paths, reflectClassPath);
+	try {
+	    /* Pick up class files that are rebuilt while we browse. */
+	    currentClassPath.setWatchFiles(true);
+	} catch (IOException ex) {
+	    GlobalOptions.err.println
+		("Warning: Can't watch class path for changes: "+ex);
+	}
 	if (actionListener != null)
 	    actionListener.actionPerformed
 		(new ActionEvent(this, ActionEvent.ACTION_PERFORMED, null));
@@ -429,6 +429,10 @@ public class Main
 	    cp += Decompiler.altPathSeparatorChar
 		+ bootClassPath.replace(File.pathSeparatorChar, 
 					Decompiler.altPathSeparatorChar);
+	else
+	    /* Since Java 9 the system classes are in the runtime image. */
+	    cp += Decompiler.altPathSeparatorChar + "jrt:/";
+	String fileCache = null;
 	int i;
 	for (i = 0; i < params.length; i++) {
 	    if (params[i].equals("--classpath")
@@ -439,6 +443,9 @@ public class Main
 		     || params[i].equals("--D")) {
 		String arg = params[++i];
 		GlobalOptions.setDebugging(arg);
+	    } else if (params[i].equals("--file-cache")
+		       || params[i].equals("-F")) {
+		fileCache = params[++i];
 	    } else if (params[i].startsWith("-")) {
 		if (!params[i].equals("--help")
 		    && !params[i].equals("-h"))
@@ -454,6 +461,15 @@ public class Main
 	for (i = 0; i< splitcp.length; i++)
 	    splitcp[i] = st.nextToken();
 	Main win = new Main(splitcp);
+	if (fileCache != null) {
+	    try {
+		win.decompiler.setOption("filecache", fileCache);
+	    } catch (IllegalArgumentException ex) {
+		System.err.println("Invalid file cache size: "+fileCache);
+		usage();
+		return;
+	    }
+	}
 	win.show();
     }
 }
@@ -21,10 +21,10 @@ package net.sf.jode.type;
 import net.sf.jode.GlobalOptions;
 import net.sf.jode.bytecode.ClassPath;
 import net.sf.jode.bytecode.ClassInfo;
-import net.sf.jode.util.UnifyHash;
+import net.sf.jode.util.ConcurrentUnifyHash;
 
 ///#def COLLECTIONS java.util
-import java.util.Iterator;
+import java.util.Comparator;
 ///#enddef
 
 /**
@@ -57,9 +57,45 @@ public class Type {
     public static final int TC_SYSCLASS = 108;
     public static final int TC_CLASSIFACE = 109;
 
-    private static final UnifyHash classHash = new UnifyHash();
-    private static final UnifyHash arrayHash = new UnifyHash();    
-    private static final UnifyHash methodHash = new UnifyHash();    
+    private static final ConcurrentUnifyHash classHash
+	= new ConcurrentUnifyHash();
+    private static final ConcurrentUnifyHash arrayHash
+	= new ConcurrentUnifyHash();
+    private static final ConcurrentUnifyHash methodHash
+	= new ConcurrentUnifyHash();
+    private static final ConcurrentUnifyHash rangeHash
+	= new ConcurrentUnifyHash();
+    /**
+     * Tells if two range types have the same bottom and top.  The
+     * bounds are compared by identity, since class types with the
+     * same name may come from different class paths.
+     */
+    private static final Comparator rangeComparator = new Comparator() {
+	public int compare(Object o1, Object o2) {
+	    RangeType r1 = (RangeType) o1;
+	    RangeType r2 = (RangeType) o2;
+	    return r1.bottomType == r2.bottomType
+		&& r1.topType == r2.topType ? 0 : 1;
+	}
+    };
+    /**
+     * Tells if two types that were created for the unify hashes are
+     * equal.
+     */
+    private static final Comparator unifyComparator = new Comparator() {
+	public int compare(Object o1, Object o2) {
+	    if (o1 instanceof ClassInfoType)
+		return ((ClassInfoType) o1).getClassInfo()
+		    == ((ClassInfoType) o2).getClassInfo() ? 0 : 1;
+	    if (o1 instanceof ArrayType)
+		return ((ArrayType) o1).getElementType()
+		    .equals(((ArrayType) o2).getElementType()) ? 0 : 1;
+	    MethodType m1 = (MethodType) o1;
+	    MethodType m2 = (MethodType) o2;
+	    return m1.getTypeSignature().equals(m2.getTypeSignature())
+		&& m1.getClassPath().equals(m2.getClassPath()) ? 0 : 1;
+	}
+    };
 
     /**
      * This type represents the singleton set containing the boolean type.
@@ -304,15 +340,14 @@ public class Type {
      */
     public static final ClassType tClass(ClassInfo clazzinfo) {
 	int hash = clazzinfo.hashCode();
-	Iterator iter = classHash.iterateHashCode(hash);
-	while (iter.hasNext()) {
-	    ClassInfoType type = (ClassInfoType) iter.next();
-	    if (type.getClassInfo() == clazzinfo)
+	for (ConcurrentUnifyHash.Entry e = classHash.getEntry(hash);
+	     e != null; e = e.getNext()) {
+	    ClassInfoType type = (ClassInfoType) e.get();
+	    if (type != null && type.getClassInfo() == clazzinfo)
 		return type;
 	}
-	ClassInfoType type = new ClassInfoType(clazzinfo);
-	classHash.put(hash, type);
-        return type;
+	return (ClassType) classHash.unify(new ClassInfoType(clazzinfo),
+					   hash, unifyComparator);
     }
 
     /**
@@ -326,15 +361,14 @@ public class Type {
             return type;
 
 	int hash = type.hashCode();
-	Iterator iter = arrayHash.iterateHashCode(hash);
-	while (iter.hasNext()) {
-	    ArrayType arrType = (ArrayType) iter.next();
-	    if (arrType.getElementType().equals(type))
+	for (ConcurrentUnifyHash.Entry e = arrayHash.getEntry(hash);
+	     e != null; e = e.getNext()) {
+	    ArrayType arrType = (ArrayType) e.get();
+	    if (arrType != null && arrType.getElementType().equals(type))
 		return arrType;
 	}
-	ArrayType arrType = new ArrayType(type);
-	arrayHash.put(hash, arrType);
-        return arrType;
+	return (Type) arrayHash.unify(new ArrayType(type),
+				      hash, unifyComparator);
     }
 
     /**
@@ -344,16 +378,16 @@ public class Type {
      */
     public static MethodType tMethod(ClassPath cp, String signature) {
 	int hash = signature.hashCode() + cp.hashCode();
-	Iterator iter = methodHash.iterateHashCode(hash);
-	while (iter.hasNext()) {
-	    MethodType methodType = (MethodType) iter.next();
-	    if (methodType.getTypeSignature().equals(signature)
+	for (ConcurrentUnifyHash.Entry e = methodHash.getEntry(hash);
+	     e != null; e = e.getNext()) {
+	    MethodType methodType = (MethodType) e.get();
+	    if (methodType != null
+		&& methodType.getTypeSignature().equals(signature)
 		&& methodType.getClassPath().equals(cp))
 		return methodType;
 	}
-	MethodType methodType = new MethodType(cp, signature);
-	methodHash.put(hash, methodType);
-        return methodType;
+	return (MethodType) methodHash.unify(new MethodType(cp, signature),
+					     hash, unifyComparator);
     }
 
     /**
@@ -368,7 +402,17 @@ public class Type {
      */
     public static final Type tRange(ReferenceType bottom, 
 				    ReferenceType top) {
-        return new RangeType(bottom, top);
+	int hash = System.identityHashCode(bottom) * 31
+	    + System.identityHashCode(top);
+	for (ConcurrentUnifyHash.Entry e = rangeHash.getEntry(hash);
+	     e != null; e = e.getNext()) {
+	    RangeType range = (RangeType) e.get();
+	    if (range != null
+		&& range.bottomType == bottom && range.topType == top)
+		return range;
+	}
+	return (Type) rangeHash.unify(new RangeType(bottom, top),
+				      hash, rangeComparator);
     }
      
     /**
@@ -0,0 +1,322 @@
+/* ConcurrentUnifyHash Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.util;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+///#def COLLECTIONS java.util
+import java.util.Comparator;
+///#enddef
+
+/**
+ * A table of unique objects, like {@link UnifyHash}, that can be
+ * used by several threads at once.  The objects are only weakly
+ * referenced and their entries are removed when they are collected.
+ * <br>
+ *
+ * The table is split into segments, each a chained hash table with
+ * a power of two size and its own lock.  Looking up an object
+ * doesn't lock at all: the chains are never changed, but replaced
+ * by new chains when an entry is removed.  An object is looked up
+ * by walking the entries with its hash code, which doesn't allocate
+ * anything:
+ *
+ * <pre>
+ * for (ConcurrentUnifyHash.Entry e = hash.getEntry(hashCode);
+ *      e != null; e = e.getNext()) {
+ *     Foo foo = (Foo) e.get();
+ *     if (foo != null &amp;&amp; foo.matches(...))
+ *         return foo;
+ * }
+ * return (Foo) hash.unify(new Foo(...), hashCode, fooComparator);
+ * </pre>
+ *
+ * The final unify checks again under the lock, so that two threads
+ * never add equal objects.
+ *
+ * @author Jochen Hoenicke
+ */
+public class ConcurrentUnifyHash {
+    private static final int SEGMENT_SHIFT = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_SHIFT;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * An entry of the table.  It refers weakly to its object, so
+     * {@link #get} returns null if the object was collected.
+     */
+    public static final class Entry extends WeakReference {
+	/**
+	 * The spread hash code of the object.
+	 */
+	final int hash;
+	final Entry next;
+
+	Entry(Object o, int hash, Entry next, ReferenceQueue queue) {
+	    super(o, queue);
+	    this.hash = hash;
+	    this.next = next;
+	}
+
+	/**
+	 * Gets the next entry with the same hash code.
+	 * @return the next entry, or null if there is none.
+	 */
+	public Entry getNext() {
+	    return find(next, hash);
+	}
+    }
+
+    private static final class Segment {
+	/**
+	 * The chains of entries.  The table and the chains are only
+	 * replaced while the segment is locked.
+	 */
+	volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+	/**
+	 * The number of entries, including those whose object was
+	 * collected.
+	 */
+	int count;
+	ReferenceQueue queue = new ReferenceQueue();
+
+	/**
+	 * Removes the entries whose object was collected.
+	 */
+	private void cleanUp() {
+	    Entry died;
+	    while ((died = (Entry) queue.poll()) != null)
+		removeEntry(died);
+	}
+
+	/**
+	 * Removes an entry by replacing the part of its chain before
+	 * it.  Collected entries in that part are dropped, too.
+	 */
+	private void removeEntry(Entry entry) {
+	    Entry[] tab = table;
+	    int slot = entry.hash & (tab.length - 1);
+	    Entry first = tab[slot];
+	    Entry e = first;
+	    while (e != null && e != entry)
+		e = e.next;
+	    if (e == null)
+		/* It was already dropped by a rehash or another removal.
+		 */
+		return;
+	    Entry newFirst = entry.next;
+	    for (e = first; e != entry; e = e.next) {
+		Object o = e.get();
+		if (o != null)
+		    newFirst = new Entry(o, e.hash, newFirst, queue);
+		else
+		    count--;
+	    }
+	    count--;
+	    tab[slot] = newFirst;
+	}
+
+	/**
+	 * Copies the live entries into a new table.  The table only
+	 * grows, if it is still too full without the collected ones.
+	 */
+	private void rehash() {
+	    Entry[] oldTable = table;
+	    int live = 0;
+	    for (int i = 0; i < oldTable.length; i++) {
+		for (Entry e = oldTable[i]; e != null; e = e.next) {
+		    if (e.get() != null)
+			live++;
+		}
+	    }
+	    int capacity = oldTable.length;
+	    if (live * 2 > capacity)
+		capacity *= 2;
+	    Entry[] newTable = new Entry[capacity];
+	    count = 0;
+	    for (int i = 0; i < oldTable.length; i++) {
+		for (Entry e = oldTable[i]; e != null; e = e.next) {
+		    Object o = e.get();
+		    if (o == null)
+			continue;
+		    int slot = e.hash & (capacity - 1);
+		    newTable[slot] = new Entry(o, e.hash, newTable[slot], queue);
+		    count++;
+		}
+	    }
+	    table = newTable;
+	}
+
+	private void add(Object o, int hash) {
+	    if ((count + 1) * 4 > table.length * 3)
+		rehash();
+	    Entry[] tab = table;
+	    int slot = hash & (tab.length - 1);
+	    tab[slot] = new Entry(o, hash, tab[slot], queue);
+	    count++;
+	}
+
+	synchronized Object unify(Object o, int hash, Comparator comparator) {
+	    cleanUp();
+	    Entry[] tab = table;
+	    for (Entry e = find(tab[hash & (tab.length - 1)], hash);
+		 e != null; e = e.getNext()) {
+		Object old = e.get();
+		if (old != null && comparator.compare(o, old) == 0)
+		    return old;
+	    }
+	    add(o, hash);
+	    return o;
+	}
+
+	synchronized void put(Object o, int hash) {
+	    cleanUp();
+	    add(o, hash);
+	}
+
+	synchronized Object replace(Object o, int hash, Comparator comparator) {
+	    cleanUp();
+	    Entry[] tab = table;
+	    Object old = null;
+	    for (Entry e = find(tab[hash & (tab.length - 1)], hash);
+		 e != null; e = e.getNext()) {
+		Object other = e.get();
+		if (other != null && comparator.compare(o, other) == 0) {
+		    old = other;
+		    removeEntry(e);
+		    break;
+		}
+	    }
+	    add(o, hash);
+	    return old;
+	}
+
+	synchronized boolean remove(Object o, int hash) {
+	    cleanUp();
+	    Entry[] tab = table;
+	    for (Entry e = find(tab[hash & (tab.length - 1)], hash);
+		 e != null; e = e.getNext()) {
+		if (e.get() == o) {
+		    removeEntry(e);
+		    return true;
+		}
+	    }
+	    return false;
+	}
+    }
+
+    private Segment[] segments;
+
+    /**
+     * Creates a new empty table.
+     */
+    public ConcurrentUnifyHash() {
+	segments = new Segment[SEGMENT_COUNT];
+	for (int i = 0; i < SEGMENT_COUNT; i++)
+	    segments[i] = new Segment();
+    }
+
+    /**
+     * Spreads the bits of the hash code.  The low bits select the
+     * slot, the high bits the segment.  This is a bijection, so the
+     * spread hash codes are equal if and only if the hash codes are.
+     */
+    private static int spread(int hash) {
+	hash ^= (hash >>> 20) ^ (hash >>> 12);
+	return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+    private Segment getSegment(int hash) {
+	return segments[hash >>> (32 - SEGMENT_SHIFT)];
+    }
+
+    static Entry find(Entry e, int hash) {
+	while (e != null && e.hash != hash)
+	    e = e.next;
+	return e;
+    }
+
+    /**
+     * Gets the first entry with the given hash code.  Use {@link
+     * Entry#getNext} to get the others.  This doesn't lock, so it
+     * may miss an object that another thread adds at the same time.
+     * @param hash the hash code.
+     * @return the first entry, or null if there is none.
+     */
+    public Entry getEntry(int hash) {
+	hash = spread(hash);
+	Entry[] tab = getSegment(hash).table;
+	return find(tab[hash & (tab.length - 1)], hash);
+    }
+
+    /**
+     * Returns the object in this table that equals the given object
+     * according to the comparator.  If there is none, the object is
+     * added.
+     * @param o the object.
+     * @param hash the hash code of the object.
+     * @param comparator returns 0 if the objects are equal.
+     * @return the unique object.
+     */
+    public Object unify(Object o, int hash, Comparator comparator) {
+	for (Entry e = getEntry(hash); e != null; e = e.getNext()) {
+	    Object old = e.get();
+	    if (old != null && comparator.compare(o, old) == 0)
+		return old;
+	}
+	hash = spread(hash);
+	return getSegment(hash).unify(o, hash, comparator);
+    }
+
+    /**
+     * Adds an object to this table, without checking if there is an
+     * equal one.
+     * @param hash the hash code of the object.
+     * @param o the object.
+     */
+    public void put(int hash, Object o) {
+	hash = spread(hash);
+	getSegment(hash).put(o, hash);
+    }
+
+    /**
+     * Adds an object to this table and removes the object that
+     * equals it according to the comparator, if there is one.
+     * @param o the object.
+     * @param hash the hash code of the object.
+     * @param comparator returns 0 if the objects are equal.
+     * @return the removed object, or null if there was none.
+     */
+    public Object replace(Object o, int hash, Comparator comparator) {
+	hash = spread(hash);
+	return getSegment(hash).replace(o, hash, comparator);
+    }
+
+    /**
+     * Removes an object from this table.
+     * @param hash the hash code of the object.
+     * @param o the object; it is compared by identity.
+     * @return true, if the object was in the table.
+     */
+    public boolean remove(int hash, Object o) {
+	hash = spread(hash);
+	return getSegment(hash).remove(o, hash);
+    }
+}
@@ -27,18 +27,61 @@ import java.util.Set;
 
 /**
  * This is a very simple map, using a set as backing.  
- * The default backing set is a simple set, but you can specify any other
- * set of Map.Entry in the constructor.
+ * The default backing set is a simple set, whose entries are hashed
+ * by their key when the map grows large, so the hash codes of the keys
+ * must be consistent with equals.  Keys and values may be null.  You
+ * can specify any other set of Map.Entry in the constructor.
  */
 public class SimpleMap extends AbstractMap {
     private Set backing;
+    /**
+     * The backing set, if it is the default one, otherwise null.
+     */
+    private EntrySet entries;
+
+    /**
+     * The default backing set.  Its entries are found by their key.
+     */
+    private static class EntrySet extends SimpleSet {
+	public EntrySet(int initialCapacity, int hashThreshold) {
+	    super(initialCapacity, hashThreshold);
+	}
+
+	Object getKey(Object element) {
+	    return ((Map.Entry) element).getKey();
+	}
+
+	public boolean contains(Object o) {
+	    if (!(o instanceof Map.Entry))
+		return false;
+	    int pos = indexOfKey(((Map.Entry) o).getKey());
+	    return pos >= 0 && elementObjects[pos].equals(o);
+	}
+
+	public boolean remove(Object o) {
+	    if (!contains(o))
+		return false;
+	    removeAt(indexOfKey(((Map.Entry) o).getKey()));
+	    return true;
+	}
+    }
 
     public SimpleMap() {
-	backing = new SimpleSet();
+	this(2);
     }
     
     public SimpleMap(int initialCapacity) {
-	backing = new SimpleSet(initialCapacity);
+	this(initialCapacity, SimpleSet.DEFAULT_HASH_THRESHOLD);
+    }
+
+    /**
+     * Creates a new map.
+     * @param initialCapacity the number of entries it can hold without
+     * growing.
+     * @param hashThreshold the size above which the keys are hashed.
+     */
+    public SimpleMap(int initialCapacity, int hashThreshold) {
+	backing = entries = new EntrySet(initialCapacity, hashThreshold);
     }
 
     public SimpleMap(Set fromSet) {
@@ -73,23 +116,61 @@ public class SimpleMap extends AbstractMap {
 	}
 	
 	public int hashCode() {
-	    return key.hashCode() ^ value.hashCode();
+	    return (key == null ? 0 : key.hashCode())
+		^ (value == null ? 0 : value.hashCode());
 	}
 
 	public boolean equals(Object o) {
 	    if (o instanceof Map.Entry) {
 		Map.Entry e = (Map.Entry) o;
-		return key.equals(e.getKey()) && value.equals(e.getValue());
+		return (key == null ? e.getKey() == null
+			: key.equals(e.getKey()))
+		    && (value == null ? e.getValue() == null
+			: value.equals(e.getValue()));
 	    }
 	    return false;
 	}
     }
 
+    public Object get(Object key) {
+	if (entries == null)
+	    return super.get(key);
+	int pos = entries.indexOfKey(key);
+	return pos >= 0
+	    ? ((Map.Entry) entries.elementObjects[pos]).getValue() : null;
+    }
+
+    public boolean containsKey(Object key) {
+	if (entries == null)
+	    return super.containsKey(key);
+	return entries.indexOfKey(key) >= 0;
+    }
+
+    public Object remove(Object key) {
+	if (entries == null)
+	    return super.remove(key);
+	int pos = entries.indexOfKey(key);
+	if (pos < 0)
+	    return null;
+	Object old = ((Map.Entry) entries.elementObjects[pos]).getValue();
+	entries.removeAt(pos);
+	return old;
+    }
+
     public Object put(Object key, Object value) {
+	if (entries != null) {
+	    int pos = entries.indexOfKey(key);
+	    if (pos >= 0)
+		return ((Map.Entry) entries.elementObjects[pos])
+		    .setValue(value);
+	    entries.add(new SimpleEntry(key, value));
+	    return null;
+	}
 	for (Iterator i = backing.iterator();
 	     i.hasNext(); ) {
 	    Map.Entry entry = (Map.Entry) i.next();
-	    if (key.equals(entry.getKey()))
+	    if (key == null ? entry.getKey() == null
+		: key.equals(entry.getKey()))
 		return entry.setValue(value);
 	}
 	backing.add(new SimpleEntry(key, value));
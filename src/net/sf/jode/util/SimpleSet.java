@@ -23,31 +23,146 @@ import java.util.AbstractSet;
 import java.util.Iterator;
 ///#enddef
 
+/**
+ * A set that keeps its elements in an array, in the order they were
+ * added.  Small sets, which are by far the most common, are searched
+ * linearly.  If a hash threshold is given and the set grows larger,
+ * an open addressed hash table of the element positions is built, so
+ * that sets with hundreds of elements don't make lookups quadratic.
+ * <br>
+ *
+ * Only give a hash threshold if the hash codes of the elements are
+ * consistent with equals and don't change.  This isn't the case for
+ * the local infos of the decompiler, which become equal when they
+ * are merged, so by default the set never hashes.
+ */
 public class SimpleSet extends AbstractSet implements Cloneable
 {
+    /**
+     * A good size above which the elements should be hashed, if
+     * their hash codes allow it.  Below it a linear search is faster.
+     */
+    public static final int DEFAULT_HASH_THRESHOLD = 8;
+
     Object[] elementObjects;
     int count = 0;
+    /**
+     * The size above which the elements are hashed.
+     */
+    private int hashThreshold;
+    /**
+     * The positions of the elements plus one, hashed by their keys.
+     * Zero marks an empty slot.  This is null if the set is small,
+     * or if the index must be rebuilt because an element was
+     * removed.
+     */
+    private int[] hashIndex;
 
     public SimpleSet() {
 	this(2);
     }
 
     public SimpleSet(int initialSize) {
+	this(initialSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new set.
+     * @param initialSize the number of elements it can hold without
+     * growing.
+     * @param hashThreshold the size above which the elements are
+     * hashed, e.g. {@link #DEFAULT_HASH_THRESHOLD}.
+     */
+    public SimpleSet(int initialSize, int hashThreshold) {
 	elementObjects = new Object[initialSize];
+	this.hashThreshold = hashThreshold;
+    }
+
+    /**
+     * Gets the key an element is hashed and found by.  This is the
+     * element itself; SimpleMap overrides it for its entries.
+     */
+    Object getKey(Object element) {
+	return element;
+    }
+
+    private static boolean keyEquals(Object key, Object other) {
+	return key == null ? other == null : key.equals(other);
+    }
+
+    private static int spread(Object key) {
+	int hash = key == null ? 0 : key.hashCode();
+	hash ^= (hash >>> 20) ^ (hash >>> 12);
+	return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+    private void insertIndex(int pos) {
+	int mask = hashIndex.length - 1;
+	int slot = spread(getKey(elementObjects[pos])) & mask;
+	while (hashIndex[slot] != 0)
+	    slot = (slot + 1) & mask;
+	hashIndex[slot] = pos + 1;
+    }
+
+    private void buildIndex() {
+	int capacity = 16;
+	while (capacity < count * 4)
+	    capacity *= 2;
+	hashIndex = new int[capacity];
+	for (int i = 0; i < count; i++)
+	    insertIndex(i);
+    }
+
+    /**
+     * Gets the position of the element with the given key.
+     * @param key the key, may be null for the entries of a map.
+     * @return the position, or -1 if there is no such element.
+     */
+    int indexOfKey(Object key) {
+	if (count <= hashThreshold) {
+	    for (int i = 0; i < count; i++) {
+		if (keyEquals(key, getKey(elementObjects[i])))
+		    return i;
+	    }
+	    return -1;
+	}
+	if (hashIndex == null)
+	    buildIndex();
+	int mask = hashIndex.length - 1;
+	for (int slot = spread(key) & mask; hashIndex[slot] != 0;
+	     slot = (slot + 1) & mask) {
+	    int pos = hashIndex[slot] - 1;
+	    if (keyEquals(key, getKey(elementObjects[pos])))
+		return pos;
+	}
+	return -1;
+    }
+
+    /**
+     * Removes the element at the given position.
+     */
+    void removeAt(int pos) {
+	count--;
+	System.arraycopy(elementObjects, pos + 1,
+			 elementObjects, pos, count - pos);
+	elementObjects[count] = null;
+	hashIndex = null;
     }
 
     public int size() {
 	return count;
     }
 
+    public boolean contains(Object element) {
+	return element != null && indexOfKey(getKey(element)) >= 0;
+    }
+
     public boolean add(Object element) {
 	if (element == null)
 	    throw new NullPointerException();
 
-	for (int i=0; i< count; i++) {
-	    if (element.equals(elementObjects[i]))
-		return false;
-	}
+	if (indexOfKey(getKey(element)) >= 0)
+	    return false;
 	
 	if (count == elementObjects.length) {
             Object[] newArray = new Object[(count+1)*3/2];
@@ -55,6 +170,22 @@ public class SimpleSet extends AbstractSet implements Cloneable
             elementObjects = newArray;
         }
         elementObjects[count++] = element;
+	if (hashIndex != null) {
+	    if (count * 2 > hashIndex.length)
+		hashIndex = null;
+	    else
+		insertIndex(count - 1);
+	}
+	return true;
+    }
+
+    public boolean remove(Object element) {
+	if (element == null)
+	    return false;
+	int pos = indexOfKey(getKey(element));
+	if (pos < 0)
+	    return false;
+	removeAt(pos);
 	return true;
     }
 	
@@ -62,6 +193,7 @@ public class SimpleSet extends AbstractSet implements Cloneable
         try {
             SimpleSet other = (SimpleSet) super.clone();
 	    other.elementObjects = (Object[]) elementObjects.clone();
+	    other.hashIndex = null;
             return other;
         } catch (CloneNotSupportedException ex) {
             throw new InternalError("Clone?");
@@ -81,11 +213,7 @@ public class SimpleSet extends AbstractSet implements Cloneable
 	    }
 	  
 	    public void remove() {
-		if (pos < count)
-		    System.arraycopy(elementObjects, pos, 
-				     elementObjects, pos-1, count - pos);
-		count--;
-		pos--;
+		removeAt(--pos);
 	    }
 	};
     }
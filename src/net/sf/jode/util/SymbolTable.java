@@ -0,0 +1,284 @@
+/* SymbolTable Copyright (C) 2026 Jochen Hoenicke.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; see the file COPYING.LESSER.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ * $Id$
+ */
+
+package net.sf.jode.util;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A table of unique strings, that replaces String.intern for the
+ * names and types read from class files.  Two strings interned in
+ * the same table are equal if and only if they are identical. <br>
+ *
+ * Strings can be interned directly from their modified UTF-8
+ * encoding, as found in class files.  The hash code is computed from
+ * the bytes and they are compared to the strings in the table
+ * without decoding them, so a string is only created if it isn't in
+ * the table yet. <br>
+ *
+ * The table is split into segments with their own lock, so that
+ * several threads can read class files at once.  Every segment is an
+ * open addressed hash table with linear probing.  The strings are
+ * only weakly referenced; the slots of collected strings are freed
+ * when the segment is rehashed.
+ *
+ * @author Jochen Hoenicke
+ */
+public class SymbolTable {
+    private static final int SEGMENT_SHIFT = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_SHIFT;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static class Symbol extends WeakReference {
+	int hash;
+
+	public Symbol(String s, int hash) {
+	    super(s);
+	    this.hash = hash;
+	}
+    }
+
+    private static class Segment {
+	Symbol[] table = new Symbol[INITIAL_CAPACITY];
+	/**
+	 * The number of used slots, including those whose string was
+	 * collected.
+	 */
+	int used;
+
+	/**
+	 * Rehashes the table, dropping the slots of collected
+	 * strings.  The table only grows, if it is still half full
+	 * without them.
+	 */
+	private void rehash() {
+	    Symbol[] oldTable = table;
+	    int live = 0;
+	    for (int i = 0; i < oldTable.length; i++) {
+		if (oldTable[i] != null && oldTable[i].get() != null)
+		    live++;
+	    }
+	    int capacity = oldTable.length;
+	    if (live * 2 > capacity)
+		capacity *= 2;
+	    table = new Symbol[capacity];
+	    used = 0;
+	    for (int i = 0; i < oldTable.length; i++) {
+		Symbol sym = oldTable[i];
+		if (sym == null || sym.get() == null)
+		    continue;
+		int slot = sym.hash & (capacity - 1);
+		while (table[slot] != null)
+		    slot = (slot + 1) & (capacity - 1);
+		table[slot] = sym;
+		used++;
+	    }
+	}
+
+	String add(String s, int hash) {
+	    if ((used + 1) * 4 > table.length * 3)
+		rehash();
+	    int mask = table.length - 1;
+	    int slot = hash & mask;
+	    while (table[slot] != null)
+		slot = (slot + 1) & mask;
+	    table[slot] = new Symbol(s, hash);
+	    used++;
+	    return s;
+	}
+
+	synchronized String intern(String s, int hash) {
+	    int mask = table.length - 1;
+	    for (int slot = hash & mask; table[slot] != null;
+		 slot = (slot + 1) & mask) {
+		if (table[slot].hash == hash) {
+		    String other = (String) table[slot].get();
+		    if (s.equals(other))
+			return other;
+		}
+	    }
+	    return add(s, hash);
+	}
+
+	synchronized String intern(byte[] data, int offset, int length,
+				   int hash) {
+	    int mask = table.length - 1;
+	    for (int slot = hash & mask; table[slot] != null;
+		 slot = (slot + 1) & mask) {
+		if (table[slot].hash == hash) {
+		    String other = (String) table[slot].get();
+		    if (other != null
+			&& matches(other, data, offset, length))
+			return other;
+		}
+	    }
+	    return add(decodeUTF8(data, offset, length), hash);
+	}
+    }
+
+    private Segment[] segments;
+
+    /**
+     * Creates a new empty symbol table.
+     */
+    public SymbolTable() {
+	segments = new Segment[SEGMENT_COUNT];
+	for (int i = 0; i < SEGMENT_COUNT; i++)
+	    segments[i] = new Segment();
+    }
+
+    /**
+     * Spreads the bits of the string hash code.  The low bits select
+     * the slot, the high bits the segment.
+     */
+    private static int spread(int hash) {
+	hash ^= (hash >>> 20) ^ (hash >>> 12);
+	return hash ^ (hash >>> 7) ^ (hash >>> 4);
+    }
+
+    private Segment getSegment(int hash) {
+	return segments[hash >>> (32 - SEGMENT_SHIFT)];
+    }
+
+    /**
+     * Returns the unique string in this table that is equal to the
+     * given string.  If there is none, the string is added.
+     * @param s the string, not null.
+     * @return the unique string.
+     */
+    public String intern(String s) {
+	int hash = spread(s.hashCode());
+	return getSegment(hash).intern(s, hash);
+    }
+
+    /**
+     * Returns the unique string in this table whose modified UTF-8
+     * encoding is given.  If there is none, the string is decoded
+     * and added.
+     * @param data the array containing the encoded string.
+     * @param offset the start of the encoded string.
+     * @param length the length of the encoded string in bytes.
+     * @return the unique string.
+     * @exception IllegalArgumentException if the string is malformed.
+     */
+    public String intern(byte[] data, int offset, int length) {
+	int hash = spread(hashUTF8(data, offset, length));
+	return getSegment(hash).intern(data, offset, length, hash);
+    }
+
+    /**
+     * Computes the hash code, as String.hashCode, of the string
+     * whose modified UTF-8 encoding is given.
+     */
+    private static int hashUTF8(byte[] data, int offset, int length) {
+	int end = offset + length;
+	int hash = 0;
+	while (offset < end) {
+	    int c = data[offset++];
+	    if (c < 0) {
+		c &= 0xff;
+		if ((c & 0xe0) == 0xc0 && offset < end) {
+		    c = ((c & 0x1f) << 6) | (data[offset++] & 0x3f);
+		} else if ((c & 0xf0) == 0xe0 && offset + 1 < end) {
+		    c = ((c & 0x0f) << 12) | ((data[offset] & 0x3f) << 6)
+			| (data[offset + 1] & 0x3f);
+		    offset += 2;
+		}
+		/* Malformed strings are detected when decoding them. */
+	    }
+	    hash = 31 * hash + (char) c;
+	}
+	return hash;
+    }
+
+    /**
+     * Checks if the string equals the string whose modified UTF-8
+     * encoding is given.
+     */
+    private static boolean matches(String s, byte[] data,
+				   int offset, int length) {
+	int end = offset + length;
+	int slen = s.length();
+	int i = 0;
+	while (offset < end) {
+	    if (i == slen)
+		return false;
+	    int c = data[offset++];
+	    if (c < 0) {
+		c &= 0xff;
+		if ((c & 0xe0) == 0xc0 && offset < end
+		    && (data[offset] & 0xc0) == 0x80) {
+		    c = ((c & 0x1f) << 6) | (data[offset++] & 0x3f);
+		} else if ((c & 0xf0) == 0xe0 && offset + 1 < end
+			   && (data[offset] & 0xc0) == 0x80
+			   && (data[offset + 1] & 0xc0) == 0x80) {
+		    c = ((c & 0x0f) << 12) | ((data[offset] & 0x3f) << 6)
+			| (data[offset + 1] & 0x3f);
+		    offset += 2;
+		} else
+		    return false;
+	    }
+	    if (s.charAt(i++) != c)
+		return false;
+	}
+	return i == slen;
+    }
+
+    /**
+     * Decodes the modified UTF-8 string at the given position, see
+     * DataInput.readUTF.
+     * @param data the array containing the encoded string.
+     * @param offset the start of the encoded string.
+     * @param length the length of the encoded string in bytes.
+     * @return the decoded string.
+     * @exception IllegalArgumentException if the string is malformed.
+     */
+    public static String decodeUTF8(byte[] data, int offset, int length) {
+	int end = offset + length;
+	int ascii = offset;
+	while (ascii < end && data[ascii] > 0)
+	    ascii++;
+	if (ascii == end)
+	    /* Most strings are plain ASCII, they need no decoding. */
+	    return new String(data, offset, length,
+			      StandardCharsets.ISO_8859_1);
+
+	char[] chars = new char[length];
+	int charCount = 0;
+	while (offset < end) {
+	    int c = data[offset++] & 0xff;
+	    if (c >= 0x80) {
+		if ((c & 0xe0) == 0xc0 && offset < end
+		    && (data[offset] & 0xc0) == 0x80) {
+		    c = ((c & 0x1f) << 6) | (data[offset++] & 0x3f);
+		} else if ((c & 0xf0) == 0xe0 && offset + 1 < end
+			   && (data[offset] & 0xc0) == 0x80
+			   && (data[offset + 1] & 0xc0) == 0x80) {
+		    c = ((c & 0x0f) << 12) | ((data[offset] & 0x3f) << 6)
+			| (data[offset + 1] & 0x3f);
+		    offset += 2;
+		} else
+		    throw new IllegalArgumentException
+			("malformed UTF8 string");
+	    }
+	    chars[charCount++] = (char) c;
+	}
+	return new String(chars, 0, charCount);
+    }
+}
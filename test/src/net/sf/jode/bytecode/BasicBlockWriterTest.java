@@ -117,6 +117,30 @@ public class BasicBlockWriterTest extends TestCase implements Opcodes {
 		     new String(write(bbw), "iso-8859-1"));
     }
 
+    public void testStackMap() throws IOException {
+	Block b1 = new Block();
+	Block b2 = new Block();
+	Block b3 = new Block();
+	Block b4 = new Block();
+	b1.setCode(whileHead, new Block[] { b2 });
+	b2.setCode(whileCond, new Block[] { null, b3 });
+	b3.setCode(someNops,  new Block[] { b4 });
+	b4.setCode(whileFoot,  new Block[] { b2 });
+	BasicBlocks bb = new BasicBlocks(new MethodInfo("a", "(I)V", 0));
+	bb.setBlocks(new Block[] { b1, b2, b3, b4}, b1, new Handler[0]);
+	ClassPath cp = new ClassPath(new String[0]);
+	ClassInfo clazz = cp.getClassInfo("Foo");
+	clazz.setClassVersion(50, 0);
+	BasicBlockWriter bbw = new BasicBlockWriter(bb, gcp, clazz,
+						    new HierarchyOracle(cp));
+	assertEquals(1, bbw.getAttributeCount());
+	assertEquals("Frames differ",
+		     "\0\2"
+		     +"\374\0\2\1" /* append int at while cond */
+		     +"\370\0\14" /* chop 3 at return */,
+		     new String(bbw.stackMapTable, "iso-8859-1"));
+    }
+
     public void testTableSwitch() throws IOException {
 	Block b1 = new Block();
 	Block b2 = new Block();
@@ -201,14 +225,84 @@ public class BasicBlockWriterTest extends TestCase implements Opcodes {
 		     new String(write(bbw), "iso-8859-1"));
     }
 
+    public void testExceptionBeforeReturn() throws IOException {
+	Block b1 = new Block();
+	Block b2 = new Block();
+	Block b3 = new Block();
+	b1.setCode(new Instruction[] {
+	    Instruction.forOpcode(opc_iload, LocalVariableInfo.getInfo(1)),
+	    Instruction.forOpcode(opc_ifeq)
+	}, new Block[] { null, b3 });
+	b2.setCode(new Instruction[] {
+	    Instruction.forOpcode(opc_athrow)
+	}, new Block[0]);
+	b3.setCode(new Instruction[] {
+	    Instruction.forOpcode(opc_ldc, (Object) null),
+	    Instruction.forOpcode(opc_athrow)
+	}, new Block[0]);
+	BasicBlocks bb = new BasicBlocks(new MethodInfo("a", "(I)V", 0));
+	Handler h = new Handler(b3, b3, b2, null);
+	bb.setBlocks(new Block[] { b1, b2, b3 }, b1, new Handler[] { h });
+	ClassPath cp = new ClassPath(new String[0]);
+	ClassInfo clazz = cp.getClassInfo("Foo");
+	clazz.setClassVersion(50, 0);
+	BasicBlockWriter bbw = new BasicBlockWriter(bb, gcp, clazz,
+						    new HierarchyOracle(cp));
+	gcp.write(new DataOutputStream(new ByteArrayOutputStream()));
+	assertTrue(bbw.retAtEnd);
+	assertEquals(4, bbw.exceptionCount);
+	/* The range must end before the return written at the end. */
+	assertEquals(bbw.blockAddr[2], bbw.exceptionTable[0]);
+	assertEquals(bbw.blockAddr[3] - 1, bbw.exceptionTable[1]);
+	assertEquals(bbw.blockAddr[1], bbw.exceptionTable[2]);
+	write(bbw);
+    }
+
+    public void testUnreachableLastBlock() throws IOException {
+	Block b1 = new Block();
+	Block b2 = new Block();
+	b1.setCode(new Instruction[] {
+	    Instruction.forOpcode(opc_iload, LocalVariableInfo.getInfo(1)),
+	    Instruction.forOpcode(opc_ifeq)
+	}, new Block[] { null, b1 });
+	b2.setCode(new Instruction[] {
+	    Instruction.forOpcode(opc_ldc, (Object) null),
+	    Instruction.forOpcode(opc_athrow)
+	}, new Block[0]);
+	BasicBlocks bb = new BasicBlocks(new MethodInfo("a", "(I)V", 0));
+	bb.setBlocks(new Block[] { b1, b2 }, b1, new Handler[0]);
+	ClassPath cp = new ClassPath(new String[0]);
+	ClassInfo clazz = cp.getClassInfo("Foo");
+	clazz.setClassVersion(50, 0);
+	BasicBlockWriter bbw = new BasicBlockWriter(bb, gcp, clazz,
+						    new HierarchyOracle(cp));
+	gcp.write(new DataOutputStream(new ByteArrayOutputStream()));
+	assertTrue(bbw.retAtEnd);
+	String code = new String(write(bbw), "iso-8859-1");
+	/* The unreachable block is replaced by nop, athrow, followed
+	 * by the return at the end.
+	 */
+	assertEquals("\0\277\261\0\0", code.substring(code.length() - 5));
+	int cpoolEntry = gcp.putClassName("java.lang.Throwable");
+	assertEquals("Frames differ",
+		     "\0\3"
+		     +"\0" /* same at loop */
+		     +"\377\0\6\0\0\0\1\7\0"+(char)cpoolEntry /* athrow */
+		     +"\1" /* same at return */,
+		     new String(bbw.stackMapTable, "iso-8859-1"));
+    }
+
     public static Test suite() {
 	TestSuite suite = new TestSuite(); 
 	suite.addTest(new BasicBlockWriterTest("testEmpty")); 
 	suite.addTest(new BasicBlockWriterTest("testSimple")); 
 	suite.addTest(new BasicBlockWriterTest("testWhile")); 
+	suite.addTest(new BasicBlockWriterTest("testStackMap"));
 	suite.addTest(new BasicBlockWriterTest("testTableSwitch")); 
 	suite.addTest(new BasicBlockWriterTest("testLookupSwitch")); 
 	suite.addTest(new BasicBlockWriterTest("testException")); 
+	suite.addTest(new BasicBlockWriterTest("testExceptionBeforeReturn"));
+	suite.addTest(new BasicBlockWriterTest("testUnreachableLastBlock"));
 	return suite;
     }
 }
@@ -36,9 +36,42 @@ public class BlockTest extends TestCase implements Opcodes {
 
     }
 
+    public void testCompact() {
+	LocalVariableInfo lvi = LocalVariableInfo.getInfo(1);
+	Reference ref = Reference.getReference
+	    ("Ljava/io/PrintStream;", "println", "(I)V");
+	Instruction[] instrs = new Instruction[] {
+	    Instruction.forOpcode(opc_ldc, new Integer(5)),
+	    Instruction.forOpcode(opc_iinc, lvi, -300),
+	    Instruction.forOpcode(opc_iload, lvi),
+	    Instruction.forOpcode(opc_invokevirtual, ref),
+	    Instruction.forOpcode(opc_multianewarray, "[[I", 2),
+	    Instruction.forOpcode(opc_checkcast, "[[I"),
+	    Instruction.forOpcode(opc_lookupswitch, new int[] { 1, 7 })
+	};
+	instrs[2].setLineNr(42);
+	Block b1 = new Block();
+	b1.setCode(instrs, new Block[] { null, b1, null });
+	b1.compact();
+	Instruction[] result = b1.getInstructions();
+	assertEquals("length", instrs.length, result.length);
+	for (int i = 0; i < instrs.length; i++) {
+	    assertNotSame("new", instrs[i], result[i]);
+	    assertEquals("class", instrs[i].getClass(), result[i].getClass());
+	    assertEquals(instrs[i].getDescription(),
+			 result[i].getDescription());
+	    assertEquals("line", instrs[i].getLineNr(), result[i].getLineNr());
+	}
+	assertSame("lvi", lvi, result[1].getLocalInfo());
+	assertEquals("incr", -300, result[1].getIncrement());
+	assertEquals("dims", 2, result[4].getDimensions());
+	assertSame("stable", result, b1.getInstructions());
+    }
+
     public static Test suite() {
 	TestSuite suite = new TestSuite(); 
 	suite.addTest(new BlockTest("testJsr")); 
+	suite.addTest(new BlockTest("testCompact"));
 	return suite;
     }
 }
@@ -0,0 +1,44 @@
+package net.sf.jode.bytecode;
+import junit.framework.*;
+import java.io.*;
+
+public class ClassFileBufferTest extends TestCase {
+    public ClassFileBufferTest(String name) {
+	super(name);
+    }
+
+    public void testPatch() throws IOException {
+	ClassFileBuffer buffer = ClassFileBuffer.getBuffer();
+	buffer.writeShort(1);
+	int lengthPos = buffer.position();
+	buffer.writeInt(0);
+	byte[] data = new byte[40000];
+	data[data.length - 1] = 7;
+	buffer.write(data);
+	buffer.patchInt(lengthPos, buffer.position() - lengthPos - 4);
+	ByteArrayOutputStream baos = new ByteArrayOutputStream();
+	buffer.writeTo(baos);
+
+	DataInputStream input = new DataInputStream
+	    (new ByteArrayInputStream(baos.toByteArray()));
+	assertEquals(1, input.readShort());
+	assertEquals(data.length, input.readInt());
+	input.skipBytes(data.length - 1);
+	assertEquals(7, input.read());
+	assertEquals(-1, input.read());
+    }
+
+    public void testReuse() throws IOException {
+	ClassFileBuffer buffer = ClassFileBuffer.getBuffer();
+	buffer.writeInt(42);
+	assertSame(buffer, ClassFileBuffer.getBuffer());
+	assertEquals(0, buffer.position());
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new ClassFileBufferTest("testPatch"));
+	suite.addTest(new ClassFileBufferTest("testReuse"));
+	return suite;
+    }
+}
@@ -0,0 +1,118 @@
+package net.sf.jode.bytecode;
+import junit.framework.*;
+import java.io.*;
+import java.lang.reflect.Modifier;
+
+public class ClassHierarchyTest extends TestCase {
+    public ClassHierarchyTest(String name) {
+	super(name);
+    }
+
+    public void testQueries() throws IOException {
+	ClassPath classPath = new ClassPath("reflection:");
+	ClassHierarchy hierarchy = classPath.getHierarchy();
+	ClassInfo object = classPath.getClassInfo("java.lang.Object");
+	ClassInfo number = classPath.getClassInfo("java.lang.Number");
+	ClassInfo integer = classPath.getClassInfo("java.lang.Integer");
+	ClassInfo dbl = classPath.getClassInfo("java.lang.Double");
+	ClassInfo string = classPath.getClassInfo("java.lang.String");
+	ClassInfo serializable
+	    = classPath.getClassInfo("java.io.Serializable");
+	ClassInfo comparable = classPath.getClassInfo("java.lang.Comparable");
+	ClassInfo runnable = classPath.getClassInfo("java.lang.Runnable");
+
+	assertTrue(hierarchy.isSuperclassOf(number, integer));
+	assertTrue(hierarchy.isSuperclassOf(object, integer));
+	assertTrue(!hierarchy.isSuperclassOf(integer, number));
+	assertTrue(!hierarchy.isSuperclassOf(string, integer));
+	assertEquals(2, hierarchy.getDepth(integer));
+
+	assertTrue("inherited", hierarchy.implementedBy(serializable, integer));
+	assertTrue(hierarchy.implementedBy(comparable, string));
+	assertTrue(!hierarchy.implementedBy(runnable, integer));
+	assertTrue(!hierarchy.implementedBy(comparable, number));
+
+	assertSame(number, hierarchy.getCommonSuperclass(integer, dbl));
+	assertSame(object, hierarchy.getCommonSuperclass(integer, string));
+	assertSame(number, integer.getCommonSuperclass(number));
+
+	/* Changing the hierarchy invalidates the index. */
+	ClassInfo clazz = classPath.getClassInfo("Test");
+	clazz.setSuperclass(number);
+	clazz.setInterfaces(new ClassInfo[] { runnable });
+	assertTrue(number.superClassOf(clazz));
+	assertTrue(runnable.implementedBy(clazz));
+	clazz.setSuperclass(string);
+	assertTrue(!number.superClassOf(clazz));
+	assertTrue(string.superClassOf(clazz));
+	assertTrue(comparable.implementedBy(clazz));
+    }
+
+    private static ClassInfo createClass(ClassPath classPath, String name,
+					 String superName, String[] ifaces,
+					 int modifiers) {
+	ClassInfo clazz = classPath.getClassInfo(name);
+	clazz.setModifiers(modifiers);
+	clazz.setSuperclass(classPath.getClassInfo(superName));
+	ClassInfo[] ifaceInfos = new ClassInfo[ifaces.length];
+	for (int i = 0; i < ifaces.length; i++)
+	    ifaceInfos[i] = classPath.getClassInfo(ifaces[i]);
+	clazz.setInterfaces(ifaceInfos);
+	clazz.setMethods(new MethodInfo[0]);
+	clazz.setFields(new FieldInfo[0]);
+	clazz.setClasses(new ClassInfo[0]);
+	return clazz;
+    }
+
+    private static void writeClass(ClassInfo clazz, File dir)
+	throws IOException
+    {
+	OutputStream out = new FileOutputStream
+	    (new File(dir, clazz.getName() + ".class"));
+	clazz.write(out);
+	out.close();
+    }
+
+    public void testMissingClass() throws IOException {
+	File dir = File.createTempFile("hierarchy", "");
+	dir.delete();
+	dir.mkdir();
+	try {
+	    /* A extends B implements I, B extends C, but C is missing. */
+	    ClassPath source = new ClassPath(new String[0]);
+	    writeClass(createClass(source, "A", "B", new String[] { "I" },
+				   Modifier.PUBLIC), dir);
+	    writeClass(createClass(source, "B", "C", new String[0],
+				   Modifier.PUBLIC), dir);
+	    writeClass(createClass(source, "I", "java.lang.Object",
+				   new String[0],
+				   Modifier.PUBLIC | Modifier.INTERFACE
+				   | Modifier.ABSTRACT), dir);
+
+	    ClassPath classPath = new ClassPath(dir.getPath());
+	    ClassInfo a = classPath.getClassInfo("A");
+	    ClassInfo b = classPath.getClassInfo("B");
+	    ClassInfo i = classPath.getClassInfo("I");
+	    assertTrue(b.superClassOf(a));
+	    assertTrue(i.implementedBy(a));
+	    assertTrue(classPath.getHierarchy().isSuperclassOf(b, a));
+	    try {
+		classPath.getClassInfo("java.lang.Object").superClassOf(a);
+		fail("Object found above missing class");
+	    } catch (FileNotFoundException ex) {
+	    }
+	} finally {
+	    File[] files = dir.listFiles();
+	    for (int j = 0; j < files.length; j++)
+		files[j].delete();
+	    dir.delete();
+	}
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new ClassHierarchyTest("testQueries"));
+	suite.addTest(new ClassHierarchyTest("testMissingClass"));
+	return suite;
+    }
+}
@@ -0,0 +1,158 @@
+package net.sf.jode.bytecode;
+import junit.framework.*;
+import java.io.*;
+import java.util.*;
+
+public class ClassPathIndexTest extends TestCase {
+    File indexFile;
+    File dir;
+
+    public ClassPathIndexTest(String name) {
+	super(name);
+    }
+
+    private static void touch(File file) throws IOException {
+	file.getParentFile().mkdirs();
+	new FileOutputStream(file).close();
+    }
+
+    private static void delete(File file) {
+	File[] files = file.listFiles();
+	if (files != null) {
+	    for (int i = 0; i < files.length; i++)
+		delete(files[i]);
+	}
+	file.delete();
+    }
+
+    protected void setUp() throws IOException {
+	indexFile = File.createTempFile("cpindex", ".idx");
+	indexFile.delete();
+	dir = File.createTempFile("cpindex", "");
+	dir.delete();
+	touch(new File(dir, "a/b/C.class"));
+	touch(new File(dir, "a/D.class"));
+    }
+
+    protected void tearDown() {
+	indexFile.delete();
+	delete(dir);
+    }
+
+    private static Set asSet(Enumeration enumeration) {
+	Set result = new HashSet();
+	while (enumeration.hasMoreElements())
+	    result.add(enumeration.nextElement());
+	return result;
+    }
+
+    private static void checkListing(ClassPath.Location loc) {
+	assertTrue("C", loc.exists("a/b/C.class"));
+	assertTrue("D", loc.exists("a/D.class"));
+	assertTrue("missing", !loc.exists("a/E.class"));
+	assertTrue("a/b", loc.isDirectory("a/b"));
+	assertTrue("file is no dir", !loc.isDirectory("a/D.class"));
+	assertEquals("listing a",
+		     new HashSet(Arrays.asList(new String[] {"b", "D.class"})),
+		     asSet(loc.listFiles("a")));
+    }
+
+    public void testReuse() throws IOException {
+	ClassPathIndex index = new ClassPathIndex(indexFile);
+	checkListing(index.getLocation(dir.getPath()));
+	index.save();
+	assertTrue("saved", indexFile.exists());
+
+	index = new ClassPathIndex(indexFile);
+	ClassPath.Location loc = index.getLocation(dir.getPath());
+	assertEquals("cached", "CachedLocation",
+		     loc.getClass().getName().substring
+		     (loc.getClass().getName().lastIndexOf('$') + 1));
+	checkListing(loc);
+	assertNotNull("read", loc.getFile("a/D.class"));
+    }
+
+    public void testArchive() throws IOException {
+	byte[] contents = "not really a class".getBytes();
+	File jar = new File(dir, "test.jar");
+	java.util.zip.ZipOutputStream out
+	    = new java.util.zip.ZipOutputStream(new FileOutputStream(jar));
+	out.putNextEntry(new java.util.zip.ZipEntry("a/b/C.class"));
+	out.write(contents);
+	out.close();
+
+	ClassPathIndex index = new ClassPathIndex(indexFile);
+	index.getLocation(jar.getPath());
+	index.save();
+	index = new ClassPathIndex(indexFile);
+	ClassPath.Location loc = index.getLocation(jar.getPath());
+
+	/* The cached location must answer from the archive directory
+	 * and read through the archive, like the real location.
+	 */
+	java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+	crc.update(contents);
+	assertEquals("fingerprint",
+		     ((long) contents.length << 32) | crc.getValue(),
+		     loc.getFingerprint("a/b/C.class"));
+	java.nio.ByteBuffer buffer = loc.getFileBuffer("a/b/C.class");
+	byte[] read = new byte[buffer.remaining()];
+	buffer.get(read);
+	assertEquals("contents", new String(contents), new String(read));
+    }
+
+    public void testStale() throws IOException {
+	ClassPathIndex index = new ClassPathIndex(indexFile);
+	index.getLocation(dir.getPath());
+	index.save();
+
+	File newFile = new File(dir, "a/b/E.class");
+	touch(newFile);
+	/* Make sure the change is visible even with a coarse
+	 * time stamp resolution.
+	 */
+	File parent = newFile.getParentFile();
+	parent.setLastModified(parent.lastModified() - 10000);
+
+	index = new ClassPathIndex(indexFile);
+	ClassPath.Location loc = index.getLocation(dir.getPath());
+	assertTrue("new file", loc.exists("a/b/E.class"));
+	index.save();
+
+	index = new ClassPathIndex(indexFile);
+	assertTrue("new file saved",
+		   index.getLocation(dir.getPath()).exists("a/b/E.class"));
+    }
+
+    public void testWatchFiles() throws Exception {
+	ClassPathIndex index = new ClassPathIndex(indexFile);
+	index.getLocation(dir.getPath());
+	index.save();
+
+	index = new ClassPathIndex(indexFile);
+	ClassPath classPath = new ClassPath(dir.getPath(), null, index);
+	classPath.setWatchFiles(true);
+	try {
+	    assertTrue("E", !classPath.existsClass("a.b.E"));
+	    touch(new File(dir, "a/b/E.class"));
+	    /* The notification is asynchronous, poll for it. */
+	    for (int i = 0; i < 100; i++) {
+		if (classPath.existsClass("a.b.E"))
+		    break;
+		Thread.sleep(100);
+	    }
+	    assertTrue("E created", classPath.existsClass("a.b.E"));
+	} finally {
+	    classPath.setWatchFiles(false);
+	}
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new ClassPathIndexTest("testReuse"));
+	suite.addTest(new ClassPathIndexTest("testArchive"));
+	suite.addTest(new ClassPathIndexTest("testStale"));
+	suite.addTest(new ClassPathIndexTest("testWatchFiles"));
+	return suite;
+    }
+}
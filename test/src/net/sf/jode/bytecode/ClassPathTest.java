@@ -0,0 +1,462 @@
+package net.sf.jode.bytecode;
+import junit.framework.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.zip.*;
+
+public class ClassPathTest extends TestCase {
+    File dir;
+
+    public ClassPathTest(String name) {
+	super(name);
+    }
+
+    private static void touch(File file) throws IOException {
+	file.getParentFile().mkdirs();
+	new FileOutputStream(file).close();
+    }
+
+    private static void delete(File file) {
+	File[] files = file.listFiles();
+	if (files != null) {
+	    for (int i = 0; i < files.length; i++)
+		delete(files[i]);
+	}
+	file.delete();
+    }
+
+    protected void setUp() throws IOException {
+	dir = File.createTempFile("classpath", "");
+	dir.delete();
+	touch(new File(dir, "a/b/C.class"));
+    }
+
+    protected void tearDown() {
+	delete(dir);
+    }
+
+    public void testNegativeCache() throws IOException {
+	ClassPath classPath = new ClassPath(new String[] { dir.getPath() });
+	assertTrue("C", classPath.existsClass("a.b.C"));
+	assertTrue("D", !classPath.existsClass("a.b.D"));
+	assertTrue("a.c.E", !classPath.existsClass("a.c.E"));
+	assertEquals("misses", 3, classPath.getCacheMisses());
+	assertEquals("hits", 0, classPath.getCacheHits());
+
+	touch(new File(dir, "a/b/D.class"));
+	assertTrue("D cached", !classPath.existsClass("a.b.D"));
+	assertEquals("hits", 1, classPath.getCacheHits());
+
+	classPath.invalidateCache();
+	assertTrue("D", classPath.existsClass("a.b.D"));
+	assertTrue("package", classPath.isPackage("a.b"));
+    }
+
+    public void testNegativeCacheLevel() throws IOException {
+	ClassPath classPath = new ClassPath("reflection:");
+	ClassInfo clazz = classPath.getClassInfo("java.lang.Integer");
+	try {
+	    clazz.load(ClassInfo.ALL);
+	    fail("reflection can't load code");
+	} catch (FileNotFoundException ex) {
+	}
+	clazz.load(ClassInfo.HIERARCHY);
+	assertEquals("java.lang.Number", clazz.getSuperclass().getName());
+	try {
+	    clazz.load(ClassInfo.ALL);
+	    fail("still missing");
+	} catch (FileNotFoundException ex) {
+	}
+	assertEquals("hits", 1, classPath.getCacheHits());
+    }
+
+    public void testClassFileCache() throws IOException {
+	File classFile = new File
+	    (dir, "net/sf/jode/bytecode/ClassPathTest.class");
+	classFile.getParentFile().mkdirs();
+	InputStream in = getClass().getResourceAsStream("ClassPathTest.class");
+	OutputStream out = new FileOutputStream(classFile);
+	byte[] buf = new byte[1024];
+	int count;
+	while ((count = in.read(buf)) != -1)
+	    out.write(buf, 0, count);
+	in.close();
+	out.close();
+
+	ClassPath classPath = new ClassPath(new String[] { dir.getPath() });
+	classPath.setClassFileCacheSize(100000);
+	ClassInfo clazz = classPath.getClassInfo
+	    ("net.sf.jode.bytecode.ClassPathTest");
+	clazz.load(ClassInfo.ALL);
+	clazz.drop(ClassInfo.DECLARATIONS);
+	assertTrue("deleted", classFile.delete());
+	clazz.load(ClassInfo.ALL);
+	assertEquals("hits", 1, classPath.getClassFileCacheHits());
+	assertEquals("misses", 1, classPath.getClassFileCacheMisses());
+
+	classPath.setClassFileCacheSize(10);
+	assertEquals("evictions", 1, classPath.getClassFileCacheEvictions());
+    }
+
+    public void testWatchFiles() throws Exception {
+	ClassPath classPath = new ClassPath(new String[] { dir.getPath() });
+	classPath.setWatchFiles(true);
+	try {
+	    ClassInfo clazz = classPath.getClassInfo("a.b.C");
+	    assertTrue("D", !classPath.existsClass("a.b.D"));
+	    touch(new File(dir, "a/b/D.class"));
+	    new File(dir, "a/b/C.class").delete();
+	    /* The notification is asynchronous, poll for it. */
+	    for (int i = 0; i < 100; i++) {
+		if (classPath.existsClass("a.b.D"))
+		    break;
+		Thread.sleep(100);
+	    }
+	    assertTrue("D created", classPath.existsClass("a.b.D"));
+	    assertSame("C kept", clazz, classPath.getClassInfo("a.b.C"));
+	} finally {
+	    classPath.setWatchFiles(false);
+	}
+
+	/* Locations that can't be opened are skipped. */
+	classPath = new ClassPath(new String[] {
+	    dir.getPath(), new File(dir, "missing.jar").getPath()
+	}, null);
+	classPath.setWatchFiles(true);
+	classPath.setWatchFiles(false);
+    }
+
+    private void writeClass(ClassPath classPath, String name,
+			    String superName, String[] ifaces)
+	throws IOException
+    {
+	ClassInfo clazz = classPath.getClassInfo(name);
+	clazz.setModifiers(java.lang.reflect.Modifier.PUBLIC);
+	clazz.setSuperclass(classPath.getClassInfo(superName));
+	ClassInfo[] ifaceInfos = new ClassInfo[ifaces.length];
+	for (int i = 0; i < ifaces.length; i++)
+	    ifaceInfos[i] = classPath.getClassInfo(ifaces[i]);
+	clazz.setInterfaces(ifaceInfos);
+	clazz.setMethods(new MethodInfo[0]);
+	clazz.setFields(new FieldInfo[0]);
+	clazz.setClasses(new ClassInfo[0]);
+	OutputStream out = new FileOutputStream(new File(dir, name + ".class"));
+	clazz.write(out);
+	out.close();
+    }
+
+    public void testWatchChangedClass() throws Exception {
+	ClassPath source = new ClassPath("reflection:");
+	writeClass(source, "A", "java.lang.Object", new String[0]);
+	writeClass(source, "B", "A", new String[0]);
+
+	ClassPath classPath = new ClassPath
+	    (new String[] { dir.getPath(), "reflection:" });
+	classPath.setWatchFiles(true);
+	try {
+	    ClassInfo classB = classPath.getClassInfo("B");
+	    classB.load(ClassInfo.HIERARCHY);
+	    ClassInfo classA = classPath.getClassInfo("A");
+	    ClassInfo runnable = classPath.getClassInfo("java.lang.Runnable");
+	    assertSame(classA, classB.getSuperclass());
+	    assertTrue(!runnable.implementedBy(classB));
+
+	    writeClass(new ClassPath("reflection:"), "A", "java.lang.Object",
+		       new String[] { "java.lang.Runnable" });
+	    /* The notification is asynchronous, poll for it. */
+	    int ifaceCount = 0;
+	    for (int i = 0; i < 100 && ifaceCount == 0; i++) {
+		Thread.sleep(100);
+		/* The lock keeps the watcher from resetting A in between. */
+		synchronized (classA) {
+		    classA.load(ClassInfo.HIERARCHY);
+		    ifaceCount = classA.getInterfaces().length;
+		}
+	    }
+	    assertSame("A kept", classA, classPath.getClassInfo("A"));
+	    assertEquals("A reread", 1, ifaceCount);
+	    assertSame(classA, classB.getSuperclass());
+	    assertTrue(classA.superClassOf(classB));
+	    assertTrue("hierarchy", runnable.implementedBy(classB));
+	} finally {
+	    classPath.setWatchFiles(false);
+	}
+    }
+
+    public void testFingerprint() throws IOException {
+	byte[] contents = "not really a class".getBytes();
+	OutputStream out = new FileOutputStream(new File(dir, "a/b/C.class"));
+	out.write(contents);
+	out.close();
+	File jar = new File(dir, "copy.jar");
+	ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+	zos.putNextEntry(new ZipEntry("a/b/C.class"));
+	zos.write(contents);
+	zos.closeEntry();
+	zos.close();
+
+	long fingerprint = new ClassPath(new String[] { dir.getPath() })
+	    .getClassFingerprint("a.b.C");
+	assertTrue("found", fingerprint != -1);
+	assertEquals("jar", fingerprint,
+		     new ClassPath(new String[] { jar.getPath() })
+		     .getClassFingerprint("a.b.C"));
+	assertEquals("missing", -1,
+		     new ClassPath(new String[] { dir.getPath() })
+		     .getClassFingerprint("a.b.D"));
+    }
+
+    public void testPartialRead() throws IOException {
+	ClassPath classPath = new ClassPath
+	    (System.getProperty("java.class.path")
+	     .replace(File.pathSeparatorChar, ClassPath.altPathSeparatorChar));
+	ClassInfo clazz = classPath.getClassInfo
+	    ("net.sf.jode.bytecode.ClassPathTest");
+	clazz.load(ClassInfo.HIERARCHY);
+	assertEquals("superclass", "junit.framework.TestCase",
+		     clazz.getSuperclass().getName());
+	assertNull("outer", clazz.getOuterClass());
+	/* The declarations were skipped and are read on demand. */
+	assertNotNull("method", clazz.findMethod("testPartialRead", "()V"));
+	assertEquals("inner", 0, clazz.getClasses().length);
+    }
+
+    public void testPartialReadFailure() throws IOException {
+	File classFile = new File
+	    (dir, "net/sf/jode/bytecode/ClassPathTest.class");
+	classFile.getParentFile().mkdirs();
+	InputStream in = getClass().getResourceAsStream("ClassPathTest.class");
+	OutputStream out = new FileOutputStream(classFile);
+	byte[] buf = new byte[1024];
+	int count;
+	while ((count = in.read(buf)) != -1)
+	    out.write(buf, 0, count);
+	in.close();
+	out.close();
+
+	ClassPath classPath = new ClassPath(new String[] { dir.getPath() });
+	ClassInfo clazz = classPath.getClassInfo
+	    ("net.sf.jode.bytecode.ClassPathTest");
+	clazz.load(ClassInfo.HIERARCHY);
+	assertTrue("deleted", classFile.delete());
+	try {
+	    clazz.getMethods();
+	    fail("declarations can't be read");
+	} catch (IllegalStateException ex) {
+	    assertTrue(ex.getMessage(),
+		       ex.getMessage().indexOf("FileNotFoundException") >= 0);
+	}
+    }
+
+    public void testReadBuffer() throws IOException {
+	InputStream in = getClass().getResourceAsStream("ClassPathTest.class");
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	byte[] buf = new byte[1024];
+	int count;
+	while ((count = in.read(buf)) != -1)
+	    out.write(buf, 0, count);
+	in.close();
+	ByteBuffer buffer = ByteBuffer.allocateDirect(out.size());
+	buffer.put(out.toByteArray());
+	buffer.flip();
+
+	ClassInfo clazz = new ClassPath(new String[0]).getClassInfo
+	    ("net.sf.jode.bytecode.ClassPathTest");
+	clazz.read(buffer, ClassInfo.ALL);
+	assertEquals("position", 0, buffer.position());
+	MethodInfo method = clazz.findMethod("testReadBuffer", "()V");
+	assertNotNull("method", method);
+	assertNotNull("code", method.getBasicBlocks());
+	assertEquals("source", "ClassPathTest.java", clazz.getSourceFile());
+    }
+
+    public void testAttributeMask() throws IOException {
+	ClassPath classPath = new ClassPath
+	    (System.getProperty("java.class.path")
+	     .replace(File.pathSeparatorChar, ClassPath.altPathSeparatorChar));
+	ClassInfo clazz = classPath.getClassInfo
+	    ("net.sf.jode.bytecode.ClassPathTest");
+	clazz.load(ClassInfo.ALL, ClassInfo.ATTR_ALL & ~ClassInfo.ATTR_LNT);
+	MethodInfo method = clazz.findMethod("testAttributeMask", "()V");
+	Instruction first = method.getBasicBlocks().getBlocks()[0]
+	    .getInstructions()[0];
+	assertEquals("no lnt", -1, first.getLineNr());
+
+	/* Loading all attributes reads the class again. */
+	clazz.load(ClassInfo.ALL);
+	method = clazz.findMethod("testAttributeMask", "()V");
+	first = method.getBasicBlocks().getBlocks()[0].getInstructions()[0];
+	assertTrue("lnt", first.getLineNr() != -1);
+
+	/* Loading less attributes keeps them, unless they are dropped. */
+	clazz.load(ClassInfo.ALL, ClassInfo.ATTR_ALL & ~ClassInfo.ATTR_LNT);
+	assertSame(method, clazz.findMethod("testAttributeMask", "()V"));
+	clazz.drop(ClassInfo.NODEBUG);
+	clazz.load(ClassInfo.ALL, ClassInfo.ATTR_ALL & ~ClassInfo.ATTR_LNT);
+	method = clazz.findMethod("testAttributeMask", "()V");
+	first = method.getBasicBlocks().getBlocks()[0].getInstructions()[0];
+	assertEquals("dropped lnt", -1, first.getLineNr());
+    }
+
+    public void testOuterClassAttribute() throws IOException {
+	ClassPath classPath = new ClassPath
+	    (System.getProperty("java.class.path")
+	     .replace(File.pathSeparatorChar, ClassPath.altPathSeparatorChar));
+	ClassInfo clazz = classPath.getClassInfo
+	    ("net.sf.jode.bytecode.ClassHierarchy$Node");
+	clazz.load(ClassInfo.DECLARATIONS,
+		   ClassInfo.ATTR_ALL & ~ClassInfo.ATTR_INNERCLASSES);
+	assertNull(clazz.getOuterClass());
+	/* The outer class needs the InnerClasses attribute. */
+	clazz.load(ClassInfo.OUTERCLASS);
+	assertSame(classPath.getClassInfo("net.sf.jode.bytecode.ClassHierarchy"),
+		   clazz.getOuterClass());
+	assertEquals("Node", clazz.getClassName());
+    }
+
+    public void testKeepBasicBlocks() throws IOException {
+	ClassPath classPath = new ClassPath
+	    (System.getProperty("java.class.path")
+	     .replace(File.pathSeparatorChar, ClassPath.altPathSeparatorChar));
+	ClassInfo clazz = classPath.getClassInfo
+	    ("net.sf.jode.bytecode.ClassPathTest");
+	clazz.load(ClassInfo.ALL);
+	MethodInfo method = clazz.findMethod("testKeepBasicBlocks", "()V");
+	BasicBlocks readOnly = method.getReadOnlyBasicBlocks();
+	assertSame("decoded once", readOnly, method.getReadOnlyBasicBlocks());
+
+	/* Blocks that may be changed are kept strongly. */
+	BasicBlocks bb = method.getBasicBlocks();
+	assertSame(readOnly, bb);
+	readOnly = null;
+	System.gc();
+	assertSame(bb, method.getBasicBlocks());
+	assertSame(bb, method.getReadOnlyBasicBlocks());
+    }
+
+    public void testConcurrentLoad() throws Exception {
+	final ClassPath classPath = new ClassPath
+	    (System.getProperty("java.class.path")
+	     .replace(File.pathSeparatorChar, ClassPath.altPathSeparatorChar));
+	final String[] names = {
+	    "net.sf.jode.bytecode.ClassInfo", "net.sf.jode.bytecode.ClassPath",
+	    "net.sf.jode.bytecode.MethodInfo", "net.sf.jode.bytecode.FieldInfo",
+	    "net.sf.jode.bytecode.BinaryInfo", "net.sf.jode.bytecode.ZipIndex"
+	};
+	final ClassInfo[][] result = new ClassInfo[8][names.length];
+	final Throwable[] failure = new Throwable[1];
+	Thread[] threads = new Thread[result.length];
+	for (int t = 0; t < threads.length; t++) {
+	    final int nr = t;
+	    threads[t] = new Thread() {
+		public void run() {
+		    try {
+			for (int i = 0; i < names.length; i++) {
+			    int j = (i + nr) % names.length;
+			    result[nr][j] = classPath.getClassInfo(names[j]);
+			    result[nr][j].load(ClassInfo.HIERARCHY);
+			}
+		    } catch (Throwable ex) {
+			failure[0] = ex;
+		    }
+		}
+	    };
+	    threads[t].start();
+	}
+	for (int t = 0; t < threads.length; t++)
+	    threads[t].join();
+	if (failure[0] != null)
+	    fail(failure[0].toString());
+	for (int t = 0; t < threads.length; t++) {
+	    for (int i = 0; i < names.length; i++) {
+		assertSame(names[i], result[0][i], result[t][i]);
+		assertNotNull(names[i], result[t][i].getSuperclass());
+	    }
+	}
+    }
+
+    public void testConcurrentOuterInfo() throws Exception {
+	final ClassPath classPath = new ClassPath
+	    (System.getProperty("java.class.path")
+	     .replace(File.pathSeparatorChar, ClassPath.altPathSeparatorChar));
+	/* Outer and inner classes mention each other, so every thread
+	 * merges outer information into classes the others read.
+	 */
+	final String[] names = {
+	    "net.sf.jode.bytecode.ClassPath",
+	    "net.sf.jode.bytecode.ClassPath$Location",
+	    "net.sf.jode.bytecode.ClassHierarchy",
+	    "net.sf.jode.bytecode.ClassHierarchy$Node",
+	    "net.sf.jode.bytecode.ClassInfo",
+	    "net.sf.jode.bytecode.ClassInfo$OuterInfo"
+	};
+	final Throwable[] failure = new Throwable[1];
+	Thread[] threads = new Thread[8];
+	for (int t = 0; t < threads.length; t++) {
+	    final int nr = t;
+	    threads[t] = new Thread() {
+		public void run() {
+		    try {
+			for (int i = 0; i < names.length; i++) {
+			    int j = (names.length - i + nr) % names.length;
+			    classPath.getClassInfo(names[j])
+				.load(ClassInfo.DECLARATIONS);
+			}
+		    } catch (Throwable ex) {
+			failure[0] = ex;
+		    }
+		}
+	    };
+	    threads[t].start();
+	}
+	for (int t = 0; t < threads.length; t++)
+	    threads[t].join();
+	if (failure[0] != null)
+	    fail(failure[0].toString());
+	for (int i = 1; i < names.length; i += 2) {
+	    ClassInfo inner = classPath.getClassInfo(names[i]);
+	    assertSame(names[i], classPath.getClassInfo(names[i - 1]),
+		       inner.getOuterClass());
+	    assertEquals(names[i].substring(names[i].indexOf('$') + 1),
+			 inner.getClassName());
+	}
+    }
+
+    public void testReflectionOuterInfo() throws IOException {
+	ClassPath classPath = new ClassPath("reflection:");
+	ClassInfo entry = classPath.getClassInfo
+	    ("java.util.AbstractMap$SimpleEntry");
+	entry.load(ClassInfo.OUTERCLASS);
+	ClassInfo map = classPath.getClassInfo("java.util.AbstractMap");
+	assertSame(map, entry.getOuterClass());
+	assertEquals("SimpleEntry", entry.getClassName());
+	/* The outer information of the outer class is loaded, too. */
+	assertNull(map.getOuterClass());
+
+	map.load(ClassInfo.DECLARATIONS);
+	ClassInfo[] inner = map.getClasses();
+	assertTrue(inner.length > 0);
+	for (int i = 0; i < inner.length; i++)
+	    assertSame(inner[i].getName(), map, inner[i].getOuterClass());
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new ClassPathTest("testNegativeCache"));
+	suite.addTest(new ClassPathTest("testNegativeCacheLevel"));
+	suite.addTest(new ClassPathTest("testClassFileCache"));
+	suite.addTest(new ClassPathTest("testWatchFiles"));
+	suite.addTest(new ClassPathTest("testWatchChangedClass"));
+	suite.addTest(new ClassPathTest("testFingerprint"));
+	suite.addTest(new ClassPathTest("testPartialRead"));
+	suite.addTest(new ClassPathTest("testPartialReadFailure"));
+	suite.addTest(new ClassPathTest("testReadBuffer"));
+	suite.addTest(new ClassPathTest("testAttributeMask"));
+	suite.addTest(new ClassPathTest("testOuterClassAttribute"));
+	suite.addTest(new ClassPathTest("testKeepBasicBlocks"));
+	suite.addTest(new ClassPathTest("testConcurrentLoad"));
+	suite.addTest(new ClassPathTest("testConcurrentOuterInfo"));
+	suite.addTest(new ClassPathTest("testReflectionOuterInfo"));
+	return suite;
+    }
+}
@@ -0,0 +1,67 @@
+package net.sf.jode.bytecode;
+import junit.framework.*;
+import java.io.*;
+
+public class GrowableConstantPoolTest extends TestCase {
+    public GrowableConstantPoolTest(String name) {
+	super(name);
+    }
+
+    public void testReuse() throws IOException {
+	GrowableConstantPool gcp = new GrowableConstantPool();
+	int utf = gcp.putUTF8("foo");
+	assertEquals("utf", utf, gcp.putUTF8(new String("foo")));
+	int string = gcp.putConstant("foo");
+	assertTrue("string", string != utf);
+	assertEquals("string", string, gcp.putConstant(new String("foo")));
+	int integer = gcp.putConstant(new Integer(42));
+	assertEquals("int", integer, gcp.putConstant(new Integer(42)));
+	assertTrue("float", integer != gcp.putConstant(new Float(42)));
+	int lng = gcp.putLongConstant(new Long(42));
+	assertEquals("long", lng, gcp.putLongConstant(new Long(42)));
+	assertEquals("long size", lng + 2, gcp.putUTF8("bar"));
+
+	Reference ref = Reference.getReference("Lfoo;", "bar", "I");
+	int fieldRef = gcp.putRef(ConstantPool.FIELDREF, ref);
+	assertEquals("ref", fieldRef,
+		     gcp.putRef(ConstantPool.FIELDREF,
+				Reference.getReference("Lfoo;", "bar", "I")));
+	assertTrue("other type", fieldRef != gcp.putRef
+		   (ConstantPool.FIELDREF,
+		    Reference.getReference("Lfoo;", "bar", "J")));
+	assertEquals("ref entry", ref, gcp.getRef(fieldRef));
+    }
+
+    public void testGrow() throws IOException {
+	GrowableConstantPool gcp = new GrowableConstantPool(1);
+	int reserved = gcp.reserveConstant("reserved");
+	for (int i = 0; i < 5000; i++)
+	    assertEquals("new", 2 * i + 2, gcp.putLongConstant(new Long(i)));
+	for (int i = 0; i < 5000; i++)
+	    assertEquals("reuse", 2 * i + 2,
+			 gcp.putLongConstant(new Long(i)));
+	assertEquals("reserved", reserved, gcp.putConstant("reserved"));
+	assertEquals("reserved utf", "reserved",
+		     gcp.getUTF8(gcp.indices1[reserved]));
+    }
+
+    public void testWritten() throws IOException {
+	GrowableConstantPool gcp = new GrowableConstantPool();
+	int utf = gcp.putUTF8("foo");
+	gcp.write(new DataOutputStream(new ByteArrayOutputStream()));
+	assertEquals("old entry", utf, gcp.putUTF8("foo"));
+	try {
+	    gcp.putUTF8("bar");
+	    fail("added to written pool");
+	} catch (IllegalStateException ex) {
+	}
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new GrowableConstantPoolTest("testReuse"));
+	suite.addTest(new GrowableConstantPoolTest("testGrow"));
+	suite.addTest(new GrowableConstantPoolTest("testWritten"));
+	return suite;
+    }
+}
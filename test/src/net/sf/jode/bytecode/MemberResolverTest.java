@@ -0,0 +1,127 @@
+package net.sf.jode.bytecode;
+import junit.framework.*;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
+
+public class MemberResolverTest extends TestCase {
+    public MemberResolverTest(String name) {
+	super(name);
+    }
+
+    private static ClassInfo resolve(ClassPath classPath, String clazz,
+				     String name, String type,
+				     boolean isField)
+	throws IOException
+    {
+	return classPath.getResolver().getDeclaringClass
+	    (Reference.getReference(clazz, name, type), isField);
+    }
+
+    public void testResolve() throws IOException {
+	ClassPath classPath = new ClassPath("reflection:");
+	assertEquals("java.lang.Object",
+		     resolve(classPath, "Ljava/lang/Integer;",
+			     "wait", "()V", false).getName());
+	assertEquals("java.lang.Object",
+		     resolve(classPath, "[I", "getClass",
+			     "()Ljava/lang/Class;", false).getName());
+	assertEquals("interface", "java.lang.Object",
+		     resolve(classPath, "Ljava/util/List;", "toString",
+			     "()Ljava/lang/String;", false).getName());
+	assertEquals("super interface", "java.util.Collection",
+		     resolve(classPath, "Ljava/util/AbstractCollection;",
+			     "stream", "()Ljava/util/stream/Stream;",
+			     false).getName());
+	assertEquals("interface field", "java.io.ObjectStreamConstants",
+		     resolve(classPath, "Ljava/io/ObjectOutputStream;",
+			     "STREAM_MAGIC", "S", true).getName());
+	assertNull(resolve(classPath, "Ljava/lang/Integer;",
+			   "noSuchMethod", "()V", false));
+	assertNull("cached", resolve(classPath, "Ljava/lang/Integer;",
+				     "noSuchMethod", "()V", false));
+	assertEquals(1, classPath.getResolver().getCacheHits());
+    }
+
+    public void testChangedMembers() throws IOException {
+	ClassPath classPath = new ClassPath("reflection:");
+	ClassInfo clazz = classPath.getClassInfo("Test");
+	clazz.setModifiers(Modifier.PUBLIC);
+	clazz.setSuperclass(classPath.getClassInfo("java.lang.Object"));
+	clazz.setInterfaces(new ClassInfo[0]);
+	MethodInfo[] methods = new MethodInfo[20];
+	for (int i = 0; i < methods.length; i++)
+	    methods[i] = new MethodInfo("m" + i, "()V", Modifier.PUBLIC);
+	clazz.setMethods(methods);
+	clazz.setFields(new FieldInfo[0]);
+
+	Reference ref = Reference.getReference("LTest;", "m7", "()V");
+	assertSame(methods[7], classPath.getResolver().resolveMethod(ref));
+	assertNull(clazz.findMethod("m7", "()I"));
+
+	methods[7].setName("renamed");
+	assertNull(clazz.findMethod("m7", "()V"));
+	assertSame(methods[7], clazz.findMethod("renamed", "()V"));
+	assertNull("renamed", classPath.getResolver().resolveMethod(ref));
+
+	clazz.setMethods(new MethodInfo[] {
+	    new MethodInfo("m7", "()V", Modifier.PUBLIC)
+	});
+	assertSame(clazz.getMethods()[0],
+		   classPath.getResolver().resolveMethod(ref));
+    }
+
+    private static ClassInfo createClass(ClassPath classPath, String name) {
+	ClassInfo clazz = classPath.getClassInfo(name);
+	clazz.setModifiers(Modifier.PUBLIC);
+	clazz.setSuperclass(classPath.getClassInfo("java.lang.Object"));
+	clazz.setInterfaces(new ClassInfo[0]);
+	MethodInfo[] methods = new MethodInfo[20];
+	for (int i = 0; i < methods.length; i++)
+	    methods[i] = new MethodInfo("m" + i, "()V", Modifier.PUBLIC);
+	clazz.setMethods(methods);
+	clazz.setFields(new FieldInfo[0]);
+	return clazz;
+    }
+
+    public void testSeparateClassPaths() throws IOException {
+	ClassPath classPath = new ClassPath("reflection:");
+	ClassPath otherPath = new ClassPath("reflection:");
+	createClass(classPath, "Test");
+	ClassInfo other = createClass(otherPath, "Test");
+	MemberResolver resolver = classPath.getResolver();
+
+	Reference ref = Reference.getReference("LTest;", "m7", "()V");
+	assertNotNull(resolver.resolveMethod(ref));
+	assertNotNull(resolver.resolveMethod(ref));
+	assertEquals(1, resolver.getCacheHits());
+
+	/* Renaming a method of another class path keeps the cache. */
+	other.getMethods()[7].setName("renamed");
+	assertNull(other.findMethod("m7", "()V"));
+	assertNotNull(resolver.resolveMethod(ref));
+	assertEquals(2, resolver.getCacheHits());
+    }
+
+    public void testWeakCache() throws IOException {
+	ClassPath classPath = new ClassPath("reflection:");
+	Reference ref = Reference.getReference("LTest;", "m7", "()V");
+	WeakReference clazz = new WeakReference(createClass(classPath, "Test"));
+	assertSame(clazz.get(),
+		   classPath.getResolver().getDeclaringClass(ref, false));
+
+	/* The cache must not keep the class alive. */
+	for (int i = 0; i < 10 && clazz.get() != null; i++)
+	    System.gc();
+	assertNull(clazz.get());
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new MemberResolverTest("testResolve"));
+	suite.addTest(new MemberResolverTest("testChangedMembers"));
+	suite.addTest(new MemberResolverTest("testSeparateClassPaths"));
+	suite.addTest(new MemberResolverTest("testWeakCache"));
+	return suite;
+    }
+}
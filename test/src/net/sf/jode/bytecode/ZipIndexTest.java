@@ -0,0 +1,166 @@
+package net.sf.jode.bytecode;
+import junit.framework.*;
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+public class ZipIndexTest extends TestCase {
+    File zipFile;
+
+    public ZipIndexTest(String name) {
+	super(name);
+    }
+
+    private static byte[] contents(String name) {
+	StringBuffer sb = new StringBuffer();
+	for (int i = 0; i < 200; i++)
+	    sb.append(name).append(i);
+	return sb.toString().getBytes();
+    }
+
+    private static void putEntry(ZipOutputStream zos, String name,
+				 boolean stored) throws IOException {
+	ZipEntry ze = new ZipEntry(name);
+	byte[] data = contents(name);
+	if (stored) {
+	    CRC32 crc = new CRC32();
+	    crc.update(data);
+	    ze.setMethod(ZipEntry.STORED);
+	    ze.setSize(data.length);
+	    ze.setCrc(crc.getValue());
+	}
+	zos.putNextEntry(ze);
+	zos.write(data);
+	zos.closeEntry();
+    }
+
+    protected void setUp() throws IOException {
+	zipFile = File.createTempFile("zipindex", ".jar");
+	ZipOutputStream zos = new ZipOutputStream
+	    (new FileOutputStream(zipFile));
+	putEntry(zos, "Top.class", false);
+	putEntry(zos, "a/b/C.class", false);
+	putEntry(zos, "a/b/D.class", true);
+	zos.putNextEntry(new ZipEntry("a/empty/"));
+	zos.closeEntry();
+	putEntry(zos, "a/E.class", false);
+	putEntry(zos, "a/b/\u00e4.class", true);
+	zos.close();
+    }
+
+    protected void tearDown() {
+	zipFile.delete();
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	byte[] buf = new byte[100];
+	int count;
+	while ((count = is.read(buf)) != -1)
+	    out.write(buf, 0, count);
+	is.close();
+	return out.toByteArray();
+    }
+
+    private static Set asSet(Enumeration enumeration) {
+	Set result = new HashSet();
+	while (enumeration.hasMoreElements())
+	    result.add(enumeration.nextElement());
+	return result;
+    }
+
+    public void testLookup() throws IOException {
+	ZipIndex index = ZipIndex.map(zipFile, null);
+	assertTrue("Top", index.isFile("Top.class"));
+	assertTrue("C", index.isFile("a/b/C.class"));
+	assertTrue("umlaut", index.isFile("a/b/\u00e4.class"));
+	assertTrue("missing", !index.isFile("a/b/X.class"));
+	assertTrue("dir is no file", !index.isFile("a/b"));
+	assertTrue("root", index.isDirectory(""));
+	assertTrue("a/b", index.isDirectory("a/b"));
+	assertTrue("file is no dir", !index.isDirectory("a/E.class"));
+	assertTrue("empty dir", !index.isDirectory("a/empty"));
+	assertEquals("listing a",
+		     new HashSet(Arrays.asList(new String[] {"b", "E.class"})),
+		     asSet(index.listFiles("a")));
+	assertEquals("listing a/b",
+		     new HashSet(Arrays.asList
+				 (new String[] {"C.class", "D.class",
+						"\u00e4.class"})),
+		     asSet(index.listFiles("a/b")));
+	assertNull("listing missing", index.listFiles("b"));
+    }
+
+    public void testContents() throws IOException {
+	ZipIndex index = ZipIndex.map(zipFile, null);
+	String[] names = { "Top.class", "a/b/C.class", "a/b/D.class",
+			   "a/b/\u00e4.class" };
+	for (int i = 0; i < names.length; i++)
+	    assertTrue(names[i], Arrays.equals
+		       (contents(names[i]), readAll(index.getFile(names[i]))));
+	assertNull("missing", index.getFile("a/X.class"));
+    }
+
+    public void testPrefix() throws IOException {
+	ZipIndex index = ZipIndex.map(zipFile, "a/");
+	assertTrue("C", index.isFile("b/C.class"));
+	assertTrue("Top", !index.isFile("Top.class"));
+	assertTrue("b", index.isDirectory("b"));
+	assertEquals("listing root",
+		     new HashSet(Arrays.asList(new String[] {"b", "E.class"})),
+		     asSet(index.listFiles("")));
+	assertTrue("D", Arrays.equals(contents("a/b/D.class"),
+				      readAll(index.getFile("b/D.class"))));
+    }
+
+    public void testNested() throws IOException {
+	File outerFile = File.createTempFile("zipindex", ".jar");
+	try {
+	    byte[] inner = readAll(new FileInputStream(zipFile));
+	    ZipOutputStream zos = new ZipOutputStream
+		(new FileOutputStream(outerFile));
+	    CRC32 crc = new CRC32();
+	    crc.update(inner);
+	    ZipEntry ze = new ZipEntry("lib/stored.jar");
+	    ze.setMethod(ZipEntry.STORED);
+	    ze.setSize(inner.length);
+	    ze.setCrc(crc.getValue());
+	    zos.putNextEntry(ze);
+	    zos.write(inner);
+	    zos.closeEntry();
+	    zos.putNextEntry(new ZipEntry("lib/deflated.jar"));
+	    zos.write(inner);
+	    zos.closeEntry();
+	    zos.close();
+
+	    String[] jars = { "stored.jar", "deflated.jar" };
+	    for (int i = 0; i < jars.length; i++) {
+		ClassPath.Location loc = ClassPath.createLocation
+		    ("jar:" + outerFile.getPath() + "!/lib/" + jars[i]
+		     + "!/a/");
+		assertTrue(jars[i], loc.exists("b/C.class"));
+		assertTrue(jars[i], !loc.exists("Top.class"));
+		assertTrue(jars[i], loc.isDirectory("b"));
+		assertTrue(jars[i], Arrays.equals
+			   (contents("a/b/D.class"),
+			    readAll(loc.getFile("b/D.class"))));
+	    }
+
+	    ClassPath.Location loc = ClassPath.createLocation
+		("jar:" + outerFile.toURI().toURL() + "!/lib/stored.jar!/");
+	    assertTrue("url", loc.exists("Top.class"));
+	    assertTrue("url", loc.exists("a/b/C.class"));
+	} finally {
+	    outerFile.delete();
+	}
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new ZipIndexTest("testLookup"));
+	suite.addTest(new ZipIndexTest("testContents"));
+	suite.addTest(new ZipIndexTest("testPrefix"));
+	suite.addTest(new ZipIndexTest("testNested"));
+	return suite;
+    }
+}
@@ -0,0 +1,89 @@
+package net.sf.jode.type;
+import junit.framework.*;
+import net.sf.jode.bytecode.ClassInfo;
+import net.sf.jode.bytecode.ClassPath;
+import java.io.IOException;
+
+public class TypeTest extends TestCase {
+    public TypeTest(String name) {
+	super(name);
+    }
+
+    public void testRange() {
+	ClassPath classPath = new ClassPath("reflection:");
+	ClassType number = Type.tClass(classPath, "java.lang.Number");
+	ClassType integer = Type.tClass(classPath, "java.lang.Integer");
+	assertSame(Type.tRange(number, Type.tNull),
+		   Type.tRange(number, Type.tNull));
+	assertSame(Type.tUObject, Type.tRange(Type.tObject, Type.tNull));
+	assertTrue(Type.tRange(number, integer)
+		   != Type.tRange(number, Type.tNull));
+
+	/* Class types with the same name from another class path are
+	 * different types.
+	 */
+	ClassType otherNumber
+	    = Type.tClass(new ClassPath("reflection:"), "java.lang.Number");
+	assertTrue(Type.tRange(number, Type.tNull)
+		   != Type.tRange(otherNumber, Type.tNull));
+    }
+
+    public void testSubTypes() throws IOException {
+	ClassPath classPath = new ClassPath("reflection:");
+	String[] names = {
+	    "java.lang.Object", "java.lang.Number", "java.lang.Integer",
+	    "java.lang.String", "java.io.Serializable",
+	    "java.lang.Comparable", "java.util.AbstractList",
+	    "java.util.ArrayList", "java.util.List", "java.util.Collection"
+	};
+	ClassType[] types = new ClassType[names.length];
+	ClassInfo[] infos = new ClassInfo[names.length];
+	for (int i = 0; i < names.length; i++) {
+	    infos[i] = classPath.getClassInfo(names[i]);
+	    types[i] = Type.tClass(infos[i]);
+	}
+
+	/* Ask every question twice; the answers must agree with each
+	 * other and with the class hierarchy.  Note that
+	 * a.isSubTypeOf(b) tells if b extends or implements a.
+	 */
+	boolean[][] maybe = new boolean[types.length][types.length];
+	for (int round = 0; round < 2; round++) {
+	    for (int i = 0; i < types.length; i++) {
+		for (int j = 0; j < types.length; j++) {
+		    String pair = names[j] + " < " + names[i];
+		    boolean expected = infos[i].isInterface()
+			? infos[i].implementedBy(infos[j])
+			: infos[i].superClassOf(infos[j]);
+		    assertEquals(pair, expected,
+				 types[i].isSubTypeOf(types[j]));
+		    boolean result = types[i].maybeSubTypeOf(types[j]);
+		    if (expected)
+			assertTrue(pair, result);
+		    if (round == 0)
+			maybe[i][j] = result;
+		    else
+			assertEquals(pair, maybe[i][j], result);
+		}
+	    }
+	}
+
+	ClassType number = types[1];
+	ClassType integer = types[2];
+	ClassType string = types[3];
+	Type range = Type.tRange(number, integer);
+	for (int round = 0; round < 2; round++) {
+	    assertSame(range, Type.tRange(Type.tObject, integer)
+		       .intersection(Type.tRange(number, Type.tNull)));
+	    assertSame(range, range.intersection(Type.tRange(number, integer)));
+	    assertEquals(Type.tError, range.intersection(string));
+	}
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new TypeTest("testRange"));
+	suite.addTest(new TypeTest("testSubTypes"));
+	return suite;
+    }
+}
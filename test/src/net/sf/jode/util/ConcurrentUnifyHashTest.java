@@ -0,0 +1,71 @@
+package net.sf.jode.util;
+import junit.framework.*;
+import java.util.Comparator;
+
+public class ConcurrentUnifyHashTest extends TestCase {
+    private static final Comparator equalsComparator = new Comparator() {
+	public int compare(Object o1, Object o2) {
+	    return o1.equals(o2) ? 0 : 1;
+	}
+    };
+
+    public ConcurrentUnifyHashTest(String name) {
+	super(name);
+    }
+
+    public void testUnify() {
+	ConcurrentUnifyHash hash = new ConcurrentUnifyHash();
+	String[] names = new String[5000];
+	for (int i = 0; i < names.length; i++) {
+	    names[i] = "name" + i;
+	    assertSame(names[i], names[i],
+		       hash.unify(names[i], names[i].hashCode(),
+				  equalsComparator));
+	}
+	for (int i = 0; i < names.length; i++) {
+	    assertSame(names[i], names[i],
+		       hash.unify(new String(names[i]), names[i].hashCode(),
+				  equalsComparator));
+	}
+
+	String other = new String(names[0]);
+	assertSame("replace", names[0],
+		   hash.replace(other, other.hashCode(), equalsComparator));
+	assertSame("replaced", other,
+		   hash.getEntry(other.hashCode()).get());
+	assertTrue("remove", hash.remove(other.hashCode(), other));
+	assertTrue("removed", !hash.remove(other.hashCode(), other));
+    }
+
+    public void testConcurrentUnify() throws Exception {
+	final ConcurrentUnifyHash hash = new ConcurrentUnifyHash();
+	final Object[][] result = new Object[8][2000];
+	Thread[] threads = new Thread[result.length];
+	for (int t = 0; t < threads.length; t++) {
+	    final int nr = t;
+	    threads[t] = new Thread() {
+		public void run() {
+		    for (int i = 0; i < result[nr].length; i++) {
+			String name = "name" + i;
+			result[nr][i] = hash.unify(name, name.hashCode(),
+						   equalsComparator);
+		    }
+		}
+	    };
+	    threads[t].start();
+	}
+	for (int t = 0; t < threads.length; t++)
+	    threads[t].join();
+	for (int t = 1; t < threads.length; t++) {
+	    for (int i = 0; i < result[t].length; i++)
+		assertSame("name" + i, result[0][i], result[t][i]);
+	}
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new ConcurrentUnifyHashTest("testUnify"));
+	suite.addTest(new ConcurrentUnifyHashTest("testConcurrentUnify"));
+	return suite;
+    }
+}
@@ -0,0 +1,72 @@
+package net.sf.jode.util;
+import junit.framework.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+public class SimpleMapTest extends TestCase {
+    public SimpleMapTest(String name) {
+	super(name);
+    }
+
+    public void testHashedMap() {
+	Map map = new SimpleMap();
+	for (int i = 0; i < 100; i++)
+	    assertNull(map.put("key" + i, new Integer(i)));
+	assertEquals("replace", new Integer(7), map.put("key7", "seven"));
+	assertEquals("seven", map.get("key7"));
+	assertEquals(new Integer(99), map.remove("key99"));
+	assertTrue("removed", !map.containsKey("key99"));
+
+	/* Removing by the iterator keeps the order of the others. */
+	Iterator iter = map.keySet().iterator();
+	for (int i = 0; i < 50; i++) {
+	    iter.next();
+	    iter.remove();
+	}
+	assertEquals(49, map.size());
+	assertEquals("key50", map.keySet().iterator().next());
+	assertEquals(new Integer(60), map.get("key60"));
+	assertNull(map.get("key10"));
+	assertTrue(map.entrySet().contains
+		   (new SimpleMap.SimpleEntry("key60", new Integer(60))));
+	assertTrue(!map.entrySet().contains
+		   (new SimpleMap.SimpleEntry("key60", new Integer(61))));
+    }
+
+    public void testNullKey() {
+	Map map = new SimpleMap();
+	assertNull(map.put(null, "null"));
+	for (int i = 0; i < 100; i++)
+	    assertNull(map.put("key" + i, new Integer(i)));
+	assertEquals("replace", "null", map.put(null, "none"));
+	assertTrue(map.containsKey(null));
+	assertEquals("none", map.get(null));
+	assertEquals(new Integer(42), map.get("key42"));
+	assertTrue(map.entrySet().contains
+		   (new SimpleMap.SimpleEntry(null, "none")));
+	assertEquals("none", map.remove(null));
+	assertTrue("removed", !map.containsKey(null));
+	assertEquals(100, map.size());
+    }
+
+    public void testHashedSet() {
+	Set set = new SimpleSet(2, SimpleSet.DEFAULT_HASH_THRESHOLD);
+	for (int i = 0; i < 100; i++)
+	    assertTrue(set.add("elem" + i));
+	assertTrue("duplicate", !set.add("elem42"));
+	assertTrue(set.remove("elem0"));
+	assertTrue(!set.contains("elem0"));
+	assertTrue(set.contains("elem99"));
+	assertEquals(99, set.size());
+	assertEquals("elem1", set.iterator().next());
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new SimpleMapTest("testHashedMap"));
+	suite.addTest(new SimpleMapTest("testNullKey"));
+	suite.addTest(new SimpleMapTest("testHashedSet"));
+	return suite;
+    }
+}
@@ -0,0 +1,58 @@
+package net.sf.jode.util;
+import junit.framework.*;
+import java.io.*;
+
+public class SymbolTableTest extends TestCase {
+    public SymbolTableTest(String name) {
+	super(name);
+    }
+
+    private static byte[] encode(String s) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	new DataOutputStream(bytes).writeUTF(s);
+	byte[] result = new byte[bytes.size() - 2 + 3];
+	System.arraycopy(bytes.toByteArray(), 2, result, 3, result.length - 3);
+	return result;
+    }
+
+    public void testIntern() throws IOException {
+	SymbolTable symbols = new SymbolTable();
+	String[] names = { "", "Ljava/lang/Object;", "\u00e4\u20ac\u0000x" };
+	for (int i = 0; i < names.length; i++) {
+	    String name = new String(names[i]);
+	    assertSame(names[i], name, symbols.intern(name));
+	    byte[] data = encode(names[i]);
+	    assertSame(names[i], name,
+		       symbols.intern(data, 3, data.length - 3));
+	    assertSame(names[i], name, symbols.intern(new String(names[i])));
+	}
+	assertEquals("other table", names[1],
+		     new SymbolTable().intern(encode(names[1]), 3,
+					      names[1].length()));
+    }
+
+    public void testGrow() {
+	SymbolTable symbols = new SymbolTable();
+	String[] names = new String[5000];
+	for (int i = 0; i < names.length; i++)
+	    names[i] = symbols.intern("name" + i);
+	for (int i = 0; i < names.length; i++)
+	    assertSame(names[i], names[i], symbols.intern("name" + i));
+    }
+
+    public void testMalformed() {
+	try {
+	    new SymbolTable().intern(new byte[] { (byte) 0xc3 }, 0, 1);
+	    fail("malformed");
+	} catch (IllegalArgumentException ex) {
+	}
+    }
+
+    public static Test suite() {
+	TestSuite suite = new TestSuite();
+	suite.addTest(new SymbolTableTest("testIntern"));
+	suite.addTest(new SymbolTableTest("testGrow"));
+	suite.addTest(new SymbolTableTest("testMalformed"));
+	return suite;
+    }
+}